@@ -0,0 +1,274 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import cachebench.BenchmarkTargets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * The caches <tt>cachebench.CacheBenchmark</tt> can run, by name, and the read patterns it drives
+ * them with. Each cache is handed to the benchmark as its <tt>get</tt> alone, so any <tt>Cache</tt>
+ * can be added with one <tt>register</tt> call.
+ */
+public class BenchmarkCaches implements BenchmarkTargets {
+    //number of precomputed key indices per thread for the random patterns; a power of two
+    private static final int STREAM_LENGTH = 1 << 20;
+    //the key space is this many times larger than the capacity
+    private static final int KEY_SPACE_FACTOR = 2;
+    //share of the mixed pattern that is drawn uniformly from the whole key space
+    private static final double MIXED_UNIFORM_SHARE = 0.2;
+    //number of Zipf reads between two scans in the scan pattern
+    private static final int SCAN_PERIOD = 1 << 18;
+    //number of ints in a large key; hashing and comparing it walks the whole array
+    private static final int LARGE_KEY_LENGTH = 64;
+
+    //creates each cache under test from a capacity, by name
+    private static final Map<String, Function<Integer, Function<Object, Object>>> CACHES =
+        new LinkedHashMap<String, Function<Integer, Function<Object, Object>>>();
+    //the caches that may be shared by several threads
+    private static final Set<String> THREAD_SAFE = new HashSet<String>();
+    //the caches that only take <tt>Integer</tt> keys
+    private static final Set<String> INTEGER_KEYS = new HashSet<String>();
+
+    static {
+        register("lru", false, capacity -> new LRUCache<Object, Object>(key -> key, capacity)::get);
+        register("synchronized-lru", true, capacity -> {
+            final LRUCache<Object, Object> cache = new LRUCache<Object, Object>(key -> key, capacity);
+            return key -> {
+                synchronized (cache) {
+                    return cache.get(key);
+                }
+            };
+        });
+        register("concurrent", true, capacity -> new ConcurrentLRUCache<Object, Object>(key -> key, capacity)::get);
+        register("buffered", true, capacity -> new BufferedLRUCache<Object, Object>(key -> key, capacity)::get);
+        register("hot-concurrent", true, capacity ->
+            new HotKeyCache<Object, Object>(new ConcurrentLRUCache<Object, Object>(key -> key, capacity))::get);
+        register("hot-buffered", true, capacity ->
+            new HotKeyCache<Object, Object>(new BufferedLRUCache<Object, Object>(key -> key, capacity))::get);
+        register("policy-lru", false, capacity ->
+            new PolicyCache<Object, Object>(key -> key, new LRUPolicy<Object>(capacity))::get);
+        register("tinylfu", false, capacity ->
+            new PolicyCache<Object, Object>(key -> key, new WTinyLFUPolicy<Object>(capacity))::get);
+        register("clock", false, capacity -> new ClockCache<Object, Object>(key -> key, capacity)::get);
+        register("arc", false, capacity -> new ARCCache<Object, Object>(key -> key, capacity)::get);
+        register("long-lru", false, capacity -> {
+            //unboxing a pooled Integer key allocates nothing
+            final LongObjectLRUCache<Object> cache = new LongObjectLRUCache<Object>(key -> key, capacity);
+            return key -> cache.get((Integer) key);
+        });
+        INTEGER_KEYS.add("long-lru");
+    }
+
+    /**
+     * Adds a cache implementation to the benchmark.
+     * @param name the name used to select the cache with <tt>-p cache=name</tt>
+     * @param threadSafe whether the cache may be shared by several threads
+     * @param factory creates the cache from a capacity and returns its <tt>get</tt>
+     */
+    static void register (String name, boolean threadSafe, Function<Integer, Function<Object, Object>> factory) {
+        CACHES.put(name, factory);
+        if (threadSafe) {
+            THREAD_SAFE.add(name);
+        }
+    }
+
+    /**
+     * Creates a cache under test whose data provider returns each key as its value.
+     * @param cache the name of the cache
+     * @param capacity the number of pairs the cache stores
+     * @return the cache's <tt>get</tt>
+     */
+    public Function<Object, Object> create (String cache, int capacity) {
+        final Function<Integer, Function<Object, Object>> factory = CACHES.get(cache);
+        if (factory == null) {
+            throw new IllegalArgumentException("unknown cache: " + cache);
+        }
+        return factory.apply(capacity);
+    }
+
+    /**
+     * Returns whether a cache may be shared by several threads.
+     * @param cache the name of the cache
+     * @return true if the cache is thread-safe
+     */
+    public boolean isThreadSafe (String cache) {
+        return THREAD_SAFE.contains(cache);
+    }
+
+    /**
+     * Returns whether a cache only takes <tt>Integer</tt> keys.
+     * @param cache the name of the cache
+     * @return true if the cache cannot be run with large keys
+     */
+    public boolean takesIntegerKeysOnly (String cache) {
+        return INTEGER_KEYS.contains(cache);
+    }
+
+    /**
+     * Creates the keys every pattern draws from: <tt>KEY_SPACE_FACTOR</tt> times the capacity.
+     * @param capacity the capacity of the cache under test
+     * @param large whether to use expensive <tt>LargeKey</tt>s instead of <tt>Integer</tt>s
+     * @return the keys
+     */
+    public Object[] keys (int capacity, boolean large) {
+        final Object[] keys = new Object[capacity * KEY_SPACE_FACTOR];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = large ? new LargeKey(i) : Integer.valueOf(i);
+        }
+        return keys;
+    }
+
+    /**
+     * Creates one thread's stream of key indices for a read pattern.
+     * @param pattern the name of the pattern
+     * @param capacity the capacity of the cache under test
+     * @param skew the skew of the Zipf draws
+     * @param thread the index of the reading thread, which seeds its draws
+     * @param threads the number of reading threads
+     * @return the stream of indices into the keys
+     */
+    public IntSupplier stream (String pattern, int capacity, double skew, int thread, int threads) {
+        return Pattern.valueOf(pattern.trim().toUpperCase()).stream(capacity, skew, thread, threads);
+    }
+
+    /**
+     * The read patterns a cache can be driven with. Each draws indices into a key space of
+     * <tt>KEY_SPACE_FACTOR * capacity</tt> keys.
+     */
+    enum Pattern {
+        //uniform reads over keys that all fit in the cache
+        HIT,
+        //a sequential sweep over the whole key space, which defeats any recency-based policy
+        MISS,
+        //Zipf-distributed reads over the whole key space
+        ZIPF,
+        //Zipf reads interrupted by sequential scans over the cold half of the key space
+        SCAN,
+        //mostly Zipf reads with a share of uniform reads over the whole key space
+        MIXED;
+
+        /**
+         * Builds the key-index stream of one thread.
+         * @param capacity the capacity of the cache under test
+         * @param skew the skew of the Zipf draws
+         * @param thread the index of the thread
+         * @param threads the number of threads
+         * @return the thread's stream
+         */
+        IntSupplier stream (int capacity, double skew, int thread, int threads) {
+            final int keySpace = capacity * KEY_SPACE_FACTOR;
+            if (this == MISS) {
+                return new SequentialStream(0, keySpace, keySpace / threads * thread);
+            }
+            final ZipfGenerator zipf = this == HIT ? null : new ZipfGenerator(keySpace, skew, thread);
+            final Random rand = new Random(thread);
+            final int[] indices = new int[STREAM_LENGTH];
+            for (int i = 0; i < STREAM_LENGTH; i++) {
+                indices[i] = this == HIT ? rand.nextInt(capacity)
+                    : this == MIXED && rand.nextDouble() < MIXED_UNIFORM_SHARE ? rand.nextInt(keySpace)
+                    : zipf.next();
+            }
+            return this == SCAN ? new ScanStream(indices, capacity, keySpace - capacity, thread)
+                : new ArrayStream(indices);
+        }
+    }
+
+    /**
+     * Cycles through precomputed indices, so drawing a key costs no random-number generation.
+     */
+    static class ArrayStream implements IntSupplier {
+        private final int[] _indices;
+        private int _cursor = 0;
+
+        ArrayStream (int[] indices) {
+            _indices = indices;
+        }
+
+        public int getAsInt () {
+            final int index = _indices[_cursor];
+            _cursor = (_cursor + 1) & (_indices.length - 1);
+            return index;
+        }
+    }
+
+    /**
+     * Walks a range of indices in order, wrapping at the end.
+     */
+    static class SequentialStream implements IntSupplier {
+        private final int _offset;
+        private final int _length;
+        private int _cursor;
+
+        SequentialStream (int offset, int length, int start) {
+            _offset = offset;
+            _length = length;
+            _cursor = start;
+        }
+
+        public int getAsInt () {
+            final int index = _offset + _cursor;
+            _cursor = _cursor + 1 == _length ? 0 : _cursor + 1;
+            return index;
+        }
+    }
+
+    /**
+     * Reads a Zipf stream, and every <tt>SCAN_PERIOD</tt> reads sweeps once through a cold range.
+     */
+    static class ScanStream implements IntSupplier {
+        private final ArrayStream _hot;
+        private final SequentialStream _scan;
+        private final int _scanLength;
+        private int _untilScan = SCAN_PERIOD;
+        private int _scanRemaining = 0;
+
+        ScanStream (int[] hotIndices, int scanOffset, int scanLength, int start) {
+            _hot = new ArrayStream(hotIndices);
+            _scan = new SequentialStream(scanOffset, scanLength, start % scanLength);
+            _scanLength = scanLength;
+        }
+
+        public int getAsInt () {
+            if (_scanRemaining > 0) {
+                _scanRemaining--;
+                return _scan.getAsInt();
+            }
+            if (--_untilScan == 0) {
+                _untilScan = SCAN_PERIOD;
+                _scanRemaining = _scanLength;
+            }
+            return _hot.getAsInt();
+        }
+    }
+
+    /**
+     * A key whose <tt>hashCode</tt> and <tt>equals</tt> are deliberately expensive.
+     */
+    static class LargeKey {
+        private final int[] _components;
+
+        LargeKey (int seed) {
+            _components = new int[LARGE_KEY_LENGTH];
+            Arrays.fill(_components, seed);
+        }
+
+        @Override
+        public boolean equals (Object o) {
+            return o instanceof LargeKey && Arrays.equals(_components, ((LargeKey) o)._components);
+        }
+
+        @Override
+        public int hashCode () {
+            return Arrays.hashCode(_components);
+        }
+    }
+}
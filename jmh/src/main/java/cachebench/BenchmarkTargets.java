@@ -0,0 +1,71 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+package cachebench;
+
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * The caches and read patterns the benchmarks run. JMH only accepts benchmarks in a named
+ * package, and a named package cannot refer to the caches, which live in the default package, so
+ * this is implemented by the default-package <tt>BenchmarkCaches</tt> and loaded by name.
+ */
+public interface BenchmarkTargets {
+	/**
+	 * Creates a cache under test whose data provider returns each key as its value.
+	 * @param cache the name of the cache
+	 * @param capacity the number of pairs the cache stores
+	 * @return the cache's <tt>get</tt>
+	 * @throws IllegalArgumentException if there is no cache of that name
+	 */
+	Function<Object, Object> create (String cache, int capacity);
+
+	/**
+	 * Returns whether a cache may be shared by several threads.
+	 * @param cache the name of the cache
+	 * @return true if the cache is thread-safe
+	 */
+	boolean isThreadSafe (String cache);
+
+	/**
+	 * Returns whether a cache only takes <tt>Integer</tt> keys.
+	 * @param cache the name of the cache
+	 * @return true if the cache cannot be run with large keys
+	 */
+	boolean takesIntegerKeysOnly (String cache);
+
+	/**
+	 * Creates the keys a read pattern draws from, so the timed loop never boxes or allocates one.
+	 * @param capacity the capacity of the cache under test
+	 * @param large whether to use keys whose <tt>hashCode</tt> and <tt>equals</tt> are expensive
+	 * @return the keys, indexed by the streams of every pattern
+	 */
+	Object[] keys (int capacity, boolean large);
+
+	/**
+	 * Creates one thread's stream of key indices for a read pattern.
+	 * @param pattern the name of the pattern: hit, miss, zipf, scan or mixed
+	 * @param capacity the capacity of the cache under test
+	 * @param skew the skew of the Zipf draws
+	 * @param thread the index of the reading thread
+	 * @param threads the number of reading threads
+	 * @return the stream of indices into the keys
+	 * @throws IllegalArgumentException if there is no pattern of that name
+	 */
+	IntSupplier stream (String pattern, int capacity, double skew, int thread, int threads);
+
+	/**
+	 * Loads the targets from the default package.
+	 * @return the targets
+	 */
+	static BenchmarkTargets load () {
+		try {
+			return (BenchmarkTargets) Class.forName("BenchmarkCaches").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("BenchmarkCaches is not on the class path", e);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+package cachebench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * JMH benchmarks of every <tt>Cache</tt> implementation in <tt>BenchmarkCaches</tt>, across read
+ * patterns and capacities. Each combination of parameters runs in its own forked JVM, so one cache
+ * never warms up or pollutes the call sites of the next, and every value read is consumed by a
+ * <tt>Blackhole</tt>.
+ * <p>
+ * Build and run with <tt>make bench</tt>, or <tt>java -jar jmh/target/benchmarks.jar</tt> with the
+ * usual JMH options, e.g. <tt>-p cache=lru,concurrent -p pattern=zipf,scan -p capacity=1000</tt>.
+ * Allocation per operation comes from <tt>-prof gc</tt> and tail latency from <tt>-bm sample</tt>.
+ * <tt>get</tt> runs on one thread and <tt>getConcurrently</tt> on one thread per core, which
+ * <tt>-t</tt> overrides; the latter rejects caches that are not thread-safe. Capacities in the
+ * millions need a larger heap, e.g. <tt>-p capacity=10000000 -jvmArgs -Xmx8g</tt>, and
+ * <tt>-p keys=large</tt> uses keys whose <tt>hashCode</tt> and <tt>equals</tt> are expensive.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CacheBenchmark {
+    /**
+     * The cache under test and the keys it is read with, shared by every thread of a trial.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        //the name of the cache under test
+        @Param({"lru", "synchronized-lru", "concurrent", "buffered", "hot-concurrent", "hot-buffered",
+                "policy-lru", "tinylfu", "clock", "arc", "long-lru"})
+        public String cache;
+        //the read pattern: hit, miss, zipf, scan or mixed
+        @Param({"hit", "miss", "zipf", "scan", "mixed"})
+        public String pattern;
+        //the number of pairs the cache stores
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int capacity;
+        //small for Integer keys, large for keys that are expensive to hash and compare
+        @Param({"small"})
+        public String keys;
+        //the skew of the Zipf draws
+        @Param({"0.99"})
+        public double skew;
+
+        //the caches and patterns
+        BenchmarkTargets _targets;
+        //the get of the cache under test
+        Function<Object, Object> _get;
+        //the keys the streams index into
+        Object[] _keys;
+
+        /**
+         * Creates the cache and fills it with the keys every pattern considers hot.
+         * @param params the parameters of the trial, for its thread count
+         * @throws IllegalStateException if the cache cannot run with these parameters
+         */
+        @Setup(Level.Trial)
+        public void setUp (BenchmarkParams params) {
+            _targets = BenchmarkTargets.load();
+            if (params.getThreads() > 1 && !_targets.isThreadSafe(cache)) {
+                throw new IllegalStateException(cache + " is not thread-safe; run it with -t 1");
+            }
+            final boolean large = "large".equals(keys);
+            if (large && _targets.takesIntegerKeysOnly(cache)) {
+                throw new IllegalStateException(cache + " only takes Integer keys; run it with -p keys=small");
+            }
+            _keys = _targets.keys(capacity, large);
+            _get = _targets.create(cache, capacity);
+            for (int i = 0; i < capacity; i++) {
+                _get.apply(_keys[i]);
+            }
+        }
+    }
+
+    /**
+     * The key stream of one reading thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        //the indices of the keys this thread reads
+        IntSupplier _stream;
+
+        /**
+         * Builds this thread's stream, seeded by its index so threads read different keys.
+         * @param state the shared cache state
+         * @param params the parameters of this thread
+         */
+        @Setup(Level.Trial)
+        public void setUp (CacheState state, ThreadParams params) {
+            _stream = state._targets.stream(state.pattern, state.capacity, state.skew,
+                                            params.getThreadIndex(), params.getThreadCount());
+        }
+    }
+
+    /**
+     * Reads one key on a single thread.
+     * @param state the cache under test
+     * @param thread this thread's key stream
+     * @param bh consumes the value read
+     */
+    @Benchmark
+    @Threads(1)
+    public void get (CacheState state, ThreadState thread, Blackhole bh) {
+        bh.consume(state._get.apply(state._keys[thread._stream.getAsInt()]));
+    }
+
+    /**
+     * Reads one key on every thread at once.
+     * @param state the cache under test
+     * @param thread this thread's key stream
+     * @param bh consumes the value read
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void getConcurrently (CacheState state, ThreadState thread, Blackhole bh) {
+        bh.consume(state._get.apply(state._keys[thread._stream.getAsInt()]));
+    }
+}
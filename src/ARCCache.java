@@ -0,0 +1,19 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * An implementation of <tt>Cache</tt> that evicts with the Adaptive Replacement Cache policy,
+ * balancing recency against frequency as the workload shifts between the two; see
+ * <tt>ARCPolicy</tt>.
+ */
+public class ARCCache<T, U> extends PolicyCache<T, U> {
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     */
+    public ARCCache (DataProvider<T, U> provider, int capacity) {
+        super(provider, new ARCPolicy<T>(capacity));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.HashMap;
+
+/**
+ * An <tt>EvictionPolicy</tt> implementing the Adaptive Replacement Cache (Megiddo and Modha). Keys
+ * seen once live in a recency list T1 and keys seen again in a frequency list T2. The keys most
+ * recently evicted from each are remembered, without values, in the ghost lists B1 and B2. A miss
+ * on a ghost key shows that its list was cut too short, so the policy moves its target size for T1
+ * towards that list and evicts from the other. The split between recency and frequency therefore
+ * follows the workload, and a scan of one-time keys only ever displaces T1. Every operation takes
+ * constant time, and no more than twice the capacity in keys is remembered.
+ */
+public class ARCPolicy<T> implements EvictionPolicy<T> {
+    //the queue tags of the resident and ghost lists
+    private static final int RECENT = 0;
+    private static final int FREQUENT = 1;
+    private static final int RECENT_GHOST = 2;
+    private static final int FREQUENT_GHOST = 3;
+
+    //the node of every key the cache holds or remembers as a ghost
+    private final HashMap<T, AccessOrderDeque.Node<T>> _nodes = new HashMap<T, AccessOrderDeque.Node<T>>();
+    //the resident lists T1 and T2 and the ghost lists B1 and B2, each from least to most recently used
+    private final AccessOrderDeque<T> _recent = new AccessOrderDeque<T>();
+    private final AccessOrderDeque<T> _frequent = new AccessOrderDeque<T>();
+    private final AccessOrderDeque<T> _recentGhosts = new AccessOrderDeque<T>();
+    private final AccessOrderDeque<T> _frequentGhosts = new AccessOrderDeque<T>();
+
+    //maximum number of resident keys
+    private final int _maxCapacity;
+    //the size T1 is steered towards, between zero and the capacity
+    private int _target = 0;
+
+    /**
+     * @param capacity the exact number of keys to keep
+     */
+    public ARCPolicy (int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _maxCapacity = capacity;
+    }
+
+    /**
+     * Records a hit, moving the key to the most recently used end of the frequency list.
+     * @param key the key that was read
+     */
+    public void recordAccess (T key) {
+        final AccessOrderDeque.Node<T> node = _nodes.get(key);
+        if (node._queue == RECENT) {
+            _recent.remove(node);
+            node._queue = FREQUENT;
+            _frequent.addLast(node);
+        }
+        else {
+            _frequent.moveToBack(node);
+        }
+    }
+
+    /**
+     * Records a newly loaded key. A remembered ghost adapts the target and goes straight to the
+     * frequency list; any other key enters the recency list.
+     * @param key the newly loaded key
+     * @return the resident key evicted to make room, or null if there is still room
+     */
+    public T recordInsertion (T key) {
+        AccessOrderDeque.Node<T> node = _nodes.get(key);
+        if (node != null) {
+            //a ghost: grow the list it was evicted from by at least one, more if the other is larger
+            final boolean frequentGhost = node._queue == FREQUENT_GHOST;
+            if (frequentGhost) {
+                _target = Math.max(0, _target - Math.max(1, _recentGhosts.size() / _frequentGhosts.size()));
+                _frequentGhosts.remove(node);
+            }
+            else {
+                _target = Math.min(_maxCapacity, _target + Math.max(1, _frequentGhosts.size() / _recentGhosts.size()));
+                _recentGhosts.remove(node);
+            }
+            final T victim = isFull() ? replace(frequentGhost) : null;
+            node._queue = FREQUENT;
+            _frequent.addLast(node);
+            return victim;
+        }
+
+        T victim = null;
+        if (_recent.size() + _recentGhosts.size() >= _maxCapacity) {
+            if (_recentGhosts.size() > 0) {
+                forgetOldest(_recentGhosts);
+                victim = isFull() ? replace(false) : null;
+            }
+            else {
+                //T1 alone fills the cache, so its oldest key goes without leaving a ghost
+                victim = forgetOldest(_recent);
+            }
+        }
+        else if (_nodes.size() >= _maxCapacity) {
+            if (_nodes.size() >= 2 * _maxCapacity) {
+                forgetOldest(_frequentGhosts);
+            }
+            victim = isFull() ? replace(false) : null;
+        }
+        node = new AccessOrderDeque.Node<T>(key, RECENT);
+        _nodes.put(key, node);
+        _recent.addLast(node);
+        return victim;
+    }
+
+    /**
+     * Forgets a key the cache has removed for a reason of its own, including any ghost of it.
+     * @param key the removed key
+     */
+    public void recordRemoval (T key) {
+        final AccessOrderDeque.Node<T> node = _nodes.remove(key);
+        if (node != null) {
+            listOf(node).remove(node);
+        }
+    }
+
+    /**
+     * Returns the size the recency list is currently steered towards.
+     * @return the target, between zero and the capacity
+     */
+    int target () {
+        return _target;
+    }
+
+    /**
+     * Returns the number of evicted keys remembered in the ghost lists.
+     * @return the number of ghosts
+     */
+    int ghostCount () {
+        return _recentGhosts.size() + _frequentGhosts.size();
+    }
+
+    /**
+     * Evicts the oldest key of T1 or T2 into its ghost list: from T1 if it is over its target, or
+     * at the target when the incoming key was a T2 ghost, and otherwise from T2.
+     * @param frequentGhost whether the key being inserted was remembered in B2
+     * @return the evicted key
+     */
+    private T replace (boolean frequentGhost) {
+        final int recent = _recent.size();
+        final boolean fromRecent = recent > 0
+            && (recent > _target || (frequentGhost && recent == _target) || _frequent.size() == 0);
+        final AccessOrderDeque.Node<T> victim = fromRecent ? _recent.peekFirst() : _frequent.peekFirst();
+        listOf(victim).remove(victim);
+        victim._queue = fromRecent ? RECENT_GHOST : FREQUENT_GHOST;
+        listOf(victim).addLast(victim);
+        return victim._key;
+    }
+
+    /**
+     * Drops the oldest key of a list entirely, leaving no ghost.
+     * @param list a non-empty list
+     * @return the dropped key
+     */
+    private T forgetOldest (AccessOrderDeque<T> list) {
+        final AccessOrderDeque.Node<T> oldest = list.peekFirst();
+        list.remove(oldest);
+        _nodes.remove(oldest._key);
+        return oldest._key;
+    }
+
+    /**
+     * Returns whether the resident lists hold the full capacity, so that a new key needs an eviction.
+     * Invalidated keys can leave room even while ghosts are remembered.
+     * @return true if the cache is full
+     */
+    private boolean isFull () {
+        return _recent.size() + _frequent.size() >= _maxCapacity;
+    }
+
+    /**
+     * Returns the list a node is in.
+     * @param node a node of this policy
+     * @return the list named by its queue tag
+     */
+    private AccessOrderDeque<T> listOf (AccessOrderDeque.Node<T> node) {
+        switch (node._queue) {
+            case RECENT:
+                return _recent;
+            case FREQUENT:
+                return _frequent;
+            case RECENT_GHOST:
+                return _recentGhosts;
+            default:
+                return _frequentGhosts;
+        }
+    }
+}
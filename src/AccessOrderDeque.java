@@ -0,0 +1,97 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * An intrusive doubly linked list of keys ordered from least to most recently used, shared by the
+ * eviction policies. Nodes carry a queue tag so a policy juggling several lists knows which one a
+ * node is in.
+ */
+class AccessOrderDeque<T> {
+    /**
+     * A key's position in one of a policy's lists.
+     */
+    static class Node<T> {
+        protected final T _key;
+        protected int _queue;
+        protected Node<T> _next;    //the next (more recently used) node
+        protected Node<T> _last;    //the previous (less recently used) node
+
+        Node (T key, int queue) {
+            _key = key;
+            _queue = queue;
+        }
+    }
+
+    //the least and most recently used nodes
+    private Node<T> _head;
+    private Node<T> _tail;
+    //the number of nodes in the list
+    private int _size = 0;
+
+    /**
+     * Returns the least recently used node.
+     * @return the head of the list, or null if it is empty
+     */
+    Node<T> peekFirst () {
+        return _head;
+    }
+
+    /**
+     * Returns the number of nodes in the list.
+     * @return the size of the list
+     */
+    int size () {
+        return _size;
+    }
+
+    /**
+     * Appends a node to the most recently used end of the list
+     * @param node a node not currently in any list
+     */
+    void addLast (Node<T> node) {
+        node._last = _tail;
+        if (_tail == null) {
+            _head = node;
+        }
+        else {
+            _tail._next = node;
+        }
+        _tail = node;
+        _size++;
+    }
+
+    /**
+     * Moves a node of this list to its most recently used end
+     * @param node a node currently in this list
+     */
+    void moveToBack (Node<T> node) {
+        if (node != _tail) {
+            remove(node);
+            addLast(node);
+        }
+    }
+
+    /**
+     * Removes a node from the list, pointing its neighbors at each other
+     * @param node a node currently in this list
+     */
+    void remove (Node<T> node) {
+        if (node._last == null) {
+            _head = node._next;
+        }
+        else {
+            node._last._next = node._next;
+        }
+        if (node._next == null) {
+            _tail = node._last;
+        }
+        else {
+            node._next._last = node._last;
+        }
+        node._last = null;
+        node._next = null;
+        _size--;
+    }
+}
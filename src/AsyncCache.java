@@ -0,0 +1,57 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A cache whose lookups never block on a load: each returns a future of the value.
+ */
+interface AsyncCache<T, U> {
+	/**
+	 * Returns a future of the value associated with the specified key. Concurrent requests for a
+	 * key that is still loading share the same future.
+	 * @param key the key
+	 * @return a future completed with the value associated with the key
+	 */
+	CompletableFuture<U> get (T key);
+
+	/**
+	 * Removes the future stored for a key, if any, so that the next <tt>get</tt> loads it again.
+	 * A load already under way still completes the futures handed out before.
+	 * @param key the key
+	 */
+	void invalidate (T key);
+
+	/**
+	 * Removes the futures stored for several keys; by default each key is removed with
+	 * <tt>invalidate</tt>.
+	 * @param keys the keys
+	 */
+	default void invalidateAll (Collection<? extends T> keys) {
+		for (final T key : keys) {
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * Returns the number of cache misses since the object's instantiation.
+	 * @return the number of cache misses since the object's instantiation, saturating at
+	 * <tt>Integer.MAX_VALUE</tt>; see <tt>getStats</tt> for the exact count
+	 */
+	int getNumMisses ();
+
+	/**
+	 * Returns the live statistics of the cache.
+	 * @return the statistics, updated as the cache is used
+	 */
+	CacheStats getStats ();
+
+	/**
+	 * Returns the number of keys currently stored in the cache, including those still loading.
+	 * @return the number of stored keys
+	 */
+	int size ();
+}
@@ -0,0 +1,155 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Code to test an <tt>AsyncLRUCache</tt> implementation.
+ */
+public class AsyncCacheTest {
+    /**
+     * Implements an asynchronous data provider whose loads are completed by hand
+     */
+    public static class ManualDataProvider implements AsyncDataProvider<Integer, String> {
+        public final Map<Integer, CompletableFuture<String>> _pending = new HashMap<Integer, CompletableFuture<String>>();
+        public int _timesReferenced = 0;
+        public Executor _executor;
+
+        /**
+         * Starts a load that completes when the test says so
+         * @param key any integer
+         * @param executor the cache's executor
+         * @return the pending load
+         */
+        public synchronized CompletableFuture<String> get (Integer key, Executor executor) {
+            _timesReferenced++;
+            _executor = executor;
+            final CompletableFuture<String> load = new CompletableFuture<String>();
+            _pending.put(key, load);
+            return load;
+        }
+    }
+
+    /**
+     * Tests that requests for a key that is still loading share the in-flight future
+     */
+    @Test
+    public void testInFlightFutureIsShared () {
+        ManualDataProvider provider = new ManualDataProvider();
+        Executor executor = Runnable::run;
+        AsyncCache<Integer, String> cache = new AsyncLRUCache<Integer, String>(provider, 10, executor);
+
+        CompletableFuture<String> first = cache.get(1);
+        CompletableFuture<String> second = cache.get(1);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+        assertEquals(1, provider._timesReferenced);
+        assertSame(executor, provider._executor);
+
+        provider._pending.get(1).complete("one");
+        assertEquals("one", second.join());
+        assertEquals("one", cache.get(1).join());
+        assertEquals(1, cache.getNumMisses());
+        assertEquals(2, cache.getStats().getHitCount());
+    }
+
+    /**
+     * Tests that a provider which throws an Error or returns no future fails the stored future and
+     * removes it, so later callers do not wait forever
+     */
+    @Test
+    public void testBrokenProviderDoesNotStrandFuture () {
+        AsyncDataProvider<Integer, String> provider = (key, executor) -> {
+            if (key == 1) {
+                throw new AssertionError("provider bug");
+            }
+            return key == 2 ? null : CompletableFuture.completedFuture("value");
+        };
+        AsyncCache<Integer, String> cache = new AsyncLRUCache<Integer, String>(provider, 10, Runnable::run);
+        for (int key = 1; key <= 2; key++) {
+            CompletableFuture<String> failed = cache.get(key);
+            assertTrue(failed.isCompletedExceptionally());
+            assertEquals(0, cache.size());
+            assertNotSame(failed, cache.get(key));
+        }
+        assertEquals(4, cache.getStats().getLoadFailureCount());
+        assertEquals("value", cache.get(3).join());
+    }
+
+    /**
+     * Tests that a failed future reaches its callers and is removed so the next get reloads
+     */
+    @Test
+    public void testFailedFutureIsRemoved () {
+        ManualDataProvider provider = new ManualDataProvider();
+        AsyncCache<Integer, String> cache = new AsyncLRUCache<Integer, String>(provider, 10, Runnable::run);
+
+        CompletableFuture<String> failed = cache.get(1);
+        provider._pending.get(1).completeExceptionally(new IllegalStateException("backend down"));
+        try {
+            failed.join();
+            fail("expected the load's exception");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+
+        CompletableFuture<String> retried = cache.get(1);
+        assertNotSame(failed, retried);
+        provider._pending.get(1).complete("one");
+        assertEquals("one", retried.join());
+        assertEquals(2, provider._timesReferenced);
+    }
+
+    /**
+     * Tests that blocking providers run on the executor and that the capacity is kept
+     */
+    @Test
+    public void testBlockingProviderAndEviction () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        AsyncCache<Integer, String> cache = new AsyncLRUCache<Integer, String>(provider, 2);
+
+        assertEquals("Value for key 0.", cache.get(0).join());
+        assertEquals("Value for key 1.", cache.get(1).join());
+        assertEquals("Value for key 2.", cache.get(2).join());
+        assertEquals(2, cache.size());
+        assertEquals(3, provider._timesReferenced);
+
+        assertEquals("Value for key 0.", cache.get(0).join());
+        assertEquals(4, provider._timesReferenced);
+    }
+
+    /**
+     * Tests that a publication on an invalidation bus drops the stored future, even one still
+     * loading, and that the next request loads again
+     */
+    @Test
+    public void testInvalidationBusDropsFuture () {
+        ManualDataProvider provider = new ManualDataProvider();
+        AsyncCache<Integer, String> cache = new AsyncLRUCache<Integer, String>(provider, 10, Runnable::run);
+        LocalInvalidationBus<Integer> bus = new LocalInvalidationBus<Integer>();
+        bus.subscribe(cache);
+
+        CompletableFuture<String> loading = cache.get(1);
+        bus.publish(Arrays.asList(1));
+        assertEquals(0, cache.size());
+        provider._pending.get(1).complete("stale");
+        assertEquals("stale", loading.join());
+
+        CompletableFuture<String> reloaded = cache.get(1);
+        assertNotSame(loading, reloaded);
+        provider._pending.get(1).complete("fresh");
+        assertEquals("fresh", reloaded.join());
+        assertEquals(2, provider._timesReferenced);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A data provider that loads values without blocking the caller.
+ */
+interface AsyncDataProvider<T, U> {
+	/**
+	 * Starts loading the value associated with the specified key.
+	 * @param key the key
+	 * @param executor the executor the cache was configured with, for any work the load needs
+	 * @return a future completed with the value associated with the key
+	 */
+	CompletableFuture<U> get (T key, Executor executor);
+
+	/**
+	 * Adapts a blocking data provider by running each of its loads on the given executor.
+	 * @param provider the blocking data provider
+	 * @return an asynchronous data provider calling it
+	 */
+	static <T, U> AsyncDataProvider<T, U> fromBlocking (DataProvider<T, U> provider) {
+		return (key, executor) -> CompletableFuture.supplyAsync(() -> provider.get(key), executor);
+	}
+}
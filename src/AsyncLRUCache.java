@@ -0,0 +1,172 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A thread-safe, least-recently-used <tt>AsyncCache</tt>. The cache stores futures rather than
+ * values: a miss stores a new future straight away and starts the load on the configured executor,
+ * so every concurrent request for that key shares the one in-flight load. A future that fails is
+ * removed as soon as it completes, and the next request loads again. Like <tt>ConcurrentLRUCache</tt>,
+ * the key space is split into independently locked LRU segments. Keys must not be null.
+ */
+public class AsyncLRUCache<T, U> implements AsyncCache<T, U> {
+    //default number of segments
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    //the data provider that loads missing keys
+    private final AsyncDataProvider<T, U> _provider;
+    //the executor loads run on
+    private final Executor _executor;
+    //the independently locked segments, indexed by the spread hash of a key
+    private final LRUCache<T, CompletableFuture<U>>[] _segments;
+    //mask used to select a segment; the segment count is always a power of two
+    private final int _segmentMask;
+    //counts hits, misses, evictions and loads across all segments
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * Creates a cache whose blocking loads run on the common fork-join pool.
+     * @param provider the blocking data provider to consult for a cache miss
+     * @param capacity the exact number of keys to store in the cache
+     */
+    public AsyncLRUCache (DataProvider<T, U> provider, int capacity) {
+        this(AsyncDataProvider.fromBlocking(provider), capacity, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of keys to store in the cache
+     * @param executor runs the loads, e.g. a pool of platform threads or a virtual thread per task
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AsyncLRUCache (AsyncDataProvider<T, U> provider, int capacity, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        final int segmentCount = Integer.highestOneBit(Math.min(capacity, DEFAULT_SEGMENTS));
+        final DataProvider<T, CompletableFuture<U>> unused = key -> {
+            throw new IllegalStateException("segments are only read after a hit");
+        };
+
+        _provider = provider;
+        _executor = executor;
+        _segments = (LRUCache<T, CompletableFuture<U>>[]) new LRUCache[segmentCount];
+        _segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            final int share = capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0);
+            _segments[i] = new LRUCache<T, CompletableFuture<U>>(unused, share, _stats);
+        }
+    }
+
+    /**
+     * Returns a future of the value associated with the specified key, starting a load on a miss.
+     * @param key the key
+     * @return a future completed with the value associated with the key
+     */
+    public CompletableFuture<U> get (T key) {
+        final LRUCache<T, CompletableFuture<U>> segment = segmentFor(key);
+        final CompletableFuture<U> future;
+        synchronized (segment) {
+            final LRUCache.Element<T, CompletableFuture<U>> hit = segment.lookup(key);
+            if (hit != null) {
+                return hit._value;
+            }
+            _stats.recordMiss();
+            future = new CompletableFuture<U>();
+            segment.put(key, future);
+        }
+        load(segment, key, future);
+        return future;
+    }
+
+    /**
+     * Removes the future stored for a key, if any, so that the next <tt>get</tt> loads it again.
+     * A load already under way still completes the futures handed out before, but its value is
+     * not stored.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        final LRUCache<T, CompletableFuture<U>> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.invalidate(key);
+        }
+    }
+
+    /**
+     * Starts the load of a missing key and completes its stored future with the outcome,
+     * removing the future again if the load fails. A provider that throws, even an
+     * <tt>Error</tt>, or returns no future fails the load like any other failure, so the stored
+     * future is never left pending.
+     * @param segment the segment owning the key
+     * @param key the key
+     * @param future the future stored for the key
+     */
+    private void load (LRUCache<T, CompletableFuture<U>> segment, T key, CompletableFuture<U> future) {
+        final long start = System.nanoTime();
+        CompletableFuture<U> loading;
+        try {
+            loading = _provider.get(key, _executor);
+            if (loading == null) {
+                loading = CompletableFuture.failedFuture(new NullPointerException("provider returned no future for " + key));
+            }
+        } catch (Throwable e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((value, failure) -> {
+            _stats.recordLoad(System.nanoTime() - start, failure == null);
+            if (failure != null) {
+                synchronized (segment) {
+                    segment.remove(key, future);
+                }
+                future.completeExceptionally(failure);
+            }
+            else {
+                future.complete(value);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache, shared by all segments.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of keys currently stored across all segments, including those loading.
+     * @return the number of stored keys
+     */
+    public int size () {
+        int size = 0;
+        for (final LRUCache<T, CompletableFuture<U>> segment : _segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Selects the segment responsible for a key.
+     * @param key the key
+     * @return the segment owning the key
+     */
+    private LRUCache<T, CompletableFuture<U>> segmentFor (T key) {
+        return _segments[LRUCache.segmentOf(key, _segmentMask)];
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * A Bloom filter over the keys that exist, used by <tt>NegativeCache</tt> to answer requests for
+ * keys that certainly do not exist without asking the data provider. Adding a key sets a few bits
+ * chosen by its hash code; a key whose bits are not all set was never added. A key whose bits are
+ * all set was probably added, and the chance it was not is the false-positive rate the filter was
+ * sized for. Keys cannot be removed, and the filter is not thread-safe.
+ */
+public class BloomFilter<T> {
+    //the square of the natural logarithm of two, used to size the bit array
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+    //number of bits packed into one long
+    private static final int BITS_PER_LONG = Long.SIZE;
+    //the most bits a key sets, however low the requested false-positive rate
+    private static final int MAX_HASHES = 16;
+
+    //the bits, packed into longs
+    private final long[] _bits;
+    //the number of usable bits
+    private final long _bitCount;
+    //the number of bits each key sets
+    private final int _hashes;
+
+    /**
+     * @param expectedKeys the number of keys the filter is sized for
+     * @param falsePositiveRate the chance, between 0 and 1, that a key never added appears present
+     * once <tt>expectedKeys</tt> keys have been added
+     */
+    public BloomFilter (long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1) {
+            throw new IllegalArgumentException("expected keys must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("false-positive rate must be between 0 and 1");
+        }
+        final long bits = Math.max(BITS_PER_LONG, (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / LN2_SQUARED));
+        _bits = new long[Math.toIntExact((bits + BITS_PER_LONG - 1) / BITS_PER_LONG)];
+        _bitCount = (long) _bits.length * BITS_PER_LONG;
+        _hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) _bitCount / expectedKeys * Math.log(2))));
+    }
+
+    /**
+     * Records that a key exists.
+     * @param key the key
+     */
+    public void put (T key) {
+        final long hash = spread(key);
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < _hashes; i++) {
+            final long bit = indexOf(first, second, i);
+            _bits[(int) (bit / BITS_PER_LONG)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether a key may exist.
+     * @param key the key
+     * @return false if the key was certainly never added, true if it probably was
+     */
+    public boolean mightContain (Object key) {
+        final long hash = spread(key);
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < _hashes; i++) {
+            final long bit = indexOf(first, second, i);
+            if ((_bits[(int) (bit / BITS_PER_LONG)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bits each key sets.
+     * @return the number of hash functions
+     */
+    int hashCount () {
+        return _hashes;
+    }
+
+    /**
+     * Derives the i-th bit of a key from two hashes, so only one hash code is computed per key.
+     */
+    private long indexOf (int first, int second, int i) {
+        return Long.remainderUnsigned((long) first + (long) i * second, _bitCount);
+    }
+
+    /**
+     * Scrambles a key's hash code into 64 bits whose two halves serve as independent hashes. A
+     * null key hashes as 0.
+     */
+    private static long spread (Object key) {
+        long h = (key == null ? 0 : key.hashCode()) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 29;
+        return h;
+    }
+}
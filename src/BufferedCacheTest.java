@@ -0,0 +1,127 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Code to test <tt>BufferedLRUCache</tt> and its <tt>StripedReadBuffer</tt>.
+ */
+public class BufferedCacheTest {
+
+    /**
+     * Tests that buffered reads still decide the eviction order for a single thread
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        Cache<Integer, String> cache = new BufferedLRUCache<Integer, String>(provider, 3);
+        cache.get(0);
+        cache.get(1);
+        cache.get(2);
+        cache.get(0);
+        cache.get(3);
+        assertEquals(3, cache.size());
+
+        provider._referenced = false;
+        cache.get(0);
+        cache.get(2);
+        cache.get(3);
+        assertFalse(provider._referenced);
+        cache.get(1);
+        assertTrue(provider._referenced);
+        assertEquals(5, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that reads beyond a stripe's size are drained rather than lost for a single thread
+     */
+    @Test
+    public void testManyReadsBetweenWrites () {
+        Cache<Integer, String> cache = new BufferedLRUCache<Integer, String>(new CacheTest.TestDataProvider(), 2);
+        cache.get(0);
+        cache.get(1);
+        for (int i = 0; i < 100; i++) {
+            cache.get(i % 10 == 9 ? 1 : 0);
+        }
+        cache.get(0);
+        cache.get(2);
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getNumMisses());
+        cache.get(0);
+        assertEquals(3, cache.getNumMisses());
+    }
+
+    /**
+     * Tests put and invalidate
+     */
+    @Test
+    public void testPutAndInvalidate () {
+        Cache<Integer, String> cache = new BufferedLRUCache<Integer, String>(new CacheTest.TestDataProvider(), 2);
+        cache.put(0, "zero");
+        assertEquals("zero", cache.get(0));
+        cache.invalidate(0);
+        assertEquals(0, cache.size());
+        assertEquals("Value for key 0.", cache.get(0));
+        assertEquals(1, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that many threads reading and missing at once always get the right values and never
+     * leave the cache over capacity
+     */
+    @Test
+    public void testConcurrentReads () throws InterruptedException {
+        final int capacity = 64;
+        final Cache<Integer, String> cache = new BufferedLRUCache<Integer, String>(
+            new ConcurrentCacheTest.CountingDataProvider(), capacity);
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(100);
+                    if (!Integer.toString(key).equals(cache.get(key))) {
+                        errors.add("wrong value for " + key);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(capacity, cache.size());
+    }
+
+    /**
+     * Tests that a full stripe reports it and that draining empties it in order
+     */
+    @Test
+    public void testReadBufferIsLossy () {
+        StripedReadBuffer<Integer> buffer = new StripedReadBuffer<Integer>();
+        int recorded = 0;
+        while (buffer.offer(recorded) == StripedReadBuffer.SUCCESS) {
+            recorded++;
+        }
+        assertEquals(StripedReadBuffer.FULL, buffer.offer(-1));
+
+        List<Integer> drained = new ArrayList<Integer>();
+        buffer.drainTo(drained::add);
+        assertEquals(recorded, drained.size());
+        for (int i = 0; i < recorded; i++) {
+            assertEquals(i, (int) drained.get(i));
+        }
+        assertEquals(StripedReadBuffer.SUCCESS, buffer.offer(0));
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe least-recently-used <tt>Cache</tt> whose hits never take a lock. A hit is a
+ * <tt>ConcurrentHashMap</tt> lookup plus an entry in a <tt>StripedReadBuffer</tt>; the recency
+ * list is only changed under the eviction lock, by whichever thread holds it, which replays the
+ * buffered reads in a batch before each write and whenever a buffer fills up. Reads therefore
+ * scale with the number of threads instead of queueing on a lock as in <tt>ConcurrentLRUCache</tt>.
+ * <p>
+ * The buffers are lossy: under heavy contention some reads are dropped and do not refresh their
+ * pair, so the eviction order is an approximation of LRU that is exact for a single thread.
+ * Misses are loaded outside the lock with single-flight semantics, as in
+ * <tt>ConcurrentLRUCache</tt>. Keys must not be null.
+ */
+public class BufferedLRUCache<T, U> implements Cache<T, U> {
+
+    /**
+     * A stored pair and its place in the recency list. The links and the removed flag are only
+     * used under the eviction lock.
+     */
+    private static final class Node<T, U> {
+        final T _key;
+        volatile U _value;
+        Node<T, U> _next;    //the next (more recently used) node
+        Node<T, U> _last;    //the previous (less recently used) node
+        boolean _removed = false;    //whether the node has left the cache
+
+        Node (T key, U value) {
+            _key = key;
+            _value = value;
+        }
+    }
+
+    //the stored pairs, read without locking
+    private final ConcurrentHashMap<T, Node<T, U>> _map;
+    //the data provider consulted by the single in-flight load of a missing key
+    private final DataProvider<T, U> _provider;
+    //maximum number of pairs
+    private final int _maxCapacity;
+    //reads waiting to be applied to the recency list
+    private final StripedReadBuffer<Node<T, U>> _readBuffer = new StripedReadBuffer<Node<T, U>>();
+    //guards the recency list and every change to the map
+    private final ReentrantLock _evictionLock = new ReentrantLock();
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats = new CacheStats();
+    //loads currently in flight, shared by every caller missing the same key
+    private final ConcurrentMap<T, CompletableFuture<U>> _loading = new ConcurrentHashMap<T, CompletableFuture<U>>();
+
+    //the least recently used node
+    private Node<T, U> _head;
+    //the most recently used node
+    private Node<T, U> _tail;
+    //number of nodes in the list
+    private int _linked = 0;
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     */
+    public BufferedLRUCache (DataProvider<T, U> provider, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _provider = provider;
+        _maxCapacity = capacity;
+        _map = new ConcurrentHashMap<T, Node<T, U>>(capacity);
+    }
+
+    /**
+     * Returns the value associated with the specified key. A hit takes no lock; a miss either
+     * starts the key's load or waits for the one already in flight.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final Node<T, U> node = _map.get(key);
+        if (node != null) {
+            _stats.recordHit();
+            if (_readBuffer.offer(node) == StripedReadBuffer.FULL) {
+                tryDrain();
+            }
+            return node._value;
+        }
+
+        final CompletableFuture<U> load = new CompletableFuture<U>();
+        final CompletableFuture<U> inFlight = _loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            final U value = load(key, load);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            _loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Stores a value that was loaded or changed outside the cache, replacing any value already
+     * stored for the key and marking it as the most recently used.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        _evictionLock.lock();
+        try {
+            _loading.remove(key);
+            store(key, value);
+        } finally {
+            _evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        _evictionLock.lock();
+        try {
+            _loading.remove(key);
+            final Node<T, U> node = _map.remove(key);
+            if (node != null) {
+                unlink(node);
+                node._removed = true;
+                _linked--;
+            }
+        } finally {
+            _evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored in the cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _map.size();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Loads a missing key on behalf of every caller waiting on it and stores the result, unless
+     * the key was put or invalidated while it was loading.
+     * @param key the key
+     * @param load the in-flight load claimed by this caller
+     * @return the loaded value
+     */
+    private U load (T key, CompletableFuture<U> load) {
+        //another load may have finished between the first lookup and claiming this one
+        final Node<T, U> node = _map.get(key);
+        if (node != null) {
+            return node._value;
+        }
+
+        final U value = _stats.load(_provider, key);
+        _evictionLock.lock();
+        try {
+            if (_loading.get(key) == load) {
+                store(key, value);
+            }
+        } finally {
+            _evictionLock.unlock();
+        }
+        return value;
+    }
+
+    /**
+     * Stores a pair as the most recently used, after replaying the buffered reads, and evicts
+     * the least recently used pairs beyond the capacity. Called with the eviction lock held.
+     * @param key the key
+     * @param value the value
+     */
+    private void store (T key, U value) {
+        drainReadBuffer();
+        final Node<T, U> existing = _map.get(key);
+        if (existing != null) {
+            existing._value = value;
+            moveToTail(existing);
+            return;
+        }
+        final Node<T, U> node = new Node<T, U>(key, value);
+        _map.put(key, node);
+        linkLast(node);
+        _linked++;
+        while (_linked > _maxCapacity) {
+            final Node<T, U> eldest = _head;
+            _map.remove(eldest._key, eldest);
+            unlink(eldest);
+            eldest._removed = true;
+            _linked--;
+            _stats.recordEviction();
+        }
+    }
+
+    /**
+     * Replays the buffered reads if no other thread is busy with the recency list.
+     */
+    private void tryDrain () {
+        if (_evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                _evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves every buffered read's node to the most recently used end. Called with the eviction
+     * lock held.
+     */
+    private void drainReadBuffer () {
+        _readBuffer.drainTo(node -> {
+            if (!node._removed) {
+                moveToTail(node);
+            }
+        });
+    }
+
+    /**
+     * Moves a linked node to the most recently used end of the list
+     * @param node a node currently in the list
+     */
+    private void moveToTail (Node<T, U> node) {
+        if (node != _tail) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    /**
+     * Removes a node from the linked list, pointing its neighbors at each other
+     * @param node a node currently in the list
+     */
+    private void unlink (Node<T, U> node) {
+        if (node._last == null) {
+            _head = node._next;
+        }
+        else {
+            node._last._next = node._next;
+        }
+        if (node._next == null) {
+            _tail = node._last;
+        }
+        else {
+            node._next._last = node._last;
+        }
+        node._last = null;
+        node._next = null;
+    }
+
+    /**
+     * Appends a node to the most recently used end of the linked list
+     * @param node a node not currently in the list
+     */
+    private void linkLast (Node<T, U> node) {
+        node._last = _tail;
+        if (_tail == null) {
+            _head = node;
+        }
+        else {
+            _tail._next = node;
+        }
+        _tail = node;
+    }
+
+    /**
+     * Waits for a load started by another caller and returns its result, rethrowing the
+     * provider's own exception if the load failed.
+     * @param inFlight the load in flight for the key
+     * @return the loaded value
+     */
+    private static <U> U await (CompletableFuture<U> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
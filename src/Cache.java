@@ -1,3 +1,7 @@
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * CS 2103 2019 B-term (Whitehill)
  * A cache that associates keys with values.
@@ -5,7 +9,71 @@
 interface Cache<T, U> extends DataProvider<T, U> {
 	/**
 	 * Returns the number of cache misses since the object's instantiation.
-	 * @return the number of cache misses since the object's instantiation.
+	 * @return the number of cache misses since the object's instantiation, saturating at
+	 * <tt>Integer.MAX_VALUE</tt>; see <tt>getStats</tt> for the exact count
 	 */
 	int getNumMisses ();
+
+	/**
+	 * Returns the values associated with several keys. Hits are answered from the cache and, in
+	 * caches that support it, all misses are loaded with one <tt>DataProvider.loadAll</tt> call;
+	 * by default each key is looked up with <tt>get</tt>.
+	 * @param keys the keys; duplicates are looked up once
+	 * @return the value of each key, in the order the keys were given
+	 */
+	default Map<T, U> getAll (Collection<? extends T> keys) {
+		final Map<T, U> values = new LinkedHashMap<T, U>();
+		for (final T key : keys) {
+			if (!values.containsKey(key)) {
+				values.put(key, get(key));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Stores a value that was loaded or changed outside the cache, replacing any value already
+	 * stored for the key.
+	 * @param key the key
+	 * @param value the value to associate with the key
+	 */
+	void put (T key, U value);
+
+	/**
+	 * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again.
+	 * @param key the key
+	 */
+	void invalidate (T key);
+
+	/**
+	 * Removes the pairs stored for several keys; by default each key is removed with
+	 * <tt>invalidate</tt>.
+	 * @param keys the keys
+	 */
+	default void invalidateAll (Collection<? extends T> keys) {
+		for (final T key : keys) {
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * Returns the live statistics of the cache.
+	 * @return the statistics, updated as the cache is used
+	 */
+	CacheStats getStats ();
+
+	/**
+	 * Returns the number of (key,value) pairs currently stored in the cache.
+	 * @return the number of stored pairs
+	 */
+	int size ();
+
+	/**
+	 * Returns the total weight of the stored pairs, in whatever unit the cache's capacity is
+	 * measured in.
+	 * @return the current weight; by default the number of stored pairs
+	 */
+	default long weight () {
+		return size();
+	}
 }
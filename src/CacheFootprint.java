@@ -0,0 +1,101 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the retained heap per entry of full caches by filling each one and comparing the heap
+ * in use after garbage collection with and without it. Every entry maps to the same shared value,
+ * so only the cache's own layout is counted. Run with <tt>make footprint</tt>, or pass
+ * <tt>name=value</tt> arguments, e.g. <tt>java -Xmx4g CacheFootprint caches=lru,long-lru
+ * sizes=1000000,10000000</tt>.
+ */
+public class CacheFootprint {
+    //number of garbage collections requested before reading the heap in use
+    private static final int GC_ROUNDS = 4;
+    //the value every entry maps to
+    private static final Object SHARED_VALUE = new Object();
+
+    //fills a cache of the given size and returns it, by name, in the order they are measured
+    private static final Map<String, IntFunction<Object>> CACHES = new LinkedHashMap<String, IntFunction<Object>>();
+
+    static {
+        register("lru", size -> {
+            final LRUCache<Long, Object> cache = new LRUCache<Long, Object>(key -> SHARED_VALUE, size);
+            for (long key = 0; key < size; key++) {
+                cache.get(key);
+            }
+            return cache;
+        });
+        register("clock", size -> {
+            final ClockCache<Long, Object> cache = new ClockCache<Long, Object>(key -> SHARED_VALUE, size);
+            for (long key = 0; key < size; key++) {
+                cache.get(key);
+            }
+            return cache;
+        });
+        register("long-lru", size -> {
+            final LongObjectLRUCache<Object> cache = new LongObjectLRUCache<Object>(key -> SHARED_VALUE, size);
+            for (long key = 0; key < size; key++) {
+                cache.get(key);
+            }
+            return cache;
+        });
+    }
+
+    /**
+     * Adds a cache layout to the measurement.
+     * @param name the name used to select the cache on the command line
+     * @param filler creates a cache of the given size and fills it with that many entries
+     */
+    static void register (String name, IntFunction<Object> filler) {
+        CACHES.put(name, filler);
+    }
+
+    /**
+     * Measures the selected caches at the selected sizes and prints the bytes per entry.
+     * @param args <tt>name=value</tt> options; see the class comment
+     */
+    public static void main (String[] args) {
+        String caches = String.join(",", CACHES.keySet());
+        String sizes = "1000000,10000000";
+        for (final String arg : args) {
+            if (arg.startsWith("caches=")) {
+                caches = arg.substring("caches=".length());
+            }
+            else if (arg.startsWith("sizes=")) {
+                sizes = arg.substring("sizes=".length());
+            }
+        }
+
+        System.out.printf("%-12s %12s %16s %12s%n", "cache", "entries", "retained bytes", "bytes/entry");
+        for (final int size : Arrays.stream(sizes.split(",")).mapToInt(Integer::parseInt).toArray()) {
+            for (final String name : caches.split(",")) {
+                final long before = usedHeap();
+                final Object cache = CACHES.get(name).apply(size);
+                final long retained = usedHeap() - before;
+                //keep the cache reachable until the heap has been measured
+                Reference.reachabilityFence(cache);
+                System.out.printf("%-12s %,12d %,16d %12.1f%n", name, size, retained, (double) retained / size);
+            }
+        }
+    }
+
+    /**
+     * Returns the heap in use after a few rounds of garbage collection.
+     * @return the used heap, in bytes
+     */
+    private static long usedHeap () {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publishes cache statistics as JMX MXBeans on the platform MBean server, under the name
+ * <tt>lrucache:type=CacheStats,name=&lt;name&gt;</tt>.
+ */
+public class CacheManagement {
+    //the JMX domain and type of every registered cache
+    private static final String OBJECT_NAME_PREFIX = "lrucache:type=CacheStats,name=";
+    //the percentile exposed as the load latency attribute
+    private static final double P99 = 0.99;
+
+    /**
+     * Exposes one cache's statistics, size and weight.
+     */
+    private static class CacheStatsBean implements CacheStatsMXBean {
+        private final Cache<?, ?> _cache;
+
+        CacheStatsBean (Cache<?, ?> cache) {
+            _cache = cache;
+        }
+
+        public long getHitCount () {
+            return _cache.getStats().getHitCount();
+        }
+
+        public long getMissCount () {
+            return _cache.getStats().getMissCount();
+        }
+
+        public double getHitRate () {
+            return _cache.getStats().getHitRate();
+        }
+
+        public long getEvictionCount () {
+            return _cache.getStats().getEvictionCount();
+        }
+
+        public long getLoadSuccessCount () {
+            return _cache.getStats().getLoadSuccessCount();
+        }
+
+        public long getLoadFailureCount () {
+            return _cache.getStats().getLoadFailureCount();
+        }
+
+        public long getRefreshFailureCount () {
+            return _cache.getStats().getRefreshFailureCount();
+        }
+
+        public double getAverageLoadPenaltyNanos () {
+            return _cache.getStats().getAverageLoadPenalty();
+        }
+
+        public long getLoadLatencyP99Nanos () {
+            return _cache.getStats().getLoadLatencyPercentile(P99);
+        }
+
+        public long[] getLoadLatencyHistogram () {
+            return _cache.getStats().getLoadLatencyHistogram();
+        }
+
+        public int getSize () {
+            return _cache.size();
+        }
+
+        public long getWeight () {
+            return _cache.weight();
+        }
+    }
+
+    private CacheManagement () {
+    }
+
+    /**
+     * Registers a cache's statistics on the platform MBean server.
+     * @param name the name distinguishing this cache from others in the process
+     * @param cache the cache to expose
+     * @return the object name the MXBean was registered under
+     * @throws JMException if the name is malformed or already registered
+     */
+    public static ObjectName register (String name, Cache<?, ?> cache) throws JMException {
+        final ObjectName objectName = objectNameOf(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheStatsBean(cache), objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes a cache's statistics from the platform MBean server.
+     * @param name the name the cache was registered with
+     * @throws JMException if the name is malformed or not registered
+     */
+    public static void unregister (String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectNameOf(name));
+    }
+
+    /**
+     * Builds the object name of a cache, quoting the name so it may contain any character.
+     */
+    private static ObjectName objectNameOf (String name) throws JMException {
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One node of a distributed cache: a <tt>ConcurrentLRUCache</tt> holding the keys this node owns,
+ * served to <tt>DistributedCache</tt> clients over TCP with <tt>CacheProtocol</tt>.
+ * <p>
+ * Each connection is read by its own thread, which answers hits, puts and invalidations at once
+ * and hands each miss to a pool of loader threads. Responses are written as they are ready, out
+ * of order, so a slow load only holds up its own request and not the ones pipelined behind it.
+ * Responses are only flushed when no further request or response is already waiting, so a
+ * pipelined batch of requests is answered with batches of responses.
+ */
+public class CacheNode<T, U> implements AutoCloseable {
+    //the pairs owned by this node
+    private final ConcurrentLRUCache<T, U> _cache;
+    //serializes the keys
+    private final Serializer<T> _keys;
+    //serializes the values
+    private final Serializer<U> _values;
+    //accepts connections from clients
+    private final ServerSocket _server;
+    //the open client connections, closed with the node
+    private final Set<Socket> _connections = ConcurrentHashMap.newKeySet();
+    //accepts connections until the node is closed
+    private final Thread _acceptor;
+    //loads the misses of every connection, so each connection's reader never waits for a load
+    private final ExecutorService _loaders = Executors.newCachedThreadPool(runnable -> {
+        final Thread loader = new Thread(runnable, "cache-node-loader");
+        loader.setDaemon(true);
+        return loader;
+    });
+    //whether the node has been closed
+    private volatile boolean _closed = false;
+
+    /**
+     * Starts a node listening for clients.
+     * @param provider the data provider to consult for a cache miss on this node
+     * @param capacity the number of (key,value) pairs this node stores
+     * @param keys serializes the keys
+     * @param values serializes the values
+     * @param address where to listen; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public CacheNode (DataProvider<T, U> provider, int capacity, Serializer<T> keys, Serializer<U> values,
+                      InetSocketAddress address) throws IOException {
+        _cache = new ConcurrentLRUCache<T, U>(provider, capacity);
+        _keys = keys;
+        _values = values;
+        _server = new ServerSocket();
+        _server.bind(address);
+        _acceptor = new Thread(this::accept, "cache-node-" + getAddress().getPort());
+        _acceptor.setDaemon(true);
+        _acceptor.start();
+    }
+
+    /**
+     * Returns the address the node listens on.
+     * @return the bound address
+     */
+    public InetSocketAddress getAddress () {
+        return (InetSocketAddress) _server.getLocalSocketAddress();
+    }
+
+    /**
+     * Returns the cache of the pairs this node owns.
+     * @return the node's cache
+     */
+    ConcurrentLRUCache<T, U> cache () {
+        return _cache;
+    }
+
+    /**
+     * Stops listening and closes every client connection. Once this returns, new connections to
+     * the node's address are refused.
+     */
+    public void close () {
+        _closed = true;
+        closeQuietly(_server);
+        //the listening socket is only released once the thread blocked accepting on it wakes up
+        boolean interrupted = false;
+        while (_acceptor.isAlive()) {
+            try {
+                _acceptor.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (final Socket connection : _connections) {
+            closeQuietly(connection);
+        }
+        _loaders.shutdownNow();
+    }
+
+    /**
+     * Accepts clients until the node is closed, serving each on its own thread.
+     */
+    private void accept () {
+        while (!_closed) {
+            try {
+                final Socket connection = _server.accept();
+                connection.setTcpNoDelay(true);
+                _connections.add(connection);
+                final Thread server = new Thread(() -> serve(connection), "cache-node-connection");
+                server.setDaemon(true);
+                server.start();
+            } catch (IOException e) {
+                //the server socket was closed, or the client went away while connecting
+            }
+        }
+    }
+
+    /**
+     * Reads the requests of one client until it disconnects, answering each or handing it to a
+     * loader.
+     * @param connection the client's connection
+     */
+    private void serve (Socket connection) {
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            final Responses out = new Responses(connection);
+            while (true) {
+                final int id = in.readInt();
+                final byte op = in.readByte();
+                final byte[] key = CacheProtocol.readBytes(in);
+                final byte[] value = op == CacheProtocol.PUT ? CacheProtocol.readBytes(in) : null;
+                respond(out, id, op, key, value);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            //the client disconnected or the node was closed
+        } finally {
+            _connections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Answers one request through this node's cache, or hands a miss to a loader, which answers it
+     * once the key is loaded.
+     * @param out the client's responses
+     * @param id the id of the request
+     * @param op the requested operation
+     * @param key the serialized key
+     * @param value the serialized value of a <tt>PUT</tt>, or null
+     */
+    private void respond (Responses out, int id, byte op, byte[] key, byte[] value) throws IOException {
+        if ((op != CacheProtocol.GET && op != CacheProtocol.INVALIDATE && op != CacheProtocol.PUT) || key == null) {
+            out.write(id, CacheProtocol.FAILED, null);
+            return;
+        }
+        final T k;
+        final LRUCache.Element<T, U> hit;
+        final byte[] answer;
+        try {
+            k = _keys.deserialize(ByteBuffer.wrap(key));
+            if (op == CacheProtocol.INVALIDATE) {
+                _cache.invalidate(k);
+                out.write(id, CacheProtocol.DONE, null);
+                return;
+            }
+            if (op == CacheProtocol.PUT) {
+                _cache.put(k, value == null ? null : _values.deserialize(ByteBuffer.wrap(value)));
+                out.write(id, CacheProtocol.DONE, null);
+                return;
+            }
+            hit = _cache.lookup(k);
+            answer = hit == null || hit._value == null ? null : _values.serialize(hit._value);
+        } catch (RuntimeException e) {
+            out.write(id, CacheProtocol.FAILED, null);
+            return;
+        }
+        if (hit == null) {
+            _loaders.execute(() -> load(out, id, k));
+            return;
+        }
+        out.write(id, CacheProtocol.HIT, answer);
+    }
+
+    /**
+     * Loads a missed key on a loader thread and answers its request.
+     * @param out the client's responses
+     * @param id the id of the request
+     * @param key the key
+     */
+    private void load (Responses out, int id, T key) {
+        byte status = CacheProtocol.LOADED;
+        byte[] answer = null;
+        try {
+            final U value = _cache.get(key);
+            answer = value == null ? null : _values.serialize(value);
+        } catch (RuntimeException e) {
+            status = CacheProtocol.FAILED;
+        }
+        out.writeLoaded(id, status, answer);
+    }
+
+    /**
+     * The responses to one client, written by its reader and by the loaders as they become ready.
+     */
+    private static class Responses {
+        //the client's connection
+        private final Socket _connection;
+        //the client's output, written while this is locked
+        private final DataOutputStream _out;
+        //number of loaders waiting to write a response
+        private final AtomicInteger _waiting = new AtomicInteger();
+
+        /**
+         * @param connection the client's connection
+         */
+        Responses (Socket connection) throws IOException {
+            _connection = connection;
+            _out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        }
+
+        /**
+         * Writes a response from the reader, which flushes once it has no request left to read.
+         * @param id the id of the request answered
+         * @param status how the request went
+         * @param value the serialized value, or null
+         */
+        synchronized void write (int id, byte status, byte[] value) throws IOException {
+            CacheProtocol.writeResponse(_out, id, status, value);
+        }
+
+        /**
+         * Sends every response written so far.
+         */
+        synchronized void flush () throws IOException {
+            _out.flush();
+        }
+
+        /**
+         * Writes a response from a loader, flushing unless another loader is waiting to write
+         * too. If the connection has failed, it is closed so its reader stops.
+         * @param id the id of the request answered
+         * @param status how the request went
+         * @param value the serialized value, or null
+         */
+        void writeLoaded (int id, byte status, byte[] value) {
+            _waiting.incrementAndGet();
+            synchronized (this) {
+                final boolean last = _waiting.decrementAndGet() == 0;
+                try {
+                    CacheProtocol.writeResponse(_out, id, status, value);
+                    if (last) {
+                        _out.flush();
+                    }
+                } catch (IOException e) {
+                    closeQuietly(_connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes a socket, ignoring failures.
+     */
+    private static void closeQuietly (AutoCloseable socket) {
+        try {
+            socket.close();
+        } catch (Exception e) {
+            //already closed
+        }
+    }
+}
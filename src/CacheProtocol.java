@@ -0,0 +1,106 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary protocol spoken between <tt>DistributedCache</tt> clients and <tt>CacheNode</tt>
+ * servers. Both directions are a stream of frames over one TCP connection:
+ * <pre>
+ *   request:  int id, byte op, int keyLength, key bytes[, int valueLength, value bytes]
+ *   response: int id, byte status, int valueLength, value bytes    (length -1 for null)
+ * </pre>
+ * Only a <tt>PUT</tt> request carries a value.
+ * A client may send many requests before reading any response; the id matches each response
+ * to its request, so responses may be read as they arrive.
+ */
+final class CacheProtocol {
+    //asks for the value of a key, loading it on the owning node if needed
+    static final byte GET = 1;
+    //asks the owning node to drop its pair for a key
+    static final byte INVALIDATE = 2;
+    //asks the owning node to store a value for a key
+    static final byte PUT = 3;
+    //the value was already cached on the owning node
+    static final byte HIT = 0;
+    //the value was loaded by the owning node's data provider
+    static final byte LOADED = 1;
+    //the owning node could not produce a value
+    static final byte FAILED = 2;
+    //the owning node carried out an operation that returns no value
+    static final byte DONE = 3;
+    //length sent in place of a null value
+    private static final int NULL_LENGTH = -1;
+    //largest key or value accepted, so a damaged stream cannot demand huge buffers
+    private static final int MAX_BYTES = 64 << 20;
+
+    private CacheProtocol () {
+    }
+
+    /**
+     * Writes a request frame, without flushing.
+     * @param out the connection's output
+     * @param id identifies the request on its connection
+     * @param op the operation
+     * @param key the serialized key
+     * @param value the serialized value of a <tt>PUT</tt>, or null; ignored for other operations
+     */
+    static void writeRequest (DataOutputStream out, int id, byte op, byte[] key, byte[] value) throws IOException {
+        out.writeInt(id);
+        out.writeByte(op);
+        writeBytes(out, key);
+        if (op == PUT) {
+            writeBytes(out, value);
+        }
+    }
+
+    /**
+     * Writes a response frame, without flushing.
+     * @param out the connection's output
+     * @param id the id of the request answered
+     * @param status how the request went
+     * @param value the serialized value, or null
+     */
+    static void writeResponse (DataOutputStream out, int id, byte status, byte[] value) throws IOException {
+        out.writeInt(id);
+        out.writeByte(status);
+        writeBytes(out, value);
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     * @param out the connection's output
+     * @param bytes the bytes, or null
+     */
+    private static void writeBytes (DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed byte array: a key or a value.
+     * @param in the connection's input
+     * @return the bytes, or null
+     * @throws IOException if the stream ends or the length is impossible
+     */
+    static byte[] readBytes (DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > MAX_BYTES) {
+            throw new IOException("bad frame length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Replays a trace written by <tt>TraceRecorder</tt> against several eviction policies at many
+ * capacities and prints the hit rate of each, one row per capacity, so the columns read as
+ * hit-rate curves. The runs are independent and spread over a pool of threads.
+ * <p>
+ * Run with <tt>make simulate TRACE=file</tt>, or pass <tt>name=value</tt> arguments, e.g.
+ * <tt>java CacheSimulator trace=requests.trace policies=lru,arc,tinylfu
+ * capacities=1000,10000,100000 threads=4</tt>. Without <tt>capacities</tt>, the curve doubles
+ * from a small fraction of the distinct keys in the trace up to all of them.
+ */
+public class CacheSimulator {
+    //number of capacities on a curve when none are given
+    private static final int DEFAULT_CURVE_POINTS = 11;
+    //the value every key maps to; only hits and misses matter
+    private static final Object SHARED_VALUE = new Object();
+    //number of microseconds in a second
+    private static final double MICROS_PER_SECOND = 1e6;
+
+    //creates an empty cache of the given capacity, by policy name, in the order they are printed
+    private static final Map<String, IntFunction<Cache<Integer, Object>>> POLICIES =
+        new LinkedHashMap<String, IntFunction<Cache<Integer, Object>>>();
+
+    static {
+        register("lru", capacity -> new LRUCache<Integer, Object>(key -> SHARED_VALUE, capacity));
+        register("clock", capacity -> new ClockCache<Integer, Object>(key -> SHARED_VALUE, capacity));
+        register("arc", capacity -> new ARCCache<Integer, Object>(key -> SHARED_VALUE, capacity));
+        register("tinylfu", capacity -> new PolicyCache<Integer, Object>(key -> SHARED_VALUE,
+                                                                      new WTinyLFUPolicy<Integer>(capacity)));
+    }
+
+    /**
+     * Adds an eviction policy to the simulator.
+     * @param name the name used to select the policy on the command line
+     * @param factory creates an empty cache of the given capacity
+     */
+    static void register (String name, IntFunction<Cache<Integer, Object>> factory) {
+        POLICIES.put(name, factory);
+    }
+
+    /**
+     * A trace with its keys renumbered densely from zero, so each run can share one pool of boxed
+     * keys instead of boxing a key per request.
+     */
+    static class Replay {
+        //the dense number of each requested key, in request order
+        final int[] _ids;
+        //the boxed key for each dense number
+        final Integer[] _keys;
+
+        /**
+         * @param hashes the key hash codes of a trace, in request order
+         */
+        Replay (int[] hashes) {
+            final Map<Integer, Integer> numbering = new HashMap<Integer, Integer>();
+            _ids = new int[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                final Integer id = numbering.putIfAbsent(hashes[i], numbering.size());
+                _ids[i] = id == null ? numbering.size() - 1 : id;
+            }
+            _keys = new Integer[numbering.size()];
+            for (int id = 0; id < _keys.length; id++) {
+                _keys[id] = id;
+            }
+        }
+
+        /**
+         * Returns the number of distinct keys requested.
+         * @return the distinct key count
+         */
+        int distinctKeys () {
+            return _keys.length;
+        }
+    }
+
+    /**
+     * Simulates the selected policies and capacities and prints the hit-rate table.
+     * @param args <tt>name=value</tt> options; see the class comment
+     * @throws IOException if the trace cannot be read
+     */
+    public static void main (String[] args) throws IOException, InterruptedException {
+        final Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("trace")) {
+            throw new IllegalArgumentException("trace=<file> is required");
+        }
+        final TraceRecorder.Trace trace = TraceRecorder.read(Paths.get(options.get("trace")));
+        final Replay replay = new Replay(trace._keys);
+        final String[] policies = options.getOrDefault("policies", String.join(",", POLICIES.keySet())).split(",");
+        final int[] capacities = options.containsKey("capacities") ? parseInts(options.get("capacities"))
+                                                                   : defaultCapacities(replay.distinctKeys());
+        final int threads = Integer.parseInt(options.getOrDefault("threads",
+            Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+        final long span = trace._micros.length == 0 ? 0 : trace._micros[trace._micros.length - 1];
+        System.out.printf("%,d requests for %,d distinct keys over %.1f seconds%n", replay._ids.length,
+                          replay.distinctKeys(), span / MICROS_PER_SECOND);
+        final double[][] hitRates = simulate(replay, policies, capacities, threads);
+
+        System.out.printf("%12s", "capacity");
+        for (final String policy : policies) {
+            System.out.printf(" %10s", policy);
+        }
+        System.out.println();
+        for (int c = 0; c < capacities.length; c++) {
+            System.out.printf("%,12d", capacities[c]);
+            for (int p = 0; p < policies.length; p++) {
+                System.out.printf(" %9.2f%%", 100.0 * hitRates[p][c]);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Replays a trace against every pair of policy and capacity, several at a time.
+     * @param replay the trace
+     * @param policies the registered names of the policies
+     * @param capacities the capacities to simulate each policy at
+     * @param threads the number of simulations to run at once
+     * @return the hit rate, between 0 and 1, indexed by policy and then capacity
+     * @throws IllegalArgumentException if a policy is not registered
+     */
+    static double[][] simulate (Replay replay, String[] policies, int[] capacities, int threads)
+            throws InterruptedException {
+        final List<IntFunction<Cache<Integer, Object>>> factories = new ArrayList<IntFunction<Cache<Integer, Object>>>();
+        for (final String policy : policies) {
+            final IntFunction<Cache<Integer, Object>> factory = POLICIES.get(policy.trim());
+            if (factory == null) {
+                throw new IllegalArgumentException("unknown policy " + policy + "; choose from " + POLICIES.keySet());
+            }
+            factories.add(factory);
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            final List<List<Future<Double>>> runs = new ArrayList<List<Future<Double>>>();
+            for (final IntFunction<Cache<Integer, Object>> factory : factories) {
+                final List<Future<Double>> curve = new ArrayList<Future<Double>>();
+                for (final int capacity : capacities) {
+                    curve.add(pool.submit(() -> hitRate(factory.apply(capacity), replay)));
+                }
+                runs.add(curve);
+            }
+
+            final double[][] hitRates = new double[policies.length][capacities.length];
+            for (int p = 0; p < policies.length; p++) {
+                for (int c = 0; c < capacities.length; c++) {
+                    try {
+                        hitRates[p][c] = runs.get(p).get(c).get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("simulating " + policies[p] + " at " + capacities[c] + " failed",
+                                                        e.getCause());
+                    }
+                }
+            }
+            return hitRates;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Replays a trace against one cache.
+     * @param cache an empty cache
+     * @param replay the trace
+     * @return the fraction of requests that hit
+     */
+    static double hitRate (Cache<Integer, Object> cache, Replay replay) {
+        final Integer[] keys = replay._keys;
+        for (final int id : replay._ids) {
+            cache.get(keys[id]);
+        }
+        return replay._ids.length == 0 ? 0 : 1.0 - (double) cache.getStats().getMissCount() / replay._ids.length;
+    }
+
+    /**
+     * Returns capacities that double up to the number of distinct keys, where every policy hits on
+     * all but the first request for each key.
+     * @param distinctKeys the number of distinct keys in the trace
+     * @return the capacities, in increasing order
+     */
+    static int[] defaultCapacities (int distinctKeys) {
+        final List<Integer> capacities = new ArrayList<Integer>();
+        for (int capacity = Math.max(1, distinctKeys); capacity >= 1 && capacities.size() < DEFAULT_CURVE_POINTS;
+             capacity /= 2) {
+            capacities.add(0, capacity);
+        }
+        return capacities.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Parses <tt>name=value</tt> arguments.
+     */
+    private static Map<String, String> parseOptions (String[] args) {
+        final Map<String, String> options = new HashMap<String, String>();
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value but got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses a comma-separated list of ints, dropping repeats.
+     */
+    private static int[] parseInts (String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).distinct().toArray();
+    }
+}
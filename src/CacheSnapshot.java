@@ -0,0 +1,296 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the contents of an <tt>LRUCache</tt> to a binary snapshot file and loads them back, so a
+ * restarted process can begin with a warm cache instead of sending every first request to the
+ * <tt>DataProvider</tt>.
+ * <p>
+ * A snapshot is a header, then one record per pair from least to most recently used, then a
+ * trailer holding the number of records and a CRC32 of everything before it:
+ * <pre>
+ *   int magic, int version
+ *   int keyLength, int valueLength, key bytes, value bytes    (repeated)
+ *   long recordCount, long crc
+ * </pre>
+ * A null key or value is written with a length of -1 and no bytes.
+ * Saving writes a temporary file and renames it over the target, so a crash never leaves a
+ * half-written snapshot under the real name. Loading maps the file into memory in large windows,
+ * verifies the checksum before storing anything, and then puts the pairs in order, which restores
+ * their recency. Expiration times and refresh ages are not saved: restored pairs start afresh.
+ */
+public class CacheSnapshot {
+    //identifies a snapshot file
+    private static final int MAGIC = 0x4C525553;
+    //the version of the format written
+    private static final int VERSION = 1;
+    //bytes taken by the magic number and version
+    private static final int HEADER_BYTES = 8;
+    //bytes taken by the lengths at the start of a record
+    private static final int RECORD_HEADER_BYTES = 8;
+    //the length written for a null key or value
+    private static final int NULL_LENGTH = -1;
+    //the bytes written for a null key or value
+    private static final byte[] NO_BYTES = new byte[0];
+    //bytes taken by the record count and checksum
+    private static final int TRAILER_BYTES = 16;
+    //bytes taken by the checksum alone
+    private static final int CHECKSUM_BYTES = 8;
+    //size of the buffer records are gathered in before being written
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    //largest part of the file mapped at once when loading
+    private static final int MAP_WINDOW_BYTES = Integer.MAX_VALUE;
+
+    /**
+     * Gathers the bytes of a snapshot into a direct buffer, writing it out and adding it to the
+     * checksum whenever it fills.
+     */
+    private static class SnapshotWriter {
+        private final FileChannel _channel;
+        private final ByteBuffer _buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private final CRC32 _crc = new CRC32();
+
+        SnapshotWriter (FileChannel channel) {
+            _channel = channel;
+        }
+
+        void putInt (int value) throws IOException {
+            if (_buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            _buffer.putInt(value);
+        }
+
+        void putLong (long value) throws IOException {
+            if (_buffer.remaining() < Long.BYTES) {
+                flush();
+            }
+            _buffer.putLong(value);
+        }
+
+        void putBytes (byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!_buffer.hasRemaining()) {
+                    flush();
+                }
+                final int length = Math.min(_buffer.remaining(), bytes.length - offset);
+                _buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes out the gathered bytes, adding them to the checksum.
+         */
+        void flush () throws IOException {
+            _buffer.flip();
+            _crc.update(_buffer.duplicate());
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+            _buffer.clear();
+        }
+
+        /**
+         * Writes out the gathered bytes followed by their checksum, which is not itself summed.
+         */
+        void finish () throws IOException {
+            flush();
+            _buffer.putLong(_crc.getValue());
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+        }
+    }
+
+    /**
+     * Maps a snapshot file one window at a time, moving the window whenever a requested range
+     * falls outside it.
+     */
+    private static class SnapshotReader {
+        private final FileChannel _channel;
+        private final Path _file;
+        private final long _end;
+        private final int _windowBytes;
+        private MappedByteBuffer _window;
+        private long _windowStart;
+
+        SnapshotReader (FileChannel channel, Path file, long end, int windowBytes) {
+            _channel = channel;
+            _file = file;
+            _end = end;
+            _windowBytes = windowBytes;
+        }
+
+        /**
+         * Returns a buffer holding a range of the file.
+         * @param position where the range starts
+         * @param length the length of the range
+         * @return a buffer whose position is 0 and whose limit is <tt>length</tt>
+         * @throws IOException if the range is not within the file or cannot be mapped
+         */
+        ByteBuffer slice (long position, int length) throws IOException {
+            if (length < 0 || length > _end - position) {
+                throw corrupt(_file, "record runs past the end of the file");
+            }
+            if (_window == null || position < _windowStart || position + length > _windowStart + _window.capacity()) {
+                if (length > _windowBytes) {
+                    throw corrupt(_file, "record of " + length + " bytes is larger than the map window");
+                }
+                _windowStart = position;
+                _window = _channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(_windowBytes, _end - position));
+            }
+            return _window.slice((int) (position - _windowStart), length);
+        }
+    }
+
+    private CacheSnapshot () {
+    }
+
+    /**
+     * Saves every unexpired pair of a cache, from least to most recently used.
+     * @param cache the cache to save; it must not be used by another thread meanwhile
+     * @param file where to write the snapshot, replacing any file already there
+     * @param keys serializes the keys
+     * @param values serializes the values
+     * @return the number of pairs saved
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static <T, U> long save (LRUCache<T, U> cache, Path file, Serializer<T> keys, Serializer<U> values)
+            throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        final long[] count = {0};
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final SnapshotWriter writer = new SnapshotWriter(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            try {
+                cache.forEach((key, value) -> {
+                    final byte[] keyBytes = key == null ? NO_BYTES : keys.serialize(key);
+                    final byte[] valueBytes = value == null ? NO_BYTES : values.serialize(value);
+                    try {
+                        writer.putInt(key == null ? NULL_LENGTH : keyBytes.length);
+                        writer.putInt(value == null ? NULL_LENGTH : valueBytes.length);
+                        writer.putBytes(keyBytes);
+                        writer.putBytes(valueBytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.putLong(count[0]);
+            writer.finish();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+
+    /**
+     * Loads a snapshot into a cache, as if its pairs had been put from least to most recently
+     * used. If the snapshot holds more than the cache can, the least recently used pairs are
+     * evicted as usual. Nothing is stored unless the whole file passes its checksum.
+     * @param cache the cache to load into; it must not be used by another thread meanwhile
+     * @param file the snapshot written by <tt>save</tt>
+     * @param keys deserializes the keys
+     * @param values deserializes the values
+     * @return the number of pairs read from the snapshot
+     * @throws IOException if the snapshot cannot be read, or is truncated or corrupt
+     */
+    public static <T, U> long load (LRUCache<T, U> cache, Path file, Serializer<T> keys, Serializer<U> values)
+            throws IOException {
+        return load(cache, file, keys, values, MAP_WINDOW_BYTES);
+    }
+
+    /**
+     * Loads a snapshot into a cache, mapping at most <tt>windowBytes</tt> of the file at once.
+     */
+    static <T, U> long load (LRUCache<T, U> cache, Path file, Serializer<T> keys, Serializer<U> values,
+                             int windowBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES) {
+                throw corrupt(file, "file is too short");
+            }
+            final SnapshotReader reader = new SnapshotReader(channel, file, size, windowBytes);
+            verifyChecksum(reader, file, size - CHECKSUM_BYTES, windowBytes);
+
+            final ByteBuffer header = reader.slice(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw corrupt(file, "not a snapshot of this version");
+            }
+            final long end = size - TRAILER_BYTES;
+            final long expected = reader.slice(end, Long.BYTES).getLong();
+
+            long position = HEADER_BYTES;
+            long count = 0;
+            while (position < end) {
+                final ByteBuffer lengths = reader.slice(position, RECORD_HEADER_BYTES);
+                final int keyLength = lengths.getInt();
+                final int valueLength = lengths.getInt();
+                position += RECORD_HEADER_BYTES;
+                if (keyLength < NULL_LENGTH || valueLength < NULL_LENGTH) {
+                    throw corrupt(file, "negative record length");
+                }
+                final T key = keyLength == NULL_LENGTH ? null : keys.deserialize(reader.slice(position, keyLength));
+                position += Math.max(0, keyLength);
+                final U value = valueLength == NULL_LENGTH ? null : values.deserialize(reader.slice(position, valueLength));
+                position += Math.max(0, valueLength);
+                cache.put(key, value);
+                count++;
+            }
+            if (position != end || count != expected) {
+                throw corrupt(file, "expected " + expected + " records but found " + count);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Checks the stored checksum against the bytes before it.
+     * @param reader maps the file
+     * @param file the snapshot, for error messages
+     * @param summed the number of bytes covered by the checksum
+     * @param windowBytes the largest range to sum at once
+     * @throws IOException if the checksums differ
+     */
+    private static void verifyChecksum (SnapshotReader reader, Path file, long summed, int windowBytes)
+            throws IOException {
+        final CRC32 crc = new CRC32();
+        for (long position = 0; position < summed; position += windowBytes) {
+            crc.update(reader.slice(position, (int) Math.min(windowBytes, summed - position)));
+        }
+        if (reader.slice(summed, CHECKSUM_BYTES).getLong() != crc.getValue()) {
+            throw corrupt(file, "checksum mismatch");
+        }
+    }
+
+    /**
+     * Builds the exception thrown for a truncated or damaged snapshot.
+     */
+    private static IOException corrupt (Path file, String reason) {
+        return new IOException("corrupt cache snapshot " + file + ": " + reason);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of a cache: hits, misses, evictions, load outcomes, failed background refreshes
+ * and load latency. Counters are
+ * striped <tt>LongAdder</tt>s, so recording is cheap even when many threads share the cache, and
+ * they are <tt>long</tt>s so they do not overflow on long-running processes. Reads are not atomic
+ * snapshots; counters read together may be a few events apart under concurrent updates.
+ */
+public class CacheStats {
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _loadSuccesses = new LongAdder();
+    private final LongAdder _loadFailures = new LongAdder();
+    private final LongAdder _refreshFailures = new LongAdder();
+    private final LongAdder _totalLoadNanos = new LongAdder();
+    private final LatencyHistogram _loadLatency = new LatencyHistogram();
+
+    /**
+     * Loads a missing key through a data provider, recording the miss and either the load's
+     * latency or its failure. Exceptions from the provider are rethrown.
+     * @param provider the data provider to consult
+     * @param key the key that missed
+     * @return the loaded value
+     */
+    <T, U> U load (DataProvider<T, U> provider, T key) {
+        recordMiss();
+        final long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            final U value = provider.get(key);
+            loaded = true;
+            return value;
+        } finally {
+            recordLoad(System.nanoTime() - start, loaded);
+        }
+    }
+
+    /**
+     * Loads a batch of missing keys with one <tt>loadAll</tt> call, recording one miss per key and
+     * the batch's latency or failure as a single load. Exceptions from the provider are rethrown.
+     * @param provider the data provider to consult
+     * @param keys the keys that missed, without duplicates
+     * @return the loaded values
+     */
+    <T, U> Map<T, U> loadAll (DataProvider<T, U> provider, Collection<? extends T> keys) {
+        _misses.add(keys.size());
+        final long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            final Map<T, U> values = provider.loadAll(keys);
+            loaded = true;
+            return values;
+        } finally {
+            recordLoad(System.nanoTime() - start, loaded);
+        }
+    }
+
+    /**
+     * Reloads a stored key in the background, recording the load's latency or its failure, and
+     * counting a failure as a failed refresh too. No hit or miss is recorded, since the read that
+     * started the refresh has already been counted. Exceptions from the provider are rethrown.
+     * @param provider the data provider to consult
+     * @param key the key to reload
+     * @return the reloaded value
+     */
+    <T, U> U refresh (DataProvider<T, U> provider, T key) {
+        final long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            final U value = provider.get(key);
+            loaded = true;
+            return value;
+        } finally {
+            recordLoad(System.nanoTime() - start, loaded);
+            if (!loaded) {
+                _refreshFailures.increment();
+            }
+        }
+    }
+
+    /**
+     * Records a hit.
+     */
+    void recordHit () {
+        _hits.increment();
+    }
+
+    /**
+     * Records a miss.
+     */
+    void recordMiss () {
+        _misses.increment();
+    }
+
+    /**
+     * Records an eviction.
+     */
+    void recordEviction () {
+        _evictions.increment();
+    }
+
+    /**
+     * Records the outcome of a load.
+     * @param nanos how long the load took
+     * @param succeeded whether the load returned a value rather than throwing
+     */
+    void recordLoad (long nanos, boolean succeeded) {
+        (succeeded ? _loadSuccesses : _loadFailures).increment();
+        _totalLoadNanos.add(nanos);
+        _loadLatency.record(nanos);
+    }
+
+    /**
+     * Returns the number of gets answered from the cache.
+     * @return the hit count
+     */
+    public long getHitCount () {
+        return _hits.sum();
+    }
+
+    /**
+     * Returns the number of gets that had to load their value.
+     * @return the miss count
+     */
+    public long getMissCount () {
+        return _misses.sum();
+    }
+
+    /**
+     * Returns the share of gets answered from the cache.
+     * @return the hit rate between 0 and 1, or 1 if there has been no get yet
+     */
+    public double getHitRate () {
+        final long hits = getHitCount();
+        final long requests = hits + getMissCount();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the number of pairs removed to make room for others.
+     * @return the eviction count
+     */
+    public long getEvictionCount () {
+        return _evictions.sum();
+    }
+
+    /**
+     * Returns the number of loads that returned a value.
+     * @return the load success count
+     */
+    public long getLoadSuccessCount () {
+        return _loadSuccesses.sum();
+    }
+
+    /**
+     * Returns the number of loads that threw an exception.
+     * @return the load failure count
+     */
+    public long getLoadFailureCount () {
+        return _loadFailures.sum();
+    }
+
+    /**
+     * Returns the number of background refreshes that threw an exception, leaving the old value
+     * in place. These are also counted as load failures.
+     * @return the refresh failure count
+     */
+    public long getRefreshFailureCount () {
+        return _refreshFailures.sum();
+    }
+
+    /**
+     * Returns the total time spent loading, successfully or not.
+     * @return the total load time in nanoseconds
+     */
+    public long getTotalLoadTime () {
+        return _totalLoadNanos.sum();
+    }
+
+    /**
+     * Returns the average time spent per load.
+     * @return the average load time in nanoseconds, or 0 if nothing has been loaded
+     */
+    public double getAverageLoadPenalty () {
+        final long loads = getLoadSuccessCount() + getLoadFailureCount();
+        return loads == 0 ? 0.0 : (double) getTotalLoadTime() / loads;
+    }
+
+    /**
+     * Returns an upper bound of a percentile of load latency, accurate to within a factor of two.
+     * @param percentile a fraction between 0 and 1, e.g. 0.99
+     * @return the latency in nanoseconds, or 0 if nothing has been loaded
+     */
+    public long getLoadLatencyPercentile (double percentile) {
+        return _loadLatency.getPercentile(percentile);
+    }
+
+    /**
+     * Returns the load latency histogram; bucket <tt>b</tt> counts loads that took between
+     * <tt>2^b</tt> and <tt>2^(b+1)</tt> nanoseconds.
+     * @return the number of loads in each bucket
+     */
+    public long[] getLoadLatencyHistogram () {
+        return _loadLatency.getCounts();
+    }
+
+    /**
+     * Returns the miss count as an <tt>int</tt> for <tt>Cache.getNumMisses</tt>, saturating
+     * instead of overflowing.
+     * @return the miss count, at most <tt>Integer.MAX_VALUE</tt>
+     */
+    int getNumMisses () {
+        return (int) Math.min(Integer.MAX_VALUE, getMissCount());
+    }
+}
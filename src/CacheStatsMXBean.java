@@ -0,0 +1,33 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * The JMX view of a cache's statistics, registered through <tt>CacheManagement</tt>.
+ */
+public interface CacheStatsMXBean {
+	long getHitCount ();
+
+	long getMissCount ();
+
+	double getHitRate ();
+
+	long getEvictionCount ();
+
+	long getLoadSuccessCount ();
+
+	long getLoadFailureCount ();
+
+	long getRefreshFailureCount ();
+
+	double getAverageLoadPenaltyNanos ();
+
+	long getLoadLatencyP99Nanos ();
+
+	long[] getLoadLatencyHistogram ();
+
+	int getSize ();
+
+	long getWeight ();
+}
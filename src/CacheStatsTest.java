@@ -0,0 +1,126 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Code to test the statistics every <tt>Cache</tt> records.
+ */
+public class CacheStatsTest {
+    /**
+     * Implements a data provider that fails for negative keys
+     */
+    public static class FailingDataProvider implements DataProvider<Integer, String> {
+        /**
+         * Returns a value for a given key
+         * @param key any non-negative integer
+         * @return the key converted to a string
+         */
+        public String get (Integer key) {
+            if (key < 0) {
+                throw new IllegalArgumentException("no value for " + key);
+            }
+            return Integer.toString(key);
+        }
+    }
+
+    /**
+     * Issues gets that produce 3 hits, 5 misses (one of them failing) and 2 evictions in a cache
+     * of capacity 2
+     */
+    private static void exercise (Cache<Integer, String> cache) {
+        cache.get(0);
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        cache.get(2);
+        cache.get(3);
+        cache.get(3);
+        try {
+            cache.get(-1);
+            fail("expected the provider's exception");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Checks the counters left by <tt>exercise</tt>
+     */
+    private static void assertExercised (Cache<Integer, String> cache) {
+        CacheStats stats = cache.getStats();
+        assertEquals(3, stats.getHitCount());
+        assertEquals(5, stats.getMissCount());
+        assertEquals(2, stats.getEvictionCount());
+        assertEquals(4, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadFailureCount());
+        assertEquals(3.0 / 8, stats.getHitRate(), 1e-9);
+        assertEquals(5, cache.getNumMisses());
+        assertEquals(2, cache.size());
+
+        long loads = 0;
+        for (long count : stats.getLoadLatencyHistogram()) {
+            loads += count;
+        }
+        assertEquals(5, loads);
+        assertTrue(stats.getLoadLatencyPercentile(0.99) > 0);
+    }
+
+    /**
+     * Tests the statistics of an <tt>LRUCache</tt>
+     */
+    @Test
+    public void testLRUCacheStats () {
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(new FailingDataProvider(), 2);
+        exercise(cache);
+        assertExercised(cache);
+    }
+
+    /**
+     * Tests the statistics of a <tt>ConcurrentLRUCache</tt>, whose segments share one record
+     */
+    @Test
+    public void testConcurrentLRUCacheStats () {
+        Cache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(new FailingDataProvider(), 2, 1);
+        exercise(cache);
+        assertExercised(cache);
+    }
+
+    /**
+     * Tests the statistics of a <tt>PolicyCache</tt>
+     */
+    @Test
+    public void testPolicyCacheStats () {
+        Cache<Integer, String> cache = new PolicyCache<Integer, String>(new FailingDataProvider(), new LRUPolicy<Integer>(2));
+        exercise(cache);
+        assertExercised(cache);
+    }
+
+    /**
+     * Tests that the statistics can be read through JMX
+     */
+    @Test
+    public void testJMX () throws Exception {
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(new FailingDataProvider(), 2);
+        exercise(cache);
+
+        ObjectName name = CacheManagement.register("test \"cache\"", cache);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(3L, server.getAttribute(name, "HitCount"));
+            assertEquals(5L, server.getAttribute(name, "MissCount"));
+            assertEquals(2L, server.getAttribute(name, "EvictionCount"));
+            assertEquals(1L, server.getAttribute(name, "LoadFailureCount"));
+            assertEquals(2, server.getAttribute(name, "Size"));
+            assertEquals(2L, server.getAttribute(name, "Weight"));
+        } finally {
+            CacheManagement.unregister("test \"cache\"");
+        }
+    }
+}
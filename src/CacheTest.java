@@ -8,6 +8,10 @@ import org.junit.Before;
 import org.junit.Test;
 import java.util.Random;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Code to test an <tt>LRUCache</tt> implementation.
@@ -82,6 +86,26 @@ public class CacheTest {
         } 
     }
 
+    /**
+     * Implements a data provider that counts the batches it is asked to load
+     */
+    public static class BatchDataProvider extends TestDataProvider {
+        public int _batches = 0;
+        public int _batchedKeys = 0;
+
+        /**
+         * Returns the values for several keys in one call
+         * @param keys the keys to load
+         * @return the value of each key
+         */
+        @Override
+        public Map<Integer, String> loadAll (Collection<? extends Integer> keys) {
+            _batches++;
+            _batchedKeys += keys.size();
+            return super.loadAll(keys);
+        }
+    }
+
     /**
      * Implements the Key class used to test an arbitrary type key.
      */
@@ -134,6 +158,26 @@ public class CacheTest {
         assertTrue(fromCache == "Value for key 0.");
     }
     
+    /**
+     * Tests a cache of one when a second key evicts the first
+     */
+    @Test
+    public void testCacheSizeOneEviction() {
+        TestDataProvider provider = new TestDataProvider();
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(provider, 1);
+
+        cache.get(0);
+        assertTrue(cache.get(1) == "Value for key 1.");
+
+        //0 was evicted by 1, 1 is still cached
+        provider._referenced = false;
+        cache.get(1);
+        assertFalse(provider._referenced);
+        cache.get(0);
+        assertTrue(provider._referenced);
+        assertTrue(cache.getNumMisses() == 3);
+    }
+    
     /**
      * Tests trying to add a new element to cache after the cache is full
      */
@@ -366,6 +410,36 @@ public class CacheTest {
         assertTrue(cache.getNumMisses() == provider._timesReferenced);
     }
 
+    /**
+     * Tests that getAll answers hits from the cache and loads every miss in one batch
+     */
+    @Test
+    public void testGetAll () {
+        BatchDataProvider provider = new BatchDataProvider();
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(provider, 3);
+        cache.get(0);
+        cache.get(1);
+
+        Map<Integer, String> values = cache.getAll(Arrays.asList(2, 0, 3, 2, 7));
+        assertEquals(Arrays.asList(2, 0, 3, 7), new ArrayList<Integer>(values.keySet()));
+        assertTrue(values.get(0) == "Value for key 0.");
+        assertTrue(values.get(2) == "Value for key 2.");
+        assertTrue(values.get(3) == "Value for key 3.");
+        assertNull(values.get(7));
+        assertEquals(1, provider._batches);
+        assertEquals(3, provider._batchedKeys);
+        assertEquals(5, cache.getNumMisses());
+
+        //the three misses fill the cache, evicting 1 and then 0, which the hit made more recent
+        provider._referenced = false;
+        cache.get(2);
+        cache.get(3);
+        cache.get(7);
+        assertFalse(provider._referenced);
+        cache.get(0);
+        assertTrue(provider._referenced);
+    }
+
     /**
      * Test a cache with size 25 and getting 100 random values
      */
@@ -468,4 +542,71 @@ public class CacheTest {
         assertTrue(cache.getNumMisses() == provider._timesReferenced && 
                    cache.getNumMisses() == fakeCacheMisses);
     }
+
+    /**
+     * Tests random gets, puts and invalidations of keys with colliding hash codes against an
+     * access-ordered <tt>LinkedHashMap</tt>, including which pair each eviction removes, while the
+     * cache reuses evicted elements and grows its hash table
+     */
+    @Test
+    public void testMatchesAccessOrderedMap () {
+        final int capacity = 50;
+        final String[] pairs = { "Aa", "BB" };
+        final ArrayList<String> evicted = new ArrayList<String>();
+        final ArrayList<String> expectedEvicted = new ArrayList<String>();
+        final Map<String, String> reference = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, String> eldest) {
+                if (size() > capacity) {
+                    expectedEvicted.add(eldest.getKey() + "=" + eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        LRUCache<String, String> cache = new LRUCache<String, String>(key -> "loaded " + key, capacity);
+        cache.setRemovalListener((key, value, cause) -> {
+            if (cause == RemovalCause.EVICTED) {
+                evicted.add(key + "=" + value);
+            }
+        });
+        Random rand = new Random(22);
+
+        for (int i = 0; i < 50000; i++) {
+            //"Aa" and "BB" have equal hash codes, so every prefix of three shares one
+            String key = pairs[rand.nextInt(2)] + pairs[rand.nextInt(2)] + pairs[rand.nextInt(2)] + rand.nextInt(20);
+            int operation = rand.nextInt(10);
+            if (operation == 0) {
+                cache.put(key, "put " + i);
+                reference.put(key, "put " + i);
+            }
+            else if (operation == 1) {
+                cache.invalidate(key);
+                reference.remove(key);
+            }
+            else {
+                String expected = reference.get(key);
+                if (expected == null) {
+                    expected = "loaded " + key;
+                    reference.put(key, expected);
+                }
+                assertEquals(expected, cache.get(key));
+            }
+            assertEquals(reference.size(), cache.size());
+        }
+        assertEquals(expectedEvicted, evicted);
+    }
+
+    /**
+     * Tests that a null key is stored and found like any other
+     */
+    @Test
+    public void testNullKey () {
+        LRUCache<String, String> cache = new LRUCache<String, String>(key -> key == null ? "none" : key, 2);
+        assertEquals("none", cache.get(null));
+        assertEquals("none", cache.get(null));
+        assertEquals(1, cache.getNumMisses());
+        cache.invalidate(null);
+        assertEquals(0, cache.size());
+    }
 }
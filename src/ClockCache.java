@@ -0,0 +1,306 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * A cache that approximates least-recently-used eviction with the CLOCK algorithm. Entries live in
+ * a circular array of slots, found through an open-addressing hash table of slot numbers, and each
+ * slot has a reference bit. A hit only sets its slot's bit; there is no recency list to relink and
+ * no per-entry node, so an entry costs a few words of array space plus one bit. On a miss with a
+ * full cache the clock hand sweeps the slots, clearing set bits, and evicts the first entry whose
+ * bit is already clear: one that has not been used since the hand last passed it.
+ */
+public class ClockCache<T, U> implements Cache<T, U> {
+    //the hash table is kept at most this full so probe sequences stay short
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    //marks the absence of a slot in lookups
+    private static final int NIL = -1;
+    //the number of reference bits packed into each word of the bitset
+    private static final int BITS_PER_WORD = Long.SIZE;
+    //the 32-bit golden ratio, used to spread hash codes across the hash table
+    private static final int GOLDEN_GAMMA = 0x9E3779B9;
+
+    //the data provider to consult for a cache miss
+    private final DataProvider<T, U> _provider;
+    //maximum capacity of the cache
+    private final int _maxCapacity;
+
+    //the key, value and spread hash code of the entry in each slot
+    private final Object[] _keys;
+    private final Object[] _values;
+    private final int[] _hashes;
+    //one reference bit per slot, set when the slot is used and cleared as the clock hand passes
+    private final long[] _referenced;
+
+    //open-addressing table of slot numbers plus one; zero marks an empty bucket
+    private final int[] _table;
+    //mask that maps a hash onto a bucket; the table length is a power of two
+    private final int _mask;
+
+    //the next slot the clock hand will examine
+    private int _hand = 0;
+    //the number of slots in use; slots below it are occupied
+    private int _size = 0;
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     */
+    public ClockCache (DataProvider<T, U> provider, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _provider = provider;
+        _maxCapacity = capacity;
+        _keys = new Object[capacity];
+        _values = new Object[capacity];
+        _hashes = new int[capacity];
+        _referenced = new long[(capacity + BITS_PER_WORD - 1) / BITS_PER_WORD];
+
+        final int buckets = Integer.highestOneBit((int) Math.ceil(capacity / MAX_LOAD_FACTOR) - 1) << 1;
+        _table = new int[Math.max(2, buckets)];
+        _mask = _table.length - 1;
+    }
+
+    /**
+     * Returns the value associated with the specified key.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    @SuppressWarnings("unchecked")
+    public U get (T key) {
+        final int hash = spread(key.hashCode());
+        final int slot = find(key, hash);
+        if (slot != NIL) {
+            _stats.recordHit();
+            setReferenced(slot);
+            return (U) _values[slot];
+        }
+
+        final U value = _stats.load(_provider, key);
+        addElement(key, hash, value);
+        return value;
+    }
+
+    /**
+     * Stores a value that was loaded or changed outside the cache. An existing key keeps its slot
+     * and counts as used; a new key is stored as if it had been loaded.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        final int hash = spread(key.hashCode());
+        final int slot = find(key, hash);
+        if (slot != NIL) {
+            _values[slot] = value;
+            setReferenced(slot);
+            return;
+        }
+        addElement(key, hash, value);
+    }
+
+    /**
+     * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again. The
+     * entry in the last occupied slot moves into the freed slot, keeping the occupied slots dense.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        final int slot = find(key, spread(key.hashCode()));
+        if (slot == NIL) {
+            return;
+        }
+        removeFromTable(slot);
+        final int last = --_size;
+        if (slot != last) {
+            moveSlot(last, slot);
+        }
+        _keys[last] = null;
+        _values[last] = null;
+        clearReferenced(last);
+        if (_hand >= _size) {
+            _hand = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored in the cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _size;
+    }
+
+    /**
+     * Stores a new pair, taking a free slot or else the one the clock hand settles on. The new
+     * entry's reference bit starts clear, so an entry that is never used again is the first to go.
+     * @param key is the key attribute of the pair
+     * @param hash is the spread hash code of the key
+     * @param value is the value attribute of the pair
+     */
+    private void addElement (T key, int hash, U value) {
+        final int slot;
+        if (_size < _maxCapacity) {
+            slot = _size++;
+        }
+        else {
+            slot = sweep();
+            removeFromTable(slot);
+            _stats.recordEviction();
+        }
+        _keys[slot] = key;
+        _values[slot] = value;
+        _hashes[slot] = hash;
+        clearReferenced(slot);
+        insertIntoTable(slot);
+    }
+
+    /**
+     * Advances the clock hand past every slot whose reference bit is set, clearing those bits, and
+     * returns the first slot whose bit was already clear. At most one full turn is needed.
+     * @return the slot to evict
+     */
+    private int sweep () {
+        while (true) {
+            final int slot = _hand;
+            _hand = slot + 1 == _size ? 0 : slot + 1;
+            if (!isReferenced(slot)) {
+                return slot;
+            }
+            clearReferenced(slot);
+        }
+    }
+
+    /**
+     * Moves the entry in one slot to another, free slot, carrying its reference bit along.
+     * @param from the occupied slot
+     * @param to the free slot
+     */
+    private void moveSlot (int from, int to) {
+        int bucket = _hashes[from] & _mask;
+        while (_table[bucket] != from + 1) {
+            bucket = (bucket + 1) & _mask;
+        }
+        _table[bucket] = to + 1;
+        _keys[to] = _keys[from];
+        _values[to] = _values[from];
+        _hashes[to] = _hashes[from];
+        if (isReferenced(from)) {
+            setReferenced(to);
+        }
+        else {
+            clearReferenced(to);
+        }
+    }
+
+    /**
+     * Finds the slot holding a key.
+     * @param key the key
+     * @param hash the spread hash code of the key
+     * @return the slot, or <tt>NIL</tt> if the key is not stored
+     */
+    private int find (Object key, int hash) {
+        int bucket = hash & _mask;
+        int entry;
+        while ((entry = _table[bucket]) != 0) {
+            final int slot = entry - 1;
+            if (_hashes[slot] == hash && key.equals(_keys[slot])) {
+                return slot;
+            }
+            bucket = (bucket + 1) & _mask;
+        }
+        return NIL;
+    }
+
+    /**
+     * Adds an occupied slot to the hash table.
+     * @param slot a slot whose key is not in the table
+     */
+    private void insertIntoTable (int slot) {
+        int bucket = _hashes[slot] & _mask;
+        while (_table[bucket] != 0) {
+            bucket = (bucket + 1) & _mask;
+        }
+        _table[bucket] = slot + 1;
+    }
+
+    /**
+     * Removes a slot from the hash table, shifting later entries of its probe sequence back so
+     * that no tombstones are needed.
+     * @param slot a slot currently in the table
+     */
+    private void removeFromTable (int slot) {
+        int hole = _hashes[slot] & _mask;
+        while (_table[hole] != slot + 1) {
+            hole = (hole + 1) & _mask;
+        }
+        int bucket = hole;
+        while (true) {
+            bucket = (bucket + 1) & _mask;
+            final int entry = _table[bucket];
+            if (entry == 0) {
+                break;
+            }
+            //an entry may fill the hole only if its home bucket is not between the hole and itself
+            final int home = _hashes[entry - 1] & _mask;
+            if (((bucket - home) & _mask) >= ((bucket - hole) & _mask)) {
+                _table[hole] = entry;
+                hole = bucket;
+            }
+        }
+        _table[hole] = 0;
+    }
+
+    /**
+     * Returns whether a slot has been used since the clock hand last passed it.
+     * @param slot the slot
+     * @return whether its reference bit is set
+     */
+    private boolean isReferenced (int slot) {
+        return (_referenced[slot / BITS_PER_WORD] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Sets the reference bit of a slot.
+     * @param slot the slot
+     */
+    private void setReferenced (int slot) {
+        _referenced[slot / BITS_PER_WORD] |= 1L << slot;
+    }
+
+    /**
+     * Clears the reference bit of a slot.
+     * @param slot the slot
+     */
+    private void clearReferenced (int slot) {
+        _referenced[slot / BITS_PER_WORD] &= ~(1L << slot);
+    }
+
+    /**
+     * Spreads a hash code so that keys with similar codes land in distant buckets.
+     * @param hashCode the key's hash code
+     * @return the spread hash
+     */
+    private static int spread (int hashCode) {
+        final int hash = hashCode * GOLDEN_GAMMA;
+        return hash ^ (hash >>> 16);
+    }
+}
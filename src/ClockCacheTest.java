@@ -0,0 +1,174 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Code to test a <tt>ClockCache</tt> implementation.
+ */
+public class ClockCacheTest {
+    /**
+     * Implements a data provider that returns the string of the key passed
+     */
+    public static class EchoDataProvider implements DataProvider<Integer, String> {
+        public int _timesReferenced = 0;
+        public boolean _referenced = false;
+
+        /**
+         * Returns a value for a given key
+         * @param key any integer
+         * @return the key converted to a string
+         */
+        public String get (Integer key) {
+            _timesReferenced++;
+            _referenced = true;
+            return key.toString();
+        }
+    }
+
+    /**
+     * Tests that the clock hand passes over a used entry and evicts the first unused one
+     */
+    @Test
+    public void unreferencedIsEvicted () {
+        EchoDataProvider provider = new EchoDataProvider();
+        ClockCache<Integer, String> cache = new ClockCache<Integer, String>(provider, 3);
+        cache.get(0);
+        cache.get(1);
+        cache.get(2);
+        //0 is used again, so the hand clears its bit and evicts 1 instead
+        cache.get(0);
+        cache.get(3);
+
+        provider._referenced = false;
+        assertEquals("0", cache.get(0));
+        assertEquals("2", cache.get(2));
+        assertEquals("3", cache.get(3));
+        assertFalse(provider._referenced);
+
+        assertEquals("1", cache.get(1));
+        assertTrue(provider._referenced);
+        assertEquals(3, cache.size());
+        assertEquals(5, cache.getNumMisses());
+        assertEquals(2, cache.getStats().getEvictionCount());
+    }
+
+    /**
+     * Tests that an entry survives only one turn of the hand without being used again
+     */
+    @Test
+    public void secondChanceIsSpent () {
+        EchoDataProvider provider = new EchoDataProvider();
+        ClockCache<Integer, String> cache = new ClockCache<Integer, String>(provider, 2);
+        cache.get(0);
+        cache.get(1);
+        cache.get(0);
+        cache.get(1);
+        //both bits are set: the hand clears them all and comes back to evict 0
+        cache.get(2);
+        provider._referenced = false;
+        cache.get(1);
+        cache.get(2);
+        assertFalse(provider._referenced);
+        cache.get(0);
+        assertTrue(provider._referenced);
+    }
+
+    /**
+     * Tests a cache holding a single pair
+     */
+    @Test
+    public void capacityOne () {
+        EchoDataProvider provider = new EchoDataProvider();
+        ClockCache<Integer, String> cache = new ClockCache<Integer, String>(provider, 1);
+        assertEquals("7", cache.get(7));
+        assertEquals("7", cache.get(7));
+        assertEquals("8", cache.get(8));
+        assertEquals("7", cache.get(7));
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that put replaces a stored value and that invalidate forces a reload
+     */
+    @Test
+    public void putAndInvalidate () {
+        EchoDataProvider provider = new EchoDataProvider();
+        ClockCache<Integer, String> cache = new ClockCache<Integer, String>(provider, 3);
+        cache.put(1, "one");
+        assertEquals("one", cache.get(1));
+        assertFalse(provider._referenced);
+        cache.get(2);
+        cache.get(3);
+        cache.put(2, "two");
+        assertEquals("two", cache.get(2));
+
+        cache.invalidate(1);
+        cache.invalidate(42);
+        assertEquals(2, cache.size());
+        assertEquals("two", cache.get(2));
+        assertEquals("3", cache.get(3));
+        assertEquals("1", cache.get(1));
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Tests keys whose hash codes collide in the hash table
+     */
+    @Test
+    public void collidingKeys () {
+        final DataProvider<String, Integer> provider = key -> key.length();
+        ClockCache<String, Integer> cache = new ClockCache<String, Integer>(provider, 4);
+        //"Aa" and "BB" share a hash code, as do "AaAa", "BBBB", "AaBB" and "BBAa"
+        for (String key : new String[] { "Aa", "BB", "AaAa", "BBBB" }) {
+            cache.get(key);
+        }
+        cache.invalidate("Aa");
+        cache.get("AaBB");
+        assertEquals(4, cache.size());
+        int misses = cache.getNumMisses();
+        for (String key : new String[] { "BB", "AaAa", "BBBB", "AaBB" }) {
+            assertEquals(Integer.valueOf(key.length()), cache.get(key));
+        }
+        assertEquals(misses, cache.getNumMisses());
+    }
+
+    /**
+     * Tests random gets, puts and invalidations against a map holding what the cache should return
+     */
+    @Test
+    public void randomOperationsMatchMap () {
+        final Random random = new Random(19);
+        final DataProvider<Integer, String> provider = key -> key.toString();
+        ClockCache<Integer, String> cache = new ClockCache<Integer, String>(provider, 64);
+        final Map<Integer, String> written = new HashMap<Integer, String>();
+        for (int i = 0; i < 100000; i++) {
+            final Integer key = random.nextInt(256);
+            final int operation = random.nextInt(10);
+            if (operation == 0) {
+                cache.put(key, "put" + i);
+                written.put(key, "put" + i);
+            }
+            else if (operation == 1) {
+                cache.invalidate(key);
+                written.remove(key);
+            }
+            else {
+                final String value = cache.get(key);
+                //a put value is returned until the key is evicted and loaded again
+                if (!value.equals(written.get(key))) {
+                    assertEquals(key.toString(), value);
+                    written.remove(key);
+                }
+            }
+            assertTrue(cache.size() <= 64);
+        }
+    }
+}
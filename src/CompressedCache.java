@@ -0,0 +1,132 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.zip.Deflater;
+
+/**
+ * A least-recently-used cache that stores its values through a <tt>ValueCodec</tt>, by default
+ * serialized and, from a threshold size on, compressed with Deflate. Capacity is a number of
+ * stored bytes rather than of pairs, so values that compress well let more pairs fit in the same
+ * memory and raise the hit rate. Every hit pays for decoding, i.e. for inflating and deserializing
+ * the value, and returns a fresh copy of it; a miss returns the loaded value itself and only pays
+ * for encoding it.
+ * <p>
+ * The pairs live in an <tt>LRUCache</tt> of encoded bytes, each weighing its length plus an array
+ * header, and the statistics are that cache's; load times exclude encoding. The cache is not
+ * thread-safe.
+ */
+public class CompressedCache<T, U> implements Cache<T, U> {
+    //serialized values shorter than this are stored uncompressed by default
+    private static final int DEFAULT_THRESHOLD = 256;
+
+    //the data provider to consult for a cache miss
+    private final DataProvider<T, U> _provider;
+    //encodes values for storage and decodes them on a hit
+    private final ValueCodec<U> _codec;
+    //the encoded pairs, bounded by their total size in bytes
+    private final LRUCache<T, byte[]> _store;
+
+    /**
+     * Creates a cache that compresses serialized values of at least 256 bytes.
+     * @param provider the data provider to consult for a cache miss
+     * @param serializer converts values to and from bytes
+     * @param maxBytes the number of stored bytes the cache may hold
+     */
+    public CompressedCache (DataProvider<T, U> provider, Serializer<U> serializer, long maxBytes) {
+        this(provider, serializer, maxBytes, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param serializer converts values to and from bytes
+     * @param maxBytes the number of stored bytes the cache may hold
+     * @param threshold the serialized size, in bytes, from which values are compressed
+     */
+    public CompressedCache (DataProvider<T, U> provider, Serializer<U> serializer, long maxBytes, int threshold) {
+        this(provider, new DeflateCodec<U>(serializer, threshold, Deflater.BEST_SPEED), maxBytes);
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param codec encodes values for storage and decodes them on a hit
+     * @param maxBytes the number of stored bytes the cache may hold
+     */
+    CompressedCache (DataProvider<T, U> provider, ValueCodec<U> codec, long maxBytes) {
+        _provider = provider;
+        _codec = codec;
+        final DataProvider<T, byte[]> unused = key -> {
+            throw new IllegalStateException("the store is only read after a hit");
+        };
+        _store = new LRUCache<T, byte[]>(unused,
+                                         (key, bytes) -> bytes == null ? 0 : Weigher.OBJECT_HEADER_BYTES + bytes.length,
+                                         maxBytes);
+    }
+
+    /**
+     * Returns the value associated with the specified key, decoded from its stored form on a hit
+     * and as loaded on a miss.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final LRUCache.Element<T, byte[]> hit = _store.lookup(key);
+        if (hit != null) {
+            return _codec.decode(hit._value);
+        }
+        final U value = _store.getStats().load(_provider, key);
+        _store.put(key, _codec.encode(value));
+        return value;
+    }
+
+    /**
+     * Encodes and stores a value that was loaded or changed outside the cache.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        _store.put(key, _codec.encode(value));
+    }
+
+    /**
+     * Removes the pair stored for a key, if any.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        _store.invalidate(key);
+    }
+
+    /**
+     * Returns the number of (key,value) pairs stored in the cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _store.size();
+    }
+
+    /**
+     * Returns the number of bytes the stored pairs take, counting each encoded value and its array
+     * header.
+     * @return the stored bytes
+     */
+    public long weight () {
+        return _store.weight();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _store.getStats();
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _store.getNumMisses();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Code to test <tt>CompressedCache</tt> and <tt>DeflateCodec</tt>.
+ */
+public class CompressedCacheTest {
+    //length of the test documents, in characters
+    private static final int DOCUMENT_LENGTH = 4000;
+
+    /**
+     * A data provider whose values are long, repetitive documents naming the key
+     */
+    public static class DocumentDataProvider implements DataProvider<Integer, String> {
+        public int _timesReferenced = 0;
+
+        /**
+         * Returns a document for a given key
+         * @param key any integer
+         * @return a compressible document of <tt>DOCUMENT_LENGTH</tt> characters
+         */
+        public String get (Integer key) {
+            _timesReferenced++;
+            return document(key);
+        }
+    }
+
+    /**
+     * Builds a compressible document of <tt>DOCUMENT_LENGTH</tt> characters.
+     */
+    private static String document (int key) {
+        final StringBuilder document = new StringBuilder();
+        for (int i = 0; document.length() < DOCUMENT_LENGTH; i++) {
+            document.append("{\"id\":").append(key).append(",\"line\":").append(i).append(",\"status\":\"ok\"}\n");
+        }
+        return document.substring(0, DOCUMENT_LENGTH);
+    }
+
+    /**
+     * Tests that values round-trip through the codec, and that only large, compressible values are
+     * compressed
+     */
+    @Test
+    public void testCodecRoundTrip () {
+        DeflateCodec<String> codec = new DeflateCodec<String>(Serializer.strings(), 256, Deflater.BEST_SPEED);
+        assertNull(codec.encode(null));
+        assertNull(codec.decode(null));
+        assertEquals("", codec.decode(codec.encode("")));
+
+        String small = "short value";
+        assertEquals(1 + small.length(), codec.encode(small).length);
+        assertEquals(small, codec.decode(codec.encode(small)));
+
+        String large = document(7);
+        byte[] stored = codec.encode(large);
+        assertTrue("stored " + stored.length, stored.length < DOCUMENT_LENGTH / 4);
+        assertEquals(large, codec.decode(stored));
+        //the scratch buffer is shared, so decoding one value must not disturb another
+        assertEquals(document(8), codec.decode(codec.encode(document(8))));
+        assertEquals(large, codec.decode(stored));
+    }
+
+    /**
+     * Tests that values which do not shrink enough are stored as they are
+     */
+    @Test
+    public void testIncompressibleValueIsStoredRaw () {
+        DeflateCodec<byte[]> codec = new DeflateCodec<byte[]>(Serializer.bytes(), 0, Deflater.BEST_COMPRESSION);
+        byte[] noise = new byte[10000];
+        new Random(3).nextBytes(noise);
+        byte[] stored = codec.encode(noise);
+        assertEquals(1 + noise.length, stored.length);
+        assertArrayEquals(noise, codec.decode(stored));
+    }
+
+    /**
+     * Tests that a damaged compressed value is reported rather than decoded
+     */
+    @Test(expected = UncheckedIOException.class)
+    public void testCorruptValueIsRejected () {
+        DeflateCodec<String> codec = new DeflateCodec<String>(Serializer.strings(), 0, Deflater.BEST_SPEED);
+        byte[] stored = codec.encode(document(1));
+        byte[] truncated = new byte[stored.length / 2];
+        System.arraycopy(stored, 0, truncated, 0, truncated.length);
+        codec.decode(truncated);
+    }
+
+    /**
+     * Tests that the byte capacity holds several times more compressed documents than raw ones
+     */
+    @Test
+    public void testCompressedValuesFitMorePairs () {
+        DocumentDataProvider provider = new DocumentDataProvider();
+        CompressedCache<Integer, String> compressed = new CompressedCache<Integer, String>(provider,
+            Serializer.strings(), 5 * DOCUMENT_LENGTH);
+        CompressedCache<Integer, String> raw = new CompressedCache<Integer, String>(provider,
+            Serializer.strings(), 5 * DOCUMENT_LENGTH, Integer.MAX_VALUE);
+        for (int key = 0; key < 20; key++) {
+            assertEquals(document(key), compressed.get(key));
+            assertEquals(document(key), raw.get(key));
+        }
+        assertEquals(20, compressed.size());
+        assertTrue(compressed.weight() <= 5 * DOCUMENT_LENGTH);
+        assertTrue(raw.size() < 5);
+        assertTrue(raw.weight() <= 5 * DOCUMENT_LENGTH);
+
+        provider._timesReferenced = 0;
+        for (int key = 0; key < 20; key++) {
+            assertEquals(document(key), compressed.get(key));
+        }
+        assertEquals(0, provider._timesReferenced);
+        assertEquals(20, compressed.getNumMisses());
+    }
+
+    /**
+     * Tests that a miss returns the loaded value without decoding what it just stored, and that
+     * only hits decode
+     */
+    @Test
+    public void testOnlyHitsDecode () {
+        final int[] decodes = new int[1];
+        DeflateCodec<String> deflate = new DeflateCodec<String>(Serializer.strings(), 256, Deflater.BEST_SPEED);
+        ValueCodec<String> codec = new ValueCodec<String>() {
+            public byte[] encode (String value) {
+                return deflate.encode(value);
+            }
+
+            public String decode (byte[] bytes) {
+                decodes[0]++;
+                return deflate.decode(bytes);
+            }
+        };
+        DocumentDataProvider provider = new DocumentDataProvider();
+        CompressedCache<Integer, String> cache = new CompressedCache<Integer, String>(provider, codec, 1 << 20);
+        assertEquals(document(1), cache.get(1));
+        assertEquals(0, decodes[0]);
+        assertEquals(document(1), cache.get(1));
+        assertEquals(1, decodes[0]);
+        assertEquals(1, provider._timesReferenced);
+        assertEquals(1, cache.getNumMisses());
+        assertEquals(1, cache.getStats().getHitCount());
+    }
+
+    /**
+     * Tests that put stores an encoded value and invalidate removes it
+     */
+    @Test
+    public void testPutAndInvalidate () {
+        DocumentDataProvider provider = new DocumentDataProvider();
+        CompressedCache<Integer, String> cache = new CompressedCache<Integer, String>(provider,
+            Serializer.strings(), 100000);
+        cache.put(1, document(99));
+        assertEquals(document(99), cache.get(1));
+        assertEquals(0, provider._timesReferenced);
+        cache.invalidate(1);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(document(1), cache.get(1));
+        assertEquals(1, provider._timesReferenced);
+    }
+}
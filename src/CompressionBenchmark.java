@@ -0,0 +1,175 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Measures what storing values compressed trades: memory per pair, and so hit rate at a fixed
+ * memory budget, against the time spent decoding on every hit. A synthetic catalog of JSON
+ * documents of mixed sizes is read in a Zipf stream by an <tt>LRUCache</tt> of strings and by
+ * <tt>CompressedCache</tt>s at several thresholds, each bounded by the same number of bytes.
+ * <p>
+ * Run with <tt>make compression</tt>, or pass <tt>name=value</tt> arguments, e.g.
+ * <tt>java CompressionBenchmark documents=100000 budgets=16,64 thresholds=0,256,1024
+ * reads=2000000</tt>. Budgets are in megabytes.
+ */
+public class CompressionBenchmark {
+    //skew of the read stream
+    private static final double ZIPF_THETA = 0.99;
+    //smallest and largest document lengths, in characters; lengths are spread log-uniformly
+    private static final int MIN_DOCUMENT_LENGTH = 64;
+    private static final int MAX_DOCUMENT_LENGTH = 16 * 1024;
+    //number of distinct words the documents are written with
+    private static final int VOCABULARY_SIZE = 500;
+    //number of bytes in a megabyte
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    /**
+     * Runs the selected configurations and prints one row per budget and cache.
+     * @param args <tt>name=value</tt> options; see the class comment
+     */
+    public static void main (String[] args) {
+        final Map<String, String> options = parseOptions(args);
+        final int documentCount = Integer.parseInt(options.getOrDefault("documents", "20000"));
+        final int[] budgets = parseInts(options.getOrDefault("budgets", "4,16,64"));
+        final int[] thresholds = parseInts(options.getOrDefault("thresholds", "0,256,1024,4096"));
+        final int reads = Integer.parseInt(options.getOrDefault("reads", "500000"));
+
+        final String[] documents = documents(documentCount, new Random(1));
+        final int[] stream = new int[reads];
+        final ZipfGenerator zipf = new ZipfGenerator(documentCount, ZIPF_THETA, 0);
+        for (int i = 0; i < reads; i++) {
+            stream[i] = zipf.next();
+        }
+        final Integer[] keys = new Integer[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            keys[i] = i;
+        }
+        final long catalogBytes = Arrays.stream(documents).mapToLong(CompressionBenchmark::stringBytes).sum();
+        System.out.printf("%,d documents, %.1f MB as strings%n", documentCount, (double) catalogBytes / BYTES_PER_MEGABYTE);
+
+        System.out.printf("%-14s %7s %9s %11s %8s %10s %11s%n", "cache", "budget", "entries", "bytes/entry",
+                          "hit%", "ns/get", "decode ns");
+        for (final int budget : budgets) {
+            final long maxBytes = budget * BYTES_PER_MEGABYTE;
+            run("lru", new LRUCache<Integer, String>(key -> documents[key], (key, value) -> stringBytes(value), maxBytes),
+                budget, stream, keys, 0);
+            for (final int threshold : thresholds) {
+                final CompressedCache<Integer, String> cache = new CompressedCache<Integer, String>(
+                    key -> documents[key], Serializer.strings(), maxBytes, threshold);
+                run("deflate>=" + threshold, cache, budget, stream, keys, decodeNanos(documents, threshold));
+            }
+        }
+    }
+
+    /**
+     * Reads the stream twice, once to fill the cache and once timed, and prints the results.
+     */
+    private static void run (String name, Cache<Integer, String> cache, int budget, int[] stream, Integer[] keys,
+                             double decodeNanos) {
+        for (final int index : stream) {
+            cache.get(keys[index]);
+        }
+        final long misses = cache.getStats().getMissCount();
+        final long start = System.nanoTime();
+        for (final int index : stream) {
+            cache.get(keys[index]);
+        }
+        final long elapsed = System.nanoTime() - start;
+        final double hitRate = 1.0 - (double) (cache.getStats().getMissCount() - misses) / stream.length;
+        System.out.printf("%-14s %5dMB %,9d %11.1f %7.2f%% %,10.0f %11.0f%n", name, budget, cache.size(),
+                          (double) cache.weight() / Math.max(1, cache.size()), 100 * hitRate,
+                          (double) elapsed / stream.length, decodeNanos);
+    }
+
+    /**
+     * Returns the mean time to decode one document stored with the given threshold, measured over
+     * the whole catalog after one untimed pass.
+     */
+    private static double decodeNanos (String[] documents, int threshold) {
+        final DeflateCodec<String> codec = new DeflateCodec<String>(Serializer.strings(), threshold, Deflater.BEST_SPEED);
+        final byte[][] stored = new byte[documents.length][];
+        for (int i = 0; i < documents.length; i++) {
+            stored[i] = codec.encode(documents[i]);
+        }
+        long checksum = 0;
+        long elapsed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            final long start = System.nanoTime();
+            for (final byte[] bytes : stored) {
+                checksum += codec.decode(bytes).length();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        if (checksum == 0) {
+            System.out.println("empty catalog");
+        }
+        return (double) elapsed / documents.length;
+    }
+
+    /**
+     * Estimates the heap bytes of a string of Latin-1 characters, which the JVM stores one byte
+     * per character.
+     */
+    private static int stringBytes (String value) {
+        return value == null ? 0 : Weigher.STRING_BYTES + Weigher.OBJECT_HEADER_BYTES + value.length();
+    }
+
+    /**
+     * Builds a catalog of JSON documents whose lengths are spread log-uniformly. Field names and
+     * words repeat, as in real records, while ids and numbers vary.
+     */
+    private static String[] documents (int count, Random rand) {
+        final String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            final char[] word = new char[3 + rand.nextInt(8)];
+            for (int c = 0; c < word.length; c++) {
+                word[c] = (char) ('a' + rand.nextInt(26));
+            }
+            vocabulary[i] = new String(word);
+        }
+        final double logRange = Math.log((double) MAX_DOCUMENT_LENGTH / MIN_DOCUMENT_LENGTH);
+        final String[] documents = new String[count];
+        for (int d = 0; d < count; d++) {
+            final int length = (int) (MIN_DOCUMENT_LENGTH * Math.exp(rand.nextDouble() * logRange));
+            final StringBuilder document = new StringBuilder("{\"id\":").append(d).append(",\"items\":[");
+            while (document.length() < length) {
+                document.append("{\"sku\":").append(rand.nextInt(1000000))
+                    .append(",\"name\":\"").append(vocabulary[rand.nextInt(VOCABULARY_SIZE)])
+                    .append(' ').append(vocabulary[rand.nextInt(VOCABULARY_SIZE)])
+                    .append("\",\"price\":").append(rand.nextInt(10000) / 100.0)
+                    .append(",\"available\":").append(rand.nextBoolean()).append("},");
+            }
+            documents[d] = document.append("{}]}").toString();
+        }
+        return documents;
+    }
+
+    /**
+     * Parses <tt>name=value</tt> arguments.
+     */
+    private static Map<String, String> parseOptions (String[] args) {
+        final Map<String, String> options = new HashMap<String, String>();
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value but got " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses a comma-separated list of ints, dropping repeats.
+     */
+    private static int[] parseInts (String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).distinct().toArray();
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multithreaded stress tests for the thread-safe <tt>Cache</tt> implementations.
+ */
+public class ConcurrentCacheTest {
+    //number of threads hammering the cache at once
+    private static final int NUM_THREADS = 8;
+    //number of gets issued by each thread
+    private static final int GETS_PER_THREAD = 20000;
+
+    /**
+     * Implements a thread-safe data provider that returns the string of the key passed.
+     */
+    public static class CountingDataProvider implements DataProvider<Integer, String> {
+        public final AtomicInteger _timesReferenced = new AtomicInteger();
+
+        /**
+         * Returns a value for a given key
+         * @param key any integer
+         * @return the key converted to a string
+         */
+        public String get (Integer key) {
+            _timesReferenced.incrementAndGet();
+            return Integer.toString(key);
+        }
+    }
+
+    /**
+     * Implements a data provider that blocks every load until it is released, and can be told to
+     * fail its loads.
+     */
+    public static class GatedDataProvider implements DataProvider<Integer, String> {
+        public final AtomicInteger _timesReferenced = new AtomicInteger();
+        public final CountDownLatch _entered = new CountDownLatch(1);
+        public final CountDownLatch _release = new CountDownLatch(1);
+        public volatile boolean _fail = false;
+
+        /**
+         * Returns a value for a given key once the gate has been released
+         * @param key any integer
+         * @return the key converted to a string
+         */
+        public String get (Integer key) {
+            _timesReferenced.incrementAndGet();
+            _entered.countDown();
+            try {
+                _release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (_fail) {
+                throw new IllegalStateException("backend down");
+            }
+            return Integer.toString(key);
+        }
+    }
+
+    /**
+     * Starts several threads that all get the same key and records what each one saw.
+     * @param cache the cache under test
+     * @param key the key every thread asks for
+     * @param results receives each thread's value, or its exception's message
+     * @return the started threads
+     */
+    static List<Thread> getConcurrently (final Cache<Integer, String> cache, final int key,
+                                         final List<String> results) {
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final Thread thread = new Thread(() -> {
+                String result;
+                try {
+                    result = cache.get(key);
+                } catch (IllegalStateException e) {
+                    result = e.getMessage();
+                }
+                synchronized (results) {
+                    results.add(result);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        return threads;
+    }
+
+    /**
+     * Issues random gets from several threads at once and checks every returned value.
+     * @param cache the cache under test
+     * @param nameSpace the number of distinct keys to draw from
+     */
+    static void hammer (final Cache<Integer, String> cache, final int nameSpace) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        final AtomicInteger wrongValues = new AtomicInteger();
+
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final Random rand = new Random(t);
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < GETS_PER_THREAD; i++) {
+                    final int key = rand.nextInt(nameSpace);
+                    if (!Integer.toString(key).equals(cache.get(key))) {
+                        wrongValues.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrongValues.get());
+    }
+
+    /**
+     * Tests that under contention the cache stays exactly at capacity and counts every miss.
+     */
+    @Test
+    public void testCapacityAndMissesStayExact () throws Exception {
+        final CountingDataProvider provider = new CountingDataProvider();
+        final ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 1000);
+
+        hammer(cache, 5000);
+
+        assertEquals(1000, cache.size());
+        assertEquals(provider._timesReferenced.get(), cache.getNumMisses());
+    }
+
+    /**
+     * Tests that a working set smaller than the capacity is loaded exactly once per key.
+     */
+    @Test
+    public void testWorkingSetLoadedOnce () throws Exception {
+        final CountingDataProvider provider = new CountingDataProvider();
+        final ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 1000);
+
+        hammer(cache, 100);
+
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.getNumMisses());
+        assertEquals(100, provider._timesReferenced.get());
+    }
+
+    /**
+     * Tests that a capacity smaller than the segment count still holds exactly that many pairs.
+     */
+    @Test
+    public void testCapacitySmallerThanSegments () {
+        final CountingDataProvider provider = new CountingDataProvider();
+        final ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 3);
+
+        for (int i = 0; i < 50; i++) {
+            cache.get(i);
+        }
+        assertEquals(3, cache.size());
+        assertEquals(50, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that concurrent misses on one key share a single load and count as one miss.
+     */
+    @Test
+    public void testConcurrentMissesLoadOnce () throws Exception {
+        final GatedDataProvider provider = new GatedDataProvider();
+        final Cache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 10);
+        final List<String> results = new ArrayList<String>();
+
+        final List<Thread> threads = getConcurrently(cache, 7, results);
+        assertTrue(provider._entered.await(10, TimeUnit.SECONDS));
+        //give the other threads time to pile up behind the in-flight load
+        Thread.sleep(100);
+        provider._release.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, provider._timesReferenced.get());
+        assertEquals(1, cache.getNumMisses());
+        for (final String result : results) {
+            assertEquals("7", result);
+        }
+    }
+
+    /**
+     * Tests that a failed load reaches every waiter and leaves nothing cached behind.
+     */
+    @Test
+    public void testFailedLoadIsNotCached () throws Exception {
+        final GatedDataProvider provider = new GatedDataProvider();
+        final Cache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 10);
+        final List<String> results = new ArrayList<String>();
+        provider._fail = true;
+
+        final List<Thread> threads = getConcurrently(cache, 7, results);
+        assertTrue(provider._entered.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        provider._release.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(NUM_THREADS, results.size());
+        for (final String result : results) {
+            assertEquals("backend down", result);
+        }
+
+        //the next get loads again and succeeds
+        final int loadsBefore = provider._timesReferenced.get();
+        provider._fail = false;
+        assertEquals("7", cache.get(7));
+        assertEquals(loadsBefore + 1, provider._timesReferenced.get());
+    }
+
+    /**
+     * Tests that getAll on the concurrent cache loads all misses in one batch
+     */
+    @Test
+    public void testGetAllBatchesMisses () {
+        CacheTest.BatchDataProvider provider = new CacheTest.BatchDataProvider();
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 100);
+        cache.get(1);
+
+        Map<Integer, String> values = cache.getAll(Arrays.asList(0, 1, 2, 3, 4));
+        assertEquals(5, values.size());
+        assertEquals("Value for key 4.", values.get(4));
+        assertEquals(1, provider._batches);
+        assertEquals(4, provider._batchedKeys);
+        assertEquals(5, cache.getNumMisses());
+        assertEquals(5, cache.size());
+    }
+
+    /**
+     * Tests that the keys of a segment spread over its whole table, rather than sharing the low
+     * bits that picked the segment
+     */
+    @Test
+    public void testSegmentsUseTheirWholeTable () {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(new CountingDataProvider(), 100000);
+        Set<LRUCache<Integer, String>> segments = Collections.newSetFromMap(new IdentityHashMap<LRUCache<Integer, String>, Boolean>());
+        for (int key = 0; key < 100000; key++) {
+            cache.put(key, "v");
+            segments.add(cache.segmentFor(key));
+        }
+        assertEquals(16, segments.size());
+        for (LRUCache<Integer, String> segment : segments) {
+            //a random spread leaves more than 80% of the pairs alone in their bucket at this load
+            assertTrue(segment.usedBuckets() > 0.8 * segment.size());
+        }
+    }
+}
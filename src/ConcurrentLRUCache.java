@@ -0,0 +1,390 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A thread-safe implementation of <tt>Cache</tt> that splits the key space into independently
+ * locked segments. Each segment is an <tt>LRUCache</tt> with its own recency list and its own
+ * share of the total capacity, so eviction is least-recently-used within a segment and threads
+ * touching different segments never wait on each other.
+ * <p>
+ * Misses are loaded outside the segment lock with single-flight semantics: concurrent callers
+ * missing the same key wait on one in-flight load and all receive its result (or its exception),
+ * and that load counts as a single miss. Keys must not be null.
+ * <p>
+ * With refresh-after-write, a read of an old pair reloads it on an <tt>Executor</tt> while the
+ * current value keeps being served; the reloaded value is stored under the segment lock by the
+ * next operation on that segment.
+ */
+public class ConcurrentLRUCache<T, U> implements Cache<T, U> {
+    //default number of segments when none is requested
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    //the data provider consulted by the single in-flight load of a missing key
+    private final DataProvider<T, U> _provider;
+    //the independently locked segments, indexed by the spread hash of a key
+    private final LRUCache<T, U>[] _segments;
+    //mask used to select a segment; the segment count is always a power of two
+    private final int _segmentMask;
+    //counts hits, misses, evictions and loads across all segments
+    private final CacheStats _stats = new CacheStats();
+    //loads currently in flight, shared by every caller missing the same key
+    private final ConcurrentMap<T, CompletableFuture<U>> _loading = new ConcurrentHashMap<T, CompletableFuture<U>>();
+    //told about every requested key, or null if requests are not traced
+    private volatile TraceRecorder _recorder;
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     */
+    public ConcurrentLRUCache (DataProvider<T, U> provider, int capacity) {
+        this(provider, capacity, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     * @param concurrencyLevel the desired number of segments; rounded down to a power of two
+     * and never more than the capacity, so that every segment holds at least one pair
+     */
+    public ConcurrentLRUCache (DataProvider<T, U> provider, int capacity, int concurrencyLevel) {
+        this(provider, capacity, concurrencyLevel, 0, null);
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     * @param concurrencyLevel the desired number of segments; rounded down to a power of two
+     * and never more than the capacity
+     * @param refreshAfterWrite how old a pair must be before a read reloads it in the background;
+     * the read still returns the current value at once
+     * @param executor runs the background reloads
+     */
+    public ConcurrentLRUCache (DataProvider<T, U> provider, int capacity, int concurrencyLevel,
+                               Duration refreshAfterWrite, Executor executor) {
+        this(provider, capacity, concurrencyLevel, refreshAfterWrite.toNanos(), executor);
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     * @param concurrencyLevel the desired number of segments
+     * @param refreshAfter how old a pair must be, in nanoseconds, before a read reloads it
+     * @param refresher runs the background reloads, or null if pairs are never refreshed
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ConcurrentLRUCache (DataProvider<T, U> provider, int capacity, int concurrencyLevel,
+                                long refreshAfter, Executor refresher) {
+        if (capacity < 1 || concurrencyLevel < 1) {
+            throw new IllegalArgumentException("capacity and concurrencyLevel must be positive");
+        }
+        final int segmentCount = Integer.highestOneBit(Math.min(capacity, concurrencyLevel));
+
+        _provider = provider;
+        _segments = (LRUCache<T, U>[]) new LRUCache[segmentCount];
+        _segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            //spread the remainder so the segment capacities sum to exactly the capacity
+            final int share = capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0);
+            _segments[i] = new LRUCache<T, U>(provider, share, null, _stats, null, System::nanoTime,
+                refreshAfter, refresher);
+        }
+    }
+
+    /**
+     * Returns the value associated with the specified key. A hit only locks the key's segment;
+     * a miss either starts the key's load or waits for the one already in flight.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final TraceRecorder recorder = _recorder;
+        if (recorder != null) {
+            recorder.record(key);
+        }
+        final LRUCache<T, U> segment = segmentFor(key);
+        synchronized (segment) {
+            final LRUCache.Element<T, U> hit = segment.lookup(key);
+            if (hit != null) {
+                return hit._value;
+            }
+        }
+
+        final CompletableFuture<U> load = new CompletableFuture<U>();
+        final CompletableFuture<U> inFlight = _loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            final U value = load(segment, key, load);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            _loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Stores a value that was loaded or changed outside the cache, replacing any value already
+     * stored for the key. A load of the key already in flight will not overwrite it.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        final LRUCache<T, U> segment = segmentFor(key);
+        synchronized (segment) {
+            _loading.remove(key);
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again.
+     * A load of the key already in flight will not store its possibly stale value.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        final LRUCache<T, U> segment = segmentFor(key);
+        synchronized (segment) {
+            _loading.remove(key);
+            segment.invalidate(key);
+        }
+    }
+
+    /**
+     * Sets who is told about each pair that leaves the cache, and why. The listener is called
+     * while a segment is locked, possibly from several threads at once; wrap it in a
+     * <tt>RemovalDispatcher</tt> to run it on its own thread instead.
+     * @param listener called with each removed pair, or null for no one
+     */
+    public void setRemovalListener (RemovalListener<? super T, ? super U> listener) {
+        for (final LRUCache<T, U> segment : _segments) {
+            synchronized (segment) {
+                segment.setRemovalListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Sets where every requested key is recorded, so the traffic can later be replayed by
+     * <tt>CacheSimulator</tt> to compare capacities and policies.
+     * @param recorder records each key passed to <tt>get</tt> or <tt>getAll</tt>, or null to stop
+     */
+    public void setTraceRecorder (TraceRecorder recorder) {
+        _recorder = recorder;
+    }
+
+    /**
+     * Answers a read of a key if it is stored, counting it as a hit, without loading it on a miss.
+     * @param key the key
+     * @return the stored pair, or null if the key must be loaded with <tt>get</tt>
+     */
+    LRUCache.Element<T, U> lookup (T key) {
+        final LRUCache<T, U> segment = segmentFor(key);
+        final LRUCache.Element<T, U> hit;
+        synchronized (segment) {
+            hit = segment.lookup(key);
+        }
+        final TraceRecorder recorder = _recorder;
+        if (hit != null && recorder != null) {
+            recorder.record(key);
+        }
+        return hit;
+    }
+
+    /**
+     * Returns whether the key is currently stored, without loading it or changing its recency.
+     * @param key the key
+     * @return true if the key is in the cache, false otherwise
+     */
+    boolean contains (T key) {
+        final LRUCache<T, U> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.contains(key);
+        }
+    }
+
+    /**
+     * Returns the values associated with several keys. Hits are answered segment by segment,
+     * keys already being loaded by other callers are awaited, and all remaining misses are loaded
+     * with a single <tt>loadAll</tt> call and stored with one lock acquisition per segment.
+     * @param keys the keys; duplicates are looked up once
+     * @return the value of each key, in the order the keys were given
+     */
+    public Map<T, U> getAll (Collection<? extends T> keys) {
+        final Map<T, U> values = new LinkedHashMap<T, U>();
+        final Map<T, CompletableFuture<U>> claimed = new LinkedHashMap<T, CompletableFuture<U>>();
+        final Map<T, CompletableFuture<U>> awaited = new HashMap<T, CompletableFuture<U>>();
+        final TraceRecorder recorder = _recorder;
+        for (final T key : keys) {
+            if (recorder != null) {
+                recorder.record(key);
+            }
+            if (values.containsKey(key)) {
+                continue;
+            }
+            final LRUCache<T, U> segment = segmentFor(key);
+            synchronized (segment) {
+                final LRUCache.Element<T, U> hit = segment.lookup(key);
+                if (hit != null) {
+                    values.put(key, hit._value);
+                    continue;
+                }
+            }
+            values.put(key, null);
+            final CompletableFuture<U> load = new CompletableFuture<U>();
+            final CompletableFuture<U> inFlight = _loading.putIfAbsent(key, load);
+            (inFlight == null ? claimed : awaited).put(key, inFlight == null ? load : inFlight);
+        }
+
+        if (!claimed.isEmpty()) {
+            loadAll(claimed, values);
+        }
+        for (final Map.Entry<T, CompletableFuture<U>> entry : awaited.entrySet()) {
+            values.put(entry.getKey(), await(entry.getValue()));
+        }
+        return values;
+    }
+
+    /**
+     * Loads a batch of claimed keys with one <tt>loadAll</tt> call, stores the results segment by
+     * segment and hands them to every caller waiting on those keys.
+     * @param claimed the keys this caller owns the loads of, with their futures
+     * @param values receives the loaded values
+     */
+    private void loadAll (Map<T, CompletableFuture<U>> claimed, Map<T, U> values) {
+        try {
+            final Map<T, U> loaded = _stats.loadAll(_provider, claimed.keySet());
+            final Map<LRUCache<T, U>, List<T>> bySegment = new HashMap<LRUCache<T, U>, List<T>>();
+            for (final T key : claimed.keySet()) {
+                bySegment.computeIfAbsent(segmentFor(key), segment -> new ArrayList<T>()).add(key);
+            }
+            for (final Map.Entry<LRUCache<T, U>, List<T>> entry : bySegment.entrySet()) {
+                synchronized (entry.getKey()) {
+                    //keys put or invalidated while loading keep their newer state
+                    entry.getValue().removeIf(key -> _loading.get(key) != claimed.get(key));
+                    entry.getKey().putAll(loaded, entry.getValue());
+                }
+            }
+            for (final Map.Entry<T, CompletableFuture<U>> entry : claimed.entrySet()) {
+                final U value = loaded.get(entry.getKey());
+                values.put(entry.getKey(), value);
+                entry.getValue().complete(value);
+            }
+        } catch (RuntimeException | Error e) {
+            for (final CompletableFuture<U> load : claimed.values()) {
+                load.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (final Map.Entry<T, CompletableFuture<U>> entry : claimed.entrySet()) {
+                _loading.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Loads a missing key on behalf of every caller waiting on it and stores the result in the
+     * segment. Nothing is stored if the provider throws, or if the key was put or invalidated
+     * while it was loading, since the loaded value may then be stale.
+     * @param segment the segment owning the key
+     * @param key the key
+     * @param load the in-flight load claimed by this caller
+     * @return the loaded value
+     */
+    private U load (LRUCache<T, U> segment, T key, CompletableFuture<U> load) {
+        //another load may have finished between the first lookup and claiming this one
+        synchronized (segment) {
+            final LRUCache.Element<T, U> hit = segment.lookup(key);
+            if (hit != null) {
+                return hit._value;
+            }
+        }
+
+        final U value = _stats.load(_provider, key);
+        synchronized (segment) {
+            if (_loading.get(key) == load) {
+                segment.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Waits for a load started by another caller and returns its result, rethrowing the
+     * provider's own exception if the load failed.
+     * @param inFlight the load in flight for the key
+     * @return the loaded value
+     */
+    private static <U> U await (CompletableFuture<U> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache, shared by all segments.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored across all segments.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        int size = 0;
+        for (final LRUCache<T, U> segment : _segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Selects the segment responsible for a key, from other bits of its hash than the segment's
+     * own table uses.
+     * @param key the key
+     * @return the segment owning the key
+     */
+    LRUCache<T, U> segmentFor (T key) {
+        return _segments[LRUCache.segmentOf(key, _segmentMask)];
+    }
+}
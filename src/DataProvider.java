@@ -1,3 +1,7 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * CS 2103 2019 B-term (Whitehill)
  * A data provider that associates keys with values.
@@ -9,4 +13,18 @@ interface DataProvider<T, U> {
 	 * @return the value associated with the key
 	 */
 	U get (T key);
+
+	/**
+	 * Returns the values associated with several keys at once. Providers that can fetch a batch
+	 * in one round trip should override this; by default each key is fetched with <tt>get</tt>.
+	 * @param keys the keys, without duplicates
+	 * @return the value of each key; a key missing from the map has no value (null)
+	 */
+	default Map<T, U> loadAll (Collection<? extends T> keys) {
+		final Map<T, U> values = new HashMap<T, U>();
+		for (final T key : keys) {
+			values.put(key, get(key));
+		}
+		return values;
+	}
 }
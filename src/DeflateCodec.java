@@ -0,0 +1,148 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A <tt>ValueCodec</tt> that serializes values and compresses those of at least a threshold size
+ * with Deflate. Small values gain too little to pay for the compressor's framing and the decode
+ * time, and values that do not shrink by at least an eighth are stored as they are, so a read
+ * decompresses only values that earned it.
+ * <p>
+ * The stored form starts with one flag byte. A raw value follows it directly; a compressed value
+ * follows it with its serialized length, as four big-endian bytes, and the Deflate stream. The
+ * compressor, decompressor and scratch buffer are reused, so the codec is not thread-safe.
+ */
+class DeflateCodec<V> implements ValueCodec<V> {
+    //flag byte of a value stored as serialized
+    private static final byte RAW = 0;
+    //flag byte of a value stored Deflate-compressed
+    private static final byte DEFLATED = 1;
+    //bytes before the Deflate stream: the flag and the serialized length
+    private static final int DEFLATED_HEADER_BYTES = 1 + Integer.BYTES;
+    //a compressed value must be at most this share of its serialized size to be kept
+    private static final double MAX_COMPRESSED_SHARE = 0.875;
+    //initial size of the scratch buffer
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    //converts values to and from bytes
+    private final Serializer<V> _serializer;
+    //serialized values at least this long are compressed
+    private final int _threshold;
+    //compresses values, reset after each one
+    private final Deflater _deflater;
+    //decompresses values, reset after each one
+    private final Inflater _inflater = new Inflater();
+    //holds compressed output while encoding and serialized bytes while decoding
+    private byte[] _buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * @param serializer converts values to and from bytes
+     * @param threshold the serialized size, in bytes, from which values are compressed
+     * @param level the Deflate level, from <tt>Deflater.BEST_SPEED</tt> to <tt>BEST_COMPRESSION</tt>
+     */
+    DeflateCodec (Serializer<V> serializer, int threshold, int level) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid Deflate level " + level);
+        }
+        _serializer = serializer;
+        _threshold = threshold;
+        _deflater = new Deflater(level);
+    }
+
+    /**
+     * Serializes a value and compresses it if it is large enough and compresses well enough.
+     * @param value the value, which may be null
+     * @return the stored form, or null for a null value
+     */
+    public byte[] encode (V value) {
+        if (value == null) {
+            return null;
+        }
+        final byte[] serialized = _serializer.serialize(value);
+        if (serialized.length >= _threshold && serialized.length > DEFLATED_HEADER_BYTES) {
+            final int limit = (int) (serialized.length * MAX_COMPRESSED_SHARE) - DEFLATED_HEADER_BYTES;
+            final int length = deflate(serialized, limit);
+            if (length >= 0) {
+                final byte[] stored = new byte[DEFLATED_HEADER_BYTES + length];
+                ByteBuffer.wrap(stored).put(DEFLATED).putInt(serialized.length).put(_buffer, 0, length);
+                return stored;
+            }
+        }
+        final byte[] stored = new byte[1 + serialized.length];
+        stored[0] = RAW;
+        System.arraycopy(serialized, 0, stored, 1, serialized.length);
+        return stored;
+    }
+
+    /**
+     * Decompresses a stored value if needed and deserializes it.
+     * @param bytes the stored form, or null
+     * @return the value, or null for null bytes
+     */
+    public V decode (byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes[0] == RAW) {
+            return _serializer.deserialize(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+        }
+        final int length = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+        if (_buffer.length < length) {
+            _buffer = new byte[Math.max(length, _buffer.length * 2)];
+        }
+        _inflater.setInput(bytes, DEFLATED_HEADER_BYTES, bytes.length - DEFLATED_HEADER_BYTES);
+        try {
+            int inflated = 0;
+            while (inflated < length && !_inflater.finished()) {
+                final int count = _inflater.inflate(_buffer, inflated, length - inflated);
+                if (count == 0 && (_inflater.needsInput() || _inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length) {
+                throw new UncheckedIOException(new IOException("truncated compressed value"));
+            }
+        }
+        catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("corrupt compressed value", e));
+        }
+        finally {
+            _inflater.reset();
+        }
+        return _serializer.deserialize(ByteBuffer.wrap(_buffer, 0, length));
+    }
+
+    /**
+     * Compresses serialized bytes into the scratch buffer, giving up once the output would exceed
+     * the limit.
+     * @return the compressed length, or -1 if the bytes do not compress within the limit
+     */
+    private int deflate (byte[] serialized, int limit) {
+        if (limit <= 0) {
+            return -1;
+        }
+        if (_buffer.length < limit + 1) {
+            _buffer = new byte[Math.max(limit + 1, _buffer.length * 2)];
+        }
+        _deflater.setInput(serialized);
+        _deflater.finish();
+        //one byte of room past the limit tells a stream that just fits from one that overflows
+        final int length = _deflater.deflate(_buffer, 0, limit + 1);
+        final boolean fits = _deflater.finished() && length <= limit;
+        _deflater.reset();
+        return fits ? length : -1;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A log-structured key-value store on local disk, used as the slow tier of <tt>TieredCache</tt>.
+ * <p>
+ * Pairs are appended to the newest of a sequence of segment files, and an in-memory index maps
+ * each key to the segment and offset of its latest record. Overwritten and removed records stay
+ * in their segment as garbage until that segment is compacted: whenever a segment fills and a new
+ * one is started, every older segment that is mostly garbage has its live records copied forward
+ * and is deleted. If the files still exceed the store's bound, the oldest segments are dropped
+ * whole, evicting their pairs first-in first-out.
+ * <p>
+ * Every record carries a CRC32 of its key and value; a record that fails it is treated as absent.
+ * The index is not persisted, so segment files left by an earlier run are deleted on open. The
+ * store is not thread-safe.
+ */
+class DiskStore<K, V> {
+    //the file name of a segment is this prefix, its number and the suffix
+    private static final String SEGMENT_PREFIX = "segment-";
+    //the file name suffix of a segment
+    private static final String SEGMENT_SUFFIX = ".log";
+    //bytes taken by the key length, value length and checksum at the start of a record
+    private static final int RECORD_HEADER_BYTES = 12;
+    //number of segments the bound is split into
+    private static final int SEGMENTS_PER_STORE = 8;
+    //smallest segment size, so tiny bounds still hold a few records per segment
+    private static final long MIN_SEGMENT_BYTES = 4096;
+    //a sealed segment whose live bytes fall below this share of its size is compacted
+    private static final double COMPACTION_RATIO = 0.5;
+
+    /**
+     * One file of the log, with how much of it is still referenced by the index.
+     */
+    private static class Segment {
+        final Path _path;
+        final FileChannel _channel;
+        long _size = 0;    //bytes written
+        long _live = 0;    //bytes of records the index still points at
+
+        Segment (Path path, FileChannel channel) {
+            _path = path;
+            _channel = channel;
+        }
+    }
+
+    /**
+     * Where the latest record of a key is.
+     */
+    private static class Location {
+        final Segment _segment;
+        final long _offset;
+        final int _length;
+
+        Location (Segment segment, long offset, int length) {
+            _segment = segment;
+            _offset = offset;
+            _length = length;
+        }
+    }
+
+    //the directory holding the segment files
+    private final Path _directory;
+    //the most bytes the segment files may take together
+    private final long _maxBytes;
+    //the size at which a segment is sealed and a new one started
+    private final long _segmentBytes;
+    //serializes the keys
+    private final Serializer<K> _keys;
+    //serializes the values
+    private final Serializer<V> _values;
+    //records the pairs dropped to stay within the bound
+    private final CacheStats _stats;
+    //the latest record of every stored key
+    private final HashMap<K, Location> _index = new HashMap<K, Location>();
+    //the segments from oldest to newest; the last one is appended to
+    private final ArrayDeque<Segment> _segments = new ArrayDeque<Segment>();
+    //number given to the next segment
+    private int _nextSegmentId = 0;
+    //total bytes of all segment files
+    private long _fileBytes = 0;
+    //whether segments are being compacted, so appends made by compaction do not start another
+    private boolean _compacting = false;
+
+    /**
+     * @param directory where to keep the segment files; created if missing
+     * @param maxBytes the most bytes the segment files may take together
+     * @param segmentBytes the size at which a segment is sealed
+     * @param keys serializes the keys
+     * @param values serializes the values
+     * @param stats records the pairs dropped to stay within the bound
+     */
+    DiskStore (Path directory, long maxBytes, long segmentBytes, Serializer<K> keys, Serializer<V> values,
+               CacheStats stats) {
+        if (segmentBytes > maxBytes) {
+            throw new IllegalArgumentException("the bound must hold at least one segment");
+        }
+        _directory = directory;
+        _maxBytes = maxBytes;
+        _segmentBytes = segmentBytes;
+        _keys = keys;
+        _values = values;
+        _stats = stats;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (final Path file : stale) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        startSegment();
+    }
+
+    /**
+     * Returns the segment size used for a bound when none is given: an eighth of the bound, but
+     * at least a few kilobytes.
+     * @param maxBytes the most bytes the segment files may take together
+     * @return the size at which a segment is sealed
+     */
+    static long defaultSegmentBytes (long maxBytes) {
+        return Math.max(MIN_SEGMENT_BYTES, maxBytes / SEGMENTS_PER_STORE);
+    }
+
+    /**
+     * Stores a pair, replacing any pair stored under the key. A pair larger than a segment is
+     * not stored.
+     * @param key the key
+     * @param value the value, which must not be null
+     */
+    void put (K key, V value) {
+        discard(key);
+        final byte[] keyBytes = _keys.serialize(key);
+        final byte[] valueBytes = _values.serialize(value);
+        final int length = RECORD_HEADER_BYTES + keyBytes.length + valueBytes.length;
+        if (length > _segmentBytes) {
+            return;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(valueBytes);
+        final ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(keyBytes.length).putInt(valueBytes.length).putInt((int) crc.getValue());
+        record.put(keyBytes).put(valueBytes).flip();
+        append(key, record);
+    }
+
+    /**
+     * Removes a pair and returns its value.
+     * @param key the key
+     * @return the stored value, or null if the key is not stored or its record is damaged
+     */
+    V remove (K key) {
+        final Location location = _index.remove(key);
+        if (location == null) {
+            return null;
+        }
+        location._segment._live -= location._length;
+        final ByteBuffer record = read(location);
+        final int keyLength = record.getInt();
+        final int valueLength = record.getInt();
+        final int checksum = record.getInt();
+        final CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != checksum || keyLength + valueLength != record.remaining()) {
+            return null;
+        }
+        record.position(record.position() + keyLength);
+        return _values.deserialize(record);
+    }
+
+    /**
+     * Removes a pair without reading its value.
+     * @param key the key
+     */
+    void discard (K key) {
+        final Location location = _index.remove(key);
+        if (location != null) {
+            location._segment._live -= location._length;
+        }
+    }
+
+    /**
+     * Returns whether a key is stored.
+     * @param key the key
+     * @return true if the store holds a record for the key
+     */
+    boolean contains (K key) {
+        return _index.containsKey(key);
+    }
+
+    /**
+     * Returns the number of stored pairs.
+     * @return the number of keys in the index
+     */
+    int size () {
+        return _index.size();
+    }
+
+    /**
+     * Returns the total size of the segment files, including garbage.
+     * @return the bytes on disk
+     */
+    long fileBytes () {
+        return _fileBytes;
+    }
+
+    /**
+     * Closes and deletes every segment file.
+     */
+    void close () {
+        for (final Segment segment : _segments) {
+            deleteSegment(segment);
+        }
+        _segments.clear();
+        _index.clear();
+        _fileBytes = 0;
+    }
+
+    /**
+     * Appends a record to the newest segment, starting a new one if it is full, and points the
+     * index at it.
+     * @param key the key of the record
+     * @param record the whole record, from its position to its limit
+     */
+    private void append (K key, ByteBuffer record) {
+        final int length = record.remaining();
+        if (_segments.getLast()._size + length > _segmentBytes) {
+            startSegment();
+            if (!_compacting) {
+                compact();
+            }
+        }
+        final Segment active = _segments.getLast();
+        write(active, record, active._size);
+        _index.put(key, new Location(active, active._size, length));
+        active._size += length;
+        active._live += length;
+        _fileBytes += length;
+    }
+
+    /**
+     * Copies the live records out of sealed segments that are mostly garbage, then drops the
+     * oldest segments until the newest one can fill up without the files exceeding the bound.
+     */
+    private void compact () {
+        _compacting = true;
+        try {
+            for (final Segment segment : new ArrayList<Segment>(_segments)) {
+                if (segment != _segments.getLast() && segment._live < segment._size * COMPACTION_RATIO) {
+                    relocate(segment, true);
+                }
+            }
+            //leave room for the newest segment to fill up
+            while (_fileBytes + _segmentBytes > _maxBytes && _segments.size() > 1) {
+                relocate(_segments.getFirst(), false);
+            }
+        } finally {
+            _compacting = false;
+        }
+    }
+
+    /**
+     * Deletes a sealed segment, first either copying its live records to the newest segment or
+     * evicting them.
+     * @param segment a sealed segment
+     * @param keep whether to copy the live records rather than evict them
+     */
+    private void relocate (Segment segment, boolean keep) {
+        long offset = 0;
+        while (segment._live > 0 && offset < segment._size) {
+            final ByteBuffer lengths = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+            read(segment, lengths, offset);
+            lengths.flip();
+            final int keyLength = lengths.getInt();
+            final long length = RECORD_HEADER_BYTES + (long) keyLength + lengths.getInt();
+            if (keyLength < 0 || length > segment._size - offset) {
+                //a damaged record; the rest of the segment cannot be walked
+                break;
+            }
+            final ByteBuffer record = read(new Location(segment, offset, (int) length));
+            final K key = _keys.deserialize(record.slice(RECORD_HEADER_BYTES, keyLength));
+            final Location location = _index.get(key);
+            if (location != null && location._segment == segment && location._offset == offset) {
+                _index.remove(key);
+                segment._live -= length;
+                if (keep) {
+                    append(key, record);
+                }
+                else {
+                    _stats.recordEviction();
+                }
+            }
+            offset += length;
+        }
+        if (segment._live > 0) {
+            _index.values().removeIf(location -> location._segment == segment);
+        }
+        _segments.remove(segment);
+        _fileBytes -= segment._size;
+        deleteSegment(segment);
+    }
+
+    /**
+     * Creates a new, empty segment and makes it the one appended to.
+     */
+    private void startSegment () {
+        final Path path = _directory.resolve(SEGMENT_PREFIX + _nextSegmentId++ + SEGMENT_SUFFIX);
+        try {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                                                         StandardOpenOption.READ, StandardOpenOption.WRITE);
+            _segments.addLast(new Segment(path, channel));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes and deletes a segment's file.
+     * @param segment the segment
+     */
+    private static void deleteSegment (Segment segment) {
+        try {
+            segment._channel.close();
+            Files.deleteIfExists(segment._path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a whole record.
+     * @param location where the record is
+     * @return a buffer holding the record, positioned at its start
+     */
+    private static ByteBuffer read (Location location) {
+        final ByteBuffer record = ByteBuffer.allocate(location._length);
+        read(location._segment, record, location._offset);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Fills a buffer from a segment.
+     * @param segment the segment to read
+     * @param buffer the buffer to fill up to its limit
+     * @param offset where to start reading in the segment
+     */
+    private static void read (Segment segment, ByteBuffer buffer, long offset) {
+        try {
+            while (buffer.hasRemaining()) {
+                if (segment._channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of " + segment._path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a buffer to a segment.
+     * @param segment the segment to write
+     * @param buffer the bytes from its position to its limit
+     * @param offset where to start writing in the segment
+     */
+    private static void write (Segment segment, ByteBuffer buffer, long offset) {
+        try {
+            final int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                segment._channel.write(buffer, offset + buffer.position() - start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A <tt>Cache</tt> spread over several <tt>CacheNode</tt>s, so that the nodes together hold one
+ * copy of each key instead of every node holding its own. A <tt>HashRing</tt> with virtual nodes
+ * picks the owner of each key; the owner's cache answers the request and loads the key through
+ * its own data provider on a miss. Keys owned by the local node skip the network.
+ * <p>
+ * Requests to other nodes use <tt>CacheProtocol</tt> over one pipelined connection per node;
+ * <tt>getAll</tt> sends all its requests before waiting for any answer. If a node is down, fails,
+ * or does not answer in time, the key is loaded from the local data provider instead and is not
+ * cached. Only a failed connection marks a node down; a request that times out is a slow load,
+ * and the node keeps serving the other requests. <tt>put</tt> and <tt>invalidate</tt> ask each key's owner to store or drop its pair and
+ * wait for the owners to confirm; an owner that cannot be reached keeps its old pair until it is
+ * evicted. Every node must be built with the same node list so that they agree on the owners.
+ * <p>
+ * Hits and misses are counted as reported by the owner; only local fallback loads record load
+ * latency. The cache is thread-safe.
+ */
+public class DistributedCache<T, U> implements Cache<T, U>, AutoCloseable {
+    //how long to wait for other nodes before loading locally, shared by all the keys of a request
+    private static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    //the data provider consulted when the owner of a key cannot answer
+    private final DataProvider<T, U> _provider;
+    //the node running in this process, or null if there is none
+    private final CacheNode<T, U> _local;
+    //assigns each key to a node
+    private final HashRing<InetSocketAddress> _ring;
+    //the connections to the other nodes
+    private final Map<InetSocketAddress, PeerConnection> _peers = new HashMap<InetSocketAddress, PeerConnection>();
+    //serializes the keys
+    private final Serializer<T> _keys;
+    //serializes the values
+    private final Serializer<U> _values;
+    //counts hits and misses as seen by this client
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * @param provider the data provider to consult when the owner of a key cannot answer
+     * @param local the node running in this process, which must be one of <tt>nodes</tt>, or null
+     * @param nodes the addresses of every node, in any order
+     * @param keys serializes the keys
+     * @param values serializes the values
+     */
+    public DistributedCache (DataProvider<T, U> provider, CacheNode<T, U> local, List<InetSocketAddress> nodes,
+                             Serializer<T> keys, Serializer<U> values) {
+        _provider = provider;
+        _local = local;
+        _ring = new HashRing<InetSocketAddress>(nodes, HashRing.DEFAULT_VIRTUAL_NODES,
+            address -> address.getHostString() + ":" + address.getPort());
+        _keys = keys;
+        _values = values;
+        for (final InetSocketAddress node : nodes) {
+            if (local == null || !node.equals(local.getAddress())) {
+                _peers.put(node, new PeerConnection(node));
+            }
+        }
+    }
+
+    /**
+     * Returns the value associated with the specified key, asking the key's owner.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final byte[] keyBytes = _keys.serialize(key);
+        final PeerConnection owner = _peers.get(_ring.nodeFor(keyBytes));
+        if (owner == null) {
+            return getLocal(key);
+        }
+        return await(key, owner, owner.send(CacheProtocol.GET, keyBytes, true), System.nanoTime() + REQUEST_TIMEOUT_NANOS);
+    }
+
+    /**
+     * Returns the values associated with several keys. Requests to every other node are all sent
+     * before any answer is awaited, and all the answers share one timeout.
+     * @param keys the keys; duplicates are looked up once
+     * @return the value of each key, in the order the keys were given
+     */
+    public Map<T, U> getAll (Collection<? extends T> keys) {
+        final Map<T, CompletableFuture<PeerConnection.Response>> remote =
+            new LinkedHashMap<T, CompletableFuture<PeerConnection.Response>>();
+        final Map<T, PeerConnection> owners = new HashMap<T, PeerConnection>();
+        final Map<T, U> values = new LinkedHashMap<T, U>();
+        for (final T key : keys) {
+            if (values.containsKey(key) || remote.containsKey(key)) {
+                continue;
+            }
+            final byte[] keyBytes = _keys.serialize(key);
+            final PeerConnection owner = _peers.get(_ring.nodeFor(keyBytes));
+            values.put(key, null);
+            if (owner != null) {
+                remote.put(key, owner.send(CacheProtocol.GET, keyBytes, false));
+                owners.put(key, owner);
+            }
+        }
+        for (final PeerConnection peer : _peers.values()) {
+            peer.flush();
+        }
+        final long deadline = System.nanoTime() + REQUEST_TIMEOUT_NANOS;
+        for (final Map.Entry<T, U> entry : values.entrySet()) {
+            final CompletableFuture<PeerConnection.Response> response = remote.get(entry.getKey());
+            entry.setValue(response == null ? getLocal(entry.getKey())
+                : await(entry.getKey(), owners.get(entry.getKey()), response, deadline));
+        }
+        return values;
+    }
+
+    /**
+     * Stores a value on the owner of its key, replacing any value stored there, and waits for the
+     * owner to confirm.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        final byte[] keyBytes = _keys.serialize(key);
+        final PeerConnection owner = _peers.get(_ring.nodeFor(keyBytes));
+        if (owner == null) {
+            _local.cache().put(key, value);
+            return;
+        }
+        final byte[] valueBytes = value == null ? null : _values.serialize(value);
+        confirm(Collections.singletonMap(owner.send(CacheProtocol.PUT, keyBytes, valueBytes, true), owner));
+    }
+
+    /**
+     * Removes the pair stored for a key on its owner, so that the next <tt>get</tt> loads it again.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        invalidateAll(Collections.singletonList(key));
+    }
+
+    /**
+     * Removes the pairs stored for several keys on their owners. Requests to every other node are
+     * all sent before any confirmation is awaited.
+     * @param keys the keys
+     */
+    public void invalidateAll (Collection<? extends T> keys) {
+        final Map<CompletableFuture<PeerConnection.Response>, PeerConnection> sent =
+            new LinkedHashMap<CompletableFuture<PeerConnection.Response>, PeerConnection>();
+        for (final T key : keys) {
+            final byte[] keyBytes = _keys.serialize(key);
+            final PeerConnection owner = _peers.get(_ring.nodeFor(keyBytes));
+            if (owner == null) {
+                _local.cache().invalidate(key);
+            }
+            else {
+                sent.put(owner.send(CacheProtocol.INVALIDATE, keyBytes, false), owner);
+            }
+        }
+        for (final PeerConnection peer : _peers.values()) {
+            peer.flush();
+        }
+        confirm(sent);
+    }
+
+    /**
+     * Waits for the owners to confirm requests that return no value. The confirmations share one
+     * timeout; a request that misses it is given up on.
+     * @param sent the requests sent, each with the connection to its owner
+     */
+    private void confirm (Map<CompletableFuture<PeerConnection.Response>, PeerConnection> sent) {
+        final long deadline = System.nanoTime() + REQUEST_TIMEOUT_NANOS;
+        for (final Map.Entry<CompletableFuture<PeerConnection.Response>, PeerConnection> entry : sent.entrySet()) {
+            try {
+                entry.getKey().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().timedOut(entry.getKey());
+            } catch (ExecutionException e) {
+                //the owner is down; its old pair stays until it is evicted
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of a key owned by the local node.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    private U getLocal (T key) {
+        final ConcurrentLRUCache<T, U> cache = _local.cache();
+        if (cache.contains(key)) {
+            _stats.recordHit();
+        }
+        else {
+            _stats.recordMiss();
+        }
+        return cache.get(key);
+    }
+
+    /**
+     * Waits for the owner's answer, loading the key locally if there is none by the deadline. The
+     * owner is not treated as failed for missing the deadline.
+     * @param key the key requested
+     * @param owner the connection to the key's owner
+     * @param response completes with the owner's answer
+     * @param deadline the <tt>System.nanoTime</tt> by which the answer must have arrived
+     * @return the value associated with the key
+     */
+    private U await (T key, PeerConnection owner, CompletableFuture<PeerConnection.Response> response,
+                     long deadline) {
+        final PeerConnection.Response answer;
+        try {
+            answer = response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            owner.timedOut(response);
+            return _stats.load(_provider, key);
+        } catch (ExecutionException e) {
+            return _stats.load(_provider, key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return _stats.load(_provider, key);
+        }
+        if (answer._status == CacheProtocol.FAILED) {
+            return _stats.load(_provider, key);
+        }
+        if (answer._status == CacheProtocol.HIT) {
+            _stats.recordHit();
+        }
+        else {
+            _stats.recordMiss();
+        }
+        return answer._value == null ? null : _values.deserialize(ByteBuffer.wrap(answer._value));
+    }
+
+    /**
+     * Returns the number of pairs stored on the local node.
+     * @return the local node's size, or 0 if there is no local node
+     */
+    public int size () {
+        return _local == null ? 0 : _local.cache().size();
+    }
+
+    /**
+     * Returns the live statistics of the cache, as seen by this client.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Closes the connections to the other nodes. The local node is left running.
+     */
+    public void close () {
+        for (final PeerConnection peer : _peers.values()) {
+            peer.close();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Code to test <tt>DistributedCache</tt> with several <tt>CacheNode</tt>s in one process, talking
+ * over loopback.
+ */
+public class DistributedCacheTest {
+    //number of nodes in the test cluster
+    private static final int NODES = 3;
+    //capacity of each node
+    private static final int CAPACITY = 1000;
+
+    private ConcurrentCacheTest.CountingDataProvider _provider;
+    private List<CacheNode<Integer, String>> _nodes;
+    private List<DistributedCache<Integer, String>> _clients;
+
+    @Before
+    public void startCluster () throws IOException {
+        _provider = new ConcurrentCacheTest.CountingDataProvider();
+        _nodes = new ArrayList<CacheNode<Integer, String>>();
+        final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (int i = 0; i < NODES; i++) {
+            CacheNode<Integer, String> node = new CacheNode<Integer, String>(_provider, CAPACITY,
+                Serializer.integers(), Serializer.strings(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            _nodes.add(node);
+            addresses.add(node.getAddress());
+        }
+        _clients = new ArrayList<DistributedCache<Integer, String>>();
+        for (CacheNode<Integer, String> node : _nodes) {
+            _clients.add(new DistributedCache<Integer, String>(_provider, node, addresses, Serializer.integers(),
+                Serializer.strings()));
+        }
+    }
+
+    @After
+    public void stopCluster () {
+        for (DistributedCache<Integer, String> client : _clients) {
+            client.close();
+        }
+        for (CacheNode<Integer, String> node : _nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Tests that every node agrees on the owner of a key, so each key is loaded once in the cluster
+     */
+    @Test
+    public void testKeysAreStoredOnce () {
+        for (int key = 0; key < 100; key++) {
+            for (DistributedCache<Integer, String> client : _clients) {
+                assertEquals(Integer.toString(key), client.get(key));
+            }
+        }
+        assertEquals(100, _provider._timesReferenced.get());
+        int stored = 0;
+        for (DistributedCache<Integer, String> client : _clients) {
+            assertTrue(client.size() > 0);
+            stored += client.size();
+        }
+        assertEquals(100, stored);
+        assertEquals(100, _clients.get(0).getNumMisses() + _clients.get(1).getNumMisses() + _clients.get(2).getNumMisses());
+    }
+
+    /**
+     * Tests a pipelined batch spread over every node
+     */
+    @Test
+    public void testGetAll () {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int key = 0; key < 200; key++) {
+            keys.add(key % 150);
+        }
+        Map<Integer, String> values = _clients.get(1).getAll(keys);
+        assertEquals(150, values.size());
+        for (int key = 0; key < 150; key++) {
+            assertEquals(Integer.toString(key), values.get(key));
+        }
+        assertEquals(150, _provider._timesReferenced.get());
+        assertEquals(150, _clients.get(2).getAll(keys).size());
+        assertEquals(150, _provider._timesReferenced.get());
+    }
+
+    /**
+     * Tests that invalidating through one client drops the pairs on their owners, so every client
+     * loads them again
+     */
+    @Test
+    public void testInvalidateReachesOwners () {
+        for (int key = 0; key < 30; key++) {
+            _clients.get(0).get(key);
+        }
+        _clients.get(1).invalidateAll(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        _clients.get(2).invalidate(10);
+        int stored = 0;
+        for (DistributedCache<Integer, String> client : _clients) {
+            stored += client.size();
+        }
+        assertEquals(19, stored);
+        for (int key = 0; key < 30; key++) {
+            assertEquals(Integer.toString(key), _clients.get(2).get(key));
+        }
+        assertEquals(41, _provider._timesReferenced.get());
+    }
+
+    /**
+     * Tests that a put through one client stores the value on its owner, so every client reads it
+     * without loading, also through a <tt>HotKeyCache</tt>
+     */
+    @Test
+    public void testPutReachesOwners () {
+        for (int key = 0; key < 30; key++) {
+            _clients.get(0).put(key, "put" + key);
+        }
+        int stored = 0;
+        for (DistributedCache<Integer, String> client : _clients) {
+            stored += client.size();
+        }
+        assertEquals(30, stored);
+        for (int key = 0; key < 30; key++) {
+            assertEquals("put" + key, _clients.get(1).get(key));
+            assertEquals("put" + key, _clients.get(2).get(key));
+        }
+        assertEquals(0, _provider._timesReferenced.get());
+
+        HotKeyCache<Integer, String> hot = new HotKeyCache<Integer, String>(_clients.get(2));
+        hot.put(0, "hot");
+        assertEquals("hot", _clients.get(1).get(0));
+        assertEquals("hot", hot.get(0));
+    }
+
+    /**
+     * Tests that keys owned by a node that is down are loaded from the local data provider
+     */
+    @Test
+    public void testFallbackWhenNodeIsDown () {
+        _nodes.get(2).close();
+        DistributedCache<Integer, String> client = _clients.get(0);
+        for (int key = 0; key < 100; key++) {
+            assertEquals(Integer.toString(key), client.get(key));
+        }
+        assertEquals(100, client.getNumMisses());
+        assertTrue(client.getStats().getLoadSuccessCount() > 0);
+    }
+
+    /**
+     * Tests that a getAll against a node that accepts connections but never answers waits one
+     * timeout in all, not one per key
+     */
+    @Test
+    public void testGetAllSharesOneTimeout () throws IOException {
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), silent.getLocalPort());
+            DistributedCache<Integer, String> client = new DistributedCache<Integer, String>(_provider, null,
+                Arrays.asList(address), Serializer.integers(), Serializer.strings());
+            _clients.add(client);
+            List<Integer> keys = Arrays.asList(1, 2, 3, 4, 5);
+            long start = System.nanoTime();
+            Map<Integer, String> values = client.getAll(keys);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2500);
+            for (int key : keys) {
+                assertEquals(Integer.toString(key), values.get(key));
+            }
+            assertEquals(5, client.getStats().getLoadSuccessCount());
+        }
+    }
+
+    /**
+     * Tests that a slow load on a node neither holds up the requests sent after it nor, once it
+     * times out, marks the node down
+     */
+    @Test
+    public void testSlowLoadIsNotADeadNode () throws IOException, InterruptedException {
+        ConcurrentCacheTest.GatedDataProvider gated = new ConcurrentCacheTest.GatedDataProvider();
+        DataProvider<Integer, String> slowZero = key -> key == 0 ? gated.get(key) : _provider.get(key);
+        CacheNode<Integer, String> node = new CacheNode<Integer, String>(slowZero, CAPACITY, Serializer.integers(),
+            Serializer.strings(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            ConcurrentCacheTest.CountingDataProvider fallback = new ConcurrentCacheTest.CountingDataProvider();
+            DistributedCache<Integer, String> client = new DistributedCache<Integer, String>(fallback, null,
+                Arrays.asList(node.getAddress()), Serializer.integers(), Serializer.strings());
+            _clients.add(client);
+            Thread slow = new Thread(() -> client.get(0));
+            slow.start();
+            gated._entered.await();
+            long start = System.nanoTime();
+            for (int key = 1; key <= 10; key++) {
+                assertEquals(Integer.toString(key), client.get(key));
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 500);
+            slow.join();
+            assertEquals(1, fallback._timesReferenced.get());
+            assertEquals("11", client.get(11));
+            assertEquals(1, fallback._timesReferenced.get());
+            assertEquals(11, _provider._timesReferenced.get());
+        } finally {
+            gated._release.countDown();
+            node.close();
+        }
+    }
+
+    /**
+     * Tests that virtual nodes spread keys evenly and that removing a node only moves its own keys
+     */
+    @Test
+    public void testHashRingBalance () {
+        List<String> nodes = Arrays.asList("a", "b", "c", "d");
+        HashRing<String> ring = new HashRing<String>(nodes, HashRing.DEFAULT_VIRTUAL_NODES, node -> node);
+        HashRing<String> smaller = new HashRing<String>(nodes.subList(0, 3), HashRing.DEFAULT_VIRTUAL_NODES, node -> node);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        final int keys = 40000;
+        for (int key = 0; key < keys; key++) {
+            byte[] bytes = Serializer.integers().serialize(key);
+            String owner = ring.nodeFor(bytes);
+            counts.merge(owner, 1, Integer::sum);
+            if (!owner.equals("d")) {
+                assertEquals(owner, smaller.nodeFor(bytes));
+            }
+        }
+        for (String node : nodes) {
+            assertTrue(counts.get(node) > keys / 4 * 0.8);
+            assertTrue(counts.get(node) < keys / 4 * 1.2);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * Decides which keys a bounded cache keeps. The cache reports every hit and every newly loaded
+ * key, and the policy answers which stored key, if any, must make room.
+ */
+interface EvictionPolicy<T> {
+	/**
+	 * Records a hit on a key the cache holds.
+	 * @param key the key that was read
+	 */
+	void recordAccess (T key);
+
+	/**
+	 * Records a key that was just loaded after a miss and decides what to evict.
+	 * @param key the newly loaded key
+	 * @return the key to evict, which may be the new key itself if the policy declines to admit
+	 * it, or null if nothing needs to be evicted
+	 */
+	T recordInsertion (T key);
+
+	/**
+	 * Forgets a key the cache has removed for a reason of its own.
+	 * @param key the removed key
+	 */
+	void recordRemoval (T key);
+}
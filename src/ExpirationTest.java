@@ -0,0 +1,138 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code to test time-based expiration in <tt>LRUCache</tt> and its <tt>TimerWheel</tt>.
+ */
+public class ExpirationTest {
+    //number of nanoseconds in a second
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * A clock that only moves when the test says so
+     */
+    public static class FakeTicker {
+        public long _nanos = 0;
+
+        /**
+         * Returns the current fake time
+         * @return the time in nanoseconds
+         */
+        public long read () {
+            return _nanos;
+        }
+    }
+
+    /**
+     * Tests that a pair expires a fixed time after it was written, even if it is read
+     */
+    @Test
+    public void testExpireAfterWrite () {
+        FakeTicker ticker = new FakeTicker();
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(provider, 10, new CacheStats(),
+            Expiry.afterWrite(Duration.ofSeconds(10)), ticker::read);
+
+        cache.get(0);
+        ticker._nanos = 9 * SECOND;
+        provider._referenced = false;
+        cache.get(0);
+        assertFalse(provider._referenced);
+
+        ticker._nanos = 10 * SECOND;
+        cache.get(0);
+        assertTrue(provider._referenced);
+        assertEquals(2, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that reads keep a pair alive under expire-after-access
+     */
+    @Test
+    public void testExpireAfterAccess () {
+        FakeTicker ticker = new FakeTicker();
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(provider, 10, new CacheStats(),
+            Expiry.afterAccess(Duration.ofSeconds(10)), ticker::read);
+
+        cache.get(0);
+        for (int i = 1; i <= 5; i++) {
+            ticker._nanos = i * 8 * SECOND;
+            cache.get(0);
+        }
+        assertEquals(1, cache.getNumMisses());
+
+        ticker._nanos += 11 * SECOND;
+        cache.get(0);
+        assertEquals(2, cache.getNumMisses());
+    }
+
+    /**
+     * Tests per-pair durations, and that the wheel removes expired pairs nobody reads again
+     */
+    @Test
+    public void testVariableExpiryCleansUpUnreadPairs () {
+        FakeTicker ticker = new FakeTicker();
+        //key k lives k minutes
+        Expiry<Integer, String> expiry = (key, value, currentTime) -> TimeUnit.MINUTES.toNanos(key);
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(key -> Integer.toString(key), 100,
+            new CacheStats(), expiry, ticker::read);
+
+        for (int key = 1; key <= 90; key++) {
+            cache.get(key);
+        }
+        ticker._nanos = TimeUnit.MINUTES.toNanos(30) + 1;
+        cache.get(1000);
+        //keys 1 to 30 are gone without having been read; key 1000 lives 1000 minutes
+        assertEquals(61, cache.size());
+        assertEquals(30, cache.getStats().getEvictionCount());
+
+        ticker._nanos = TimeUnit.DAYS.toNanos(1);
+        cache.get(1000);
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests that the wheel fires every timer once, no earlier than its time and within one
+     * bucket span after it, across all levels
+     */
+    @Test
+    public void testTimerWheelFiresOnTime () {
+        Random rand = new Random(0);
+        TimerWheel<Long> wheel = new TimerWheel<Long>(0);
+        List<TimerWheel.Node<Long>> timers = new ArrayList<TimerWheel.Node<Long>>();
+        for (int i = 0; i < 2000; i++) {
+            long expiresAt = (long) (Math.pow(10, rand.nextDouble() * 15));
+            TimerWheel.Node<Long> node = new TimerWheel.Node<Long>(expiresAt);
+            node._expiresAt = expiresAt;
+            wheel.schedule(node);
+            timers.add(node);
+        }
+
+        final List<Long> fired = new ArrayList<Long>();
+        long now = 0;
+        while (fired.size() < timers.size()) {
+            now += SECOND;
+            final long time = now;
+            wheel.advance(time, expiresAt -> {
+                assertTrue(expiresAt <= time);
+                assertTrue(expiresAt > time - 2 * SECOND);
+                fired.add(expiresAt);
+            });
+            if (now > TimeUnit.DAYS.toNanos(30)) {
+                fail("timers did not fire");
+            }
+        }
+        assertEquals(timers.size(), fired.size());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.time.Duration;
+
+/**
+ * Decides how long each (key,value) pair may stay in a cache before it expires. Durations are in
+ * nanoseconds; <tt>Long.MAX_VALUE</tt> means the pair never expires.
+ */
+interface Expiry<T, U> {
+	/**
+	 * Returns how long a newly loaded pair may live.
+	 * @param key the key
+	 * @param value the value
+	 * @param currentTime the current time, in nanoseconds
+	 * @return the time until the pair expires, in nanoseconds
+	 */
+	long expireAfterCreate (T key, U value, long currentTime);
+
+	/**
+	 * Returns how long a pair may live after its value has been replaced.
+	 * @param key the key
+	 * @param value the new value
+	 * @param currentTime the current time, in nanoseconds
+	 * @param currentDuration the time the pair had left before the update
+	 * @return the time until the pair expires; by default the same as for a new pair
+	 */
+	default long expireAfterUpdate (T key, U value, long currentTime, long currentDuration) {
+		return expireAfterCreate(key, value, currentTime);
+	}
+
+	/**
+	 * Returns how long a pair may live after it has been read.
+	 * @param key the key
+	 * @param value the value
+	 * @param currentTime the current time, in nanoseconds
+	 * @param currentDuration the time the pair has left
+	 * @return the time until the pair expires; by default reads do not change it
+	 */
+	default long expireAfterRead (T key, U value, long currentTime, long currentDuration) {
+		return currentDuration;
+	}
+
+	/**
+	 * Returns an expiry under which every pair expires a fixed time after it was loaded or
+	 * replaced.
+	 * @param duration the time-to-live
+	 * @return the expiry
+	 */
+	static <T, U> Expiry<T, U> afterWrite (Duration duration) {
+		final long nanos = duration.toNanos();
+		return (key, value, currentTime) -> nanos;
+	}
+
+	/**
+	 * Returns an expiry under which every pair expires a fixed time after it was last loaded,
+	 * replaced or read.
+	 * @param duration the time-to-idle
+	 * @return the expiry
+	 */
+	static <T, U> Expiry<T, U> afterAccess (Duration duration) {
+		final long nanos = duration.toNanos();
+		return new Expiry<T, U>() {
+			public long expireAfterCreate (T key, U value, long currentTime) {
+				return nanos;
+			}
+
+			public long expireAfterRead (T key, U value, long currentTime, long currentDuration) {
+				return nanos;
+			}
+		};
+	}
+}
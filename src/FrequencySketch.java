@@ -0,0 +1,111 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * A count-min sketch of 4-bit counters that estimates how often each key has been seen recently.
+ * Every key maps to one counter in each of four rows, and its estimate is the smallest of them.
+ * Once the sketch has counted ten times as many events as the cache holds keys, every counter is
+ * halved, so old popularity fades and the estimate follows the current workload.
+ */
+class FrequencySketch<T> {
+    //number of counters consulted per key
+    private static final int DEPTH = 4;
+    //number of 4-bit counters packed into one long
+    private static final int COUNTERS_PER_LONG = 16;
+    //largest value of a 4-bit counter
+    private static final int MAX_COUNT = 15;
+    //events counted, as a multiple of the capacity, before the counters are halved
+    private static final int SAMPLE_FACTOR = 10;
+    //clears the bit that halving would shift into the neighboring counter
+    private static final long RESET_MASK = 0x7777777777777777L;
+    //odd multipliers that derive an independent index for each row from one hash
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    //the packed counters, shared by all rows
+    private final long[] _table;
+    //mask that maps a hash onto a counter; the number of counters is a power of two
+    private final int _counterMask;
+    //number of events to count before halving
+    private final int _sampleSize;
+    //number of events counted since the last halving
+    private int _additions = 0;
+
+    /**
+     * @param capacity the number of keys the cache holds
+     */
+    FrequencySketch (int capacity) {
+        final int longs = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        _table = new long[longs];
+        _counterMask = longs * COUNTERS_PER_LONG - 1;
+        _sampleSize = Math.max(1, capacity) * SAMPLE_FACTOR;
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of a key.
+     * @param key the key
+     * @return the estimate, from 0 to 15
+     */
+    int frequency (T key) {
+        final long hash = spread(key);
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, count(indexOf(hash, row)));
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts one occurrence of a key, halving every counter once the sample is full.
+     * @param key the key
+     */
+    void increment (T key) {
+        final long hash = spread(key);
+        for (int row = 0; row < DEPTH; row++) {
+            final int index = indexOf(hash, row);
+            if (count(index) < MAX_COUNT) {
+                _table[index / COUNTERS_PER_LONG] += 1L << shiftOf(index);
+            }
+        }
+        if (++_additions == _sampleSize) {
+            for (int i = 0; i < _table.length; i++) {
+                _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            }
+            _additions /= 2;
+        }
+    }
+
+    /**
+     * Reads one counter.
+     */
+    private int count (int index) {
+        return (int) (_table[index / COUNTERS_PER_LONG] >>> shiftOf(index)) & MAX_COUNT;
+    }
+
+    /**
+     * Returns the bit position of a counter within its long.
+     */
+    private static int shiftOf (int index) {
+        return (index % COUNTERS_PER_LONG) * 4;
+    }
+
+    /**
+     * Returns the counter a key uses in one row.
+     */
+    private int indexOf (long hash, int row) {
+        final long h = hash * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & _counterMask;
+    }
+
+    /**
+     * Scrambles a key's hash code so that similar hash codes use unrelated counters.
+     */
+    private static long spread (Object key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        return h;
+    }
+}
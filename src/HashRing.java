@@ -0,0 +1,77 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * A consistent-hashing ring that assigns keys to nodes. Each node is placed on the ring at many
+ * points, its virtual nodes, and a key belongs to the node of the first point at or after the
+ * key's hash. Spreading each node over many points evens out the share of keys per node, and
+ * adding or removing a node only moves the keys next to its points.
+ * <p>
+ * Keys are hashed from their serialized bytes and nodes from their names, so every process
+ * builds the same ring from the same nodes.
+ */
+class HashRing<N> {
+    //number of points per node used by DistributedCache
+    static final int DEFAULT_VIRTUAL_NODES = 160;
+    //FNV-1a 64-bit offset basis
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    //FNV-1a 64-bit prime
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    //the points of the ring, each owned by a node
+    private final TreeMap<Long, N> _ring = new TreeMap<Long, N>();
+
+    /**
+     * @param nodes the nodes to place on the ring
+     * @param virtualNodes the number of points per node
+     * @param names gives each node a name that is the same in every process
+     */
+    HashRing (Collection<N> nodes, int virtualNodes, Function<? super N, String> names) {
+        if (nodes.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("a ring needs at least one node and one point per node");
+        }
+        for (final N node : nodes) {
+            final String name = names.apply(node);
+            for (int i = 0; i < virtualNodes; i++) {
+                _ring.put(hash((name + "#" + i).getBytes(StandardCharsets.UTF_8)), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node a key belongs to.
+     * @param key the serialized key
+     * @return the owning node
+     */
+    N nodeFor (byte[] key) {
+        final Map.Entry<Long, N> point = _ring.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : _ring.firstEntry().getValue();
+    }
+
+    /**
+     * Hashes bytes with 64-bit FNV-1a followed by a MurmurHash3 finalizer, so that similar inputs
+     * land far apart on the ring.
+     * @param bytes the bytes to hash
+     * @return the hash
+     */
+    static long hash (byte[] bytes) {
+        long hash = FNV_OFFSET;
+        for (final byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
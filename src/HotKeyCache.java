@@ -0,0 +1,346 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe <tt>Cache</tt> that puts a tiny per-thread L1 in front of a shared, thread-safe
+ * cache, for workloads where a handful of keys take most of the reads. Every thread samples its
+ * reads into a batch of its own and hands each full batch to a <tt>HotKeyDetector</tt>, unless
+ * another thread is recording at that moment, in which case the batch is dropped, so no read waits
+ * on the detector. Only keys the detector has found hot are copied into the reading thread's L1.
+ * A read of an L1 copy touches no lock and writes no shared memory, so hot keys are served from
+ * every core at once instead of queueing on one segment of the shared cache.
+ * <p>
+ * Each copy remembers the version of its key's stripe when it was made. <tt>put</tt> and
+ * <tt>invalidate</tt> update the shared cache first and then advance the stripe's version, so every
+ * thread sees its copy is stale on its next read and fetches the key again. When the shared cache
+ * is a <tt>ConcurrentLRUCache</tt>, every pair it removes or replaces by itself, through expiry,
+ * refresh, eviction or an <tt>InvalidationBus</tt>, advances the version too; its removal listener
+ * is then taken, and should be set on this cache instead. Whatever the shared cache, a copy is
+ * only trusted for a short lifetime, after which the next read fetches the key again, so no copy
+ * outlives a change by more than that lifetime. Each thread also drops the copies of cooled keys
+ * on its first read after the hot keys are republished.
+ * <p>
+ * Statistics are those of the shared cache; L1 hits are counted separately, per thread, and
+ * folded into a shared total when a thread dies.
+ */
+public class HotKeyCache<T, U> implements Cache<T, U> {
+    //number of reads per thread between samples given to the detector
+    private static final int DEFAULT_SAMPLE_INTERVAL = 16;
+    //number of samples each thread collects before handing them to the detector at once
+    static final int SAMPLE_BATCH = 16;
+    //the most keys copied into each L1
+    private static final int DEFAULT_HOT_KEYS = 64;
+    //number of keys the detector tracks per hot key it may publish
+    private static final int COUNTERS_PER_HOT_KEY = 4;
+    //number of samples between publications of the hot keys
+    private static final int DEFAULT_WINDOW_SAMPLES = 4096;
+    //the share of sampled reads a key must take to be hot
+    private static final double DEFAULT_HOT_SHARE = 0.001;
+    //number of version stripes; advancing one stales only the copies of keys in that stripe
+    private static final int VERSION_STRIPES = 1024;
+    //how long a copy is trusted before it is fetched again, by default
+    private static final Duration DEFAULT_COPY_LIFETIME = Duration.ofMillis(100);
+
+    /**
+     * A thread's copies of hot pairs.
+     */
+    private static class L1<T, U> {
+        //the copies, by key; only the owning thread touches them
+        final HashMap<T, Copy<U>> _copies = new HashMap<T, Copy<U>>();
+        //the hot set generation the copies were made under
+        int _generation = 0;
+        //reads left before the next sample
+        int _countdown;
+        //samples not yet handed to the detector
+        final ArrayList<T> _samples = new ArrayList<T>(SAMPLE_BATCH);
+        //number of reads answered by a copy; written only by the owning thread
+        long _hits = 0;
+
+        L1 (int sampleInterval) {
+            _countdown = sampleInterval;
+        }
+    }
+
+    /**
+     * A value copied from the shared cache, with the version of its stripe and the time.
+     */
+    private static class Copy<U> {
+        final U _value;
+        final long _version;
+        final long _copiedAt;
+
+        Copy (U value, long version, long copiedAt) {
+            _value = value;
+            _version = version;
+            _copiedAt = copiedAt;
+        }
+    }
+
+    /**
+     * An L1 and the thread that owns it, which is only weakly held so a dead thread can be
+     * collected.
+     */
+    private static class Registration<T, U> {
+        final WeakReference<Thread> _owner;
+        final L1<T, U> _l1;
+
+        Registration (Thread owner, L1<T, U> l1) {
+            _owner = new WeakReference<Thread>(owner);
+            _l1 = l1;
+        }
+
+        /**
+         * Returns whether the owning thread has died.
+         */
+        boolean isRetired () {
+            final Thread owner = _owner.get();
+            return owner == null || !owner.isAlive();
+        }
+    }
+
+    //the shared cache behind the L1s
+    private final Cache<T, U> _main;
+    //finds the hot keys from the sampled reads of every thread
+    private final HotKeyDetector<T> _detector;
+    //the version of each stripe of keys, advanced by every write to a key in the stripe
+    private final AtomicLongArray _versions = new AtomicLongArray(VERSION_STRIPES);
+    //number of reads per thread between samples
+    private final int _sampleInterval;
+    //how long a copy is trusted, in nanoseconds
+    private final long _copyLifetime;
+    //the time source for copy lifetimes, in nanoseconds
+    private final LongSupplier _ticker;
+    //each thread's L1
+    private final ThreadLocal<L1<T, U>> _local;
+    //the L1 of every live thread, so their hits can be added up
+    private final Queue<Registration<T, U>> _l1s = new ConcurrentLinkedQueue<Registration<T, U>>();
+    //the hits of the L1s of threads that have died
+    private final LongAdder _retiredHits = new LongAdder();
+    //told about every pair the shared cache removes, or null
+    private volatile RemovalListener<? super T, ? super U> _removalListener;
+
+    /**
+     * @param main the shared cache, which must be thread-safe, e.g. a <tt>ConcurrentLRUCache</tt>
+     */
+    public HotKeyCache (Cache<T, U> main) {
+        this(main, DEFAULT_COPY_LIFETIME);
+    }
+
+    /**
+     * @param main the shared cache, which must be thread-safe, e.g. a <tt>ConcurrentLRUCache</tt>
+     * @param copyLifetime how long a copy is trusted before it is fetched again
+     */
+    public HotKeyCache (Cache<T, U> main, Duration copyLifetime) {
+        this(main, DEFAULT_HOT_KEYS, DEFAULT_SAMPLE_INTERVAL, DEFAULT_WINDOW_SAMPLES, DEFAULT_HOT_SHARE,
+             copyLifetime, System::nanoTime);
+    }
+
+    /**
+     * @param main the shared cache, which must be thread-safe
+     * @param hotKeys the most keys copied into each L1
+     * @param sampleInterval the number of reads per thread between samples given to the detector
+     * @param windowSamples the number of samples between publications of the hot keys
+     * @param hotShare the share of sampled reads, between 0 and 1, a key must take to be hot
+     * @param copyLifetime how long a copy is trusted before it is fetched again
+     * @param ticker the time source for copy lifetimes, in nanoseconds
+     */
+    HotKeyCache (Cache<T, U> main, int hotKeys, int sampleInterval, int windowSamples, double hotShare,
+                 Duration copyLifetime, LongSupplier ticker) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("sample interval must be positive");
+        }
+        if (copyLifetime.isNegative() || copyLifetime.isZero()) {
+            throw new IllegalArgumentException("copy lifetime must be positive");
+        }
+        _main = main;
+        _detector = new HotKeyDetector<T>(hotKeys, hotKeys * COUNTERS_PER_HOT_KEY, windowSamples, hotShare);
+        _sampleInterval = sampleInterval;
+        _copyLifetime = copyLifetime.toNanos();
+        _ticker = ticker;
+        _local = ThreadLocal.withInitial(() -> {
+            retireDeadThreads();
+            final L1<T, U> l1 = new L1<T, U>(_sampleInterval);
+            _l1s.add(new Registration<T, U>(Thread.currentThread(), l1));
+            return l1;
+        });
+        if (main instanceof ConcurrentLRUCache) {
+            ((ConcurrentLRUCache<T, U>) main).setRemovalListener(this::removed);
+        }
+    }
+
+    /**
+     * Returns the value associated with the specified key, from this thread's L1 if it holds a
+     * current copy, and otherwise from the shared cache.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final L1<T, U> l1 = _local.get();
+        final HotKeyDetector.HotSet<T> hot = _detector.hotKeys();
+        if (l1._generation != hot._generation) {
+            l1._copies.keySet().retainAll(hot._keys);
+            l1._generation = hot._generation;
+        }
+        if (--l1._countdown == 0) {
+            l1._countdown = _sampleInterval;
+            l1._samples.add(key);
+            if (l1._samples.size() == SAMPLE_BATCH) {
+                //a batch that meets another thread recording is dropped rather than waited for
+                _detector.tryRecord(l1._samples);
+                l1._samples.clear();
+            }
+        }
+
+        final Copy<U> copy = l1._copies.get(key);
+        if (copy != null && copy._version == _versions.get(stripeOf(key))
+            && _ticker.getAsLong() - copy._copiedAt < _copyLifetime) {
+            l1._hits++;
+            return copy._value;
+        }
+        if (!hot._keys.contains(key)) {
+            return _main.get(key);
+        }
+        //the time and version are read first, so a write that lands during the read leaves the copy stale
+        final long copiedAt = _ticker.getAsLong();
+        final long version = _versions.get(stripeOf(key));
+        final U value = _main.get(key);
+        l1._copies.put(key, new Copy<U>(value, version, copiedAt));
+        return value;
+    }
+
+    /**
+     * Stores a value in the shared cache and stales every thread's copy of the key.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        _main.put(key, value);
+        _versions.incrementAndGet(stripeOf(key));
+    }
+
+    /**
+     * Removes the pair from the shared cache and stales every thread's copy of the key.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        _main.invalidate(key);
+        _versions.incrementAndGet(stripeOf(key));
+    }
+
+    /**
+     * Sets who is told about each pair the shared cache removes, and why. Only a
+     * <tt>ConcurrentLRUCache</tt> reports its removals; its listener must be set here, since this
+     * cache uses it to stale the L1 copies.
+     * @param listener called with each removed pair, or null for no one
+     * @throws UnsupportedOperationException if the shared cache does not report removals
+     */
+    public void setRemovalListener (RemovalListener<? super T, ? super U> listener) {
+        if (!(_main instanceof ConcurrentLRUCache)) {
+            throw new UnsupportedOperationException("the shared cache does not report removals");
+        }
+        _removalListener = listener;
+    }
+
+    /**
+     * Returns the number of reads answered by the threads' L1 copies. The counts of live threads
+     * are read without synchronization, so the total may lag slightly while they are reading.
+     * @return the L1 hit count
+     */
+    public long getL1HitCount () {
+        retireDeadThreads();
+        long hits = _retiredHits.sum();
+        for (final Registration<T, U> registration : _l1s) {
+            hits += registration._l1._hits;
+        }
+        return hits;
+    }
+
+    /**
+     * Returns the number of keys currently considered hot.
+     * @return the size of the published hot set
+     */
+    int hotKeyCount () {
+        return _detector.hotKeys()._keys.size();
+    }
+
+    /**
+     * Returns the number of L1s held for live threads.
+     * @return the number of registered L1s
+     */
+    int l1Count () {
+        retireDeadThreads();
+        return _l1s.size();
+    }
+
+    /**
+     * Returns the number of (key,value) pairs stored in the shared cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _main.size();
+    }
+
+    /**
+     * Returns the live statistics of the shared cache, which do not include L1 hits.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _main.getStats();
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _main.getNumMisses();
+    }
+
+    /**
+     * Stales the copies of a pair the shared cache removed or replaced, and passes the removal on.
+     */
+    private void removed (T key, U value, RemovalCause cause) {
+        _versions.incrementAndGet(stripeOf(key));
+        final RemovalListener<? super T, ? super U> listener = _removalListener;
+        if (listener != null) {
+            listener.onRemoval(key, value, cause);
+        }
+    }
+
+    /**
+     * Folds the hits of the L1s of dead threads into the shared total and drops the L1s, so their
+     * copies can be collected.
+     */
+    private void retireDeadThreads () {
+        for (final Iterator<Registration<T, U>> i = _l1s.iterator(); i.hasNext();) {
+            final Registration<T, U> registration = i.next();
+            if (registration.isRetired()) {
+                //the owner is dead, so its count no longer changes; only one caller may retire it
+                if (_l1s.remove(registration)) {
+                    _retiredHits.add(registration._l1._hits);
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a key onto its version stripe.
+     */
+    private static int stripeOf (Object key) {
+        final int hash = (key == null ? 0 : key.hashCode()) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+    }
+}
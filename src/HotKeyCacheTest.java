@@ -0,0 +1,230 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Code to test <tt>HotKeyCache</tt> and <tt>HotKeyDetector</tt>.
+ */
+public class HotKeyCacheTest {
+    //number of hot keys a test cache may copy
+    private static final int HOT_KEYS = 4;
+    //number of samples between publications in a test cache
+    private static final int WINDOW = 100;
+    //share of the samples a key must take to be hot in a test cache
+    private static final double HOT_SHARE = 0.1;
+    //how long a test cache trusts a copy
+    private static final Duration LIFETIME = Duration.ofSeconds(1);
+
+    /**
+     * Creates a cache that samples every read, so tests can make keys hot quickly.
+     */
+    private static HotKeyCache<Integer, String> newCache (ConcurrentCacheTest.CountingDataProvider provider) {
+        return newCache(new ConcurrentLRUCache<Integer, String>(provider, 100), new ExpirationTest.FakeTicker());
+    }
+
+    /**
+     * Creates a cache over the given shared cache that samples every read, timed by a fake ticker.
+     */
+    private static HotKeyCache<Integer, String> newCache (Cache<Integer, String> main, ExpirationTest.FakeTicker ticker) {
+        return new HotKeyCache<Integer, String>(main, HOT_KEYS, 1, WINDOW, HOT_SHARE, LIFETIME, ticker::read);
+    }
+
+    /**
+     * Reads a key often enough to fill a window with whole batches of samples, making it hot and
+     * copying it into the L1.
+     */
+    private static void heat (HotKeyCache<Integer, String> cache, int key) {
+        for (int i = 0; i <= WINDOW + HotKeyCache.SAMPLE_BATCH; i++) {
+            cache.get(key);
+        }
+    }
+
+    /**
+     * Tests that the detector publishes exactly the keys that take a large share of the stream
+     */
+    @Test
+    public void testDetectorFindsHeavyHitters () {
+        HotKeyDetector<Integer> detector = new HotKeyDetector<Integer>(8, 32, 1000, 0.05);
+        Random rand = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            double draw = rand.nextDouble();
+            detector.record(draw < 0.6 ? (int) (draw / 0.15) : 1000 + rand.nextInt(100000));
+        }
+        HotKeyDetector.HotSet<Integer> hot = detector.hotKeys();
+        assertEquals(4, hot._keys.size());
+        for (int key = 0; key < 4; key++) {
+            assertTrue(hot._keys.contains(key));
+        }
+        assertTrue(hot._generation > 0);
+    }
+
+    /**
+     * Tests that a batch of samples is dropped, not waited for, while another thread is recording
+     */
+    @Test
+    public void testContendedBatchIsDropped () throws InterruptedException {
+        HotKeyDetector<Integer> detector = new HotKeyDetector<Integer>(1, 4, 1000, 0.5);
+        CountDownLatch recording = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> slowBatch = new AbstractList<Integer>() {
+            public Integer get (int index) {
+                recording.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return index;
+            }
+
+            public int size () {
+                return 1;
+            }
+        };
+        Thread other = new Thread(() -> detector.tryRecord(slowBatch));
+        other.start();
+        recording.await();
+        assertFalse(detector.tryRecord(Arrays.asList(1, 2, 3)));
+        release.countDown();
+        other.join();
+        assertTrue(detector.tryRecord(Arrays.asList(1, 2, 3)));
+    }
+
+    /**
+     * Tests that once a key is hot its reads are answered by the L1 without the shared cache
+     */
+    @Test
+    public void testHotKeyIsServedFromL1 () {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        HotKeyCache<Integer, String> cache = newCache(provider);
+        heat(cache, 7);
+        assertEquals(1, cache.hotKeyCount());
+        long sharedHits = cache.getStats().getHitCount();
+        long l1Hits = cache.getL1HitCount();
+        for (int i = 0; i < 50; i++) {
+            assertEquals("7", cache.get(7));
+        }
+        assertEquals(sharedHits, cache.getStats().getHitCount());
+        assertEquals(l1Hits + 50, cache.getL1HitCount());
+        assertEquals(1, provider._timesReferenced.get());
+    }
+
+    /**
+     * Tests that put and invalidate on one thread stale the copy held by another thread
+     */
+    @Test
+    public void testWritesStaleOtherThreadsCopies () throws Exception {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        HotKeyCache<Integer, String> cache = newCache(provider);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            reader.submit(() -> heat(cache, 7)).get();
+            assertEquals("7", reader.submit(() -> cache.get(7)).get());
+            long l1Hits = cache.getL1HitCount();
+
+            cache.put(7, "seven");
+            assertEquals("seven", reader.submit(() -> cache.get(7)).get());
+            assertEquals(l1Hits, cache.getL1HitCount());
+            assertEquals("seven", reader.submit(() -> cache.get(7)).get());
+            assertEquals(l1Hits + 1, cache.getL1HitCount());
+
+            cache.invalidate(7);
+            assertEquals("7", reader.submit(() -> cache.get(7)).get());
+            assertEquals(2, provider._timesReferenced.get());
+        }
+        finally {
+            reader.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a key which stops being read often loses its L1 copy
+     */
+    @Test
+    public void testCooledKeyIsDropped () {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        HotKeyCache<Integer, String> cache = newCache(provider);
+        heat(cache, 7);
+        for (int i = 0; i < 10 * WINDOW; i++) {
+            cache.get(1000 + i % 50);
+        }
+        assertEquals(0, cache.hotKeyCount());
+        long sharedHits = cache.getStats().getHitCount();
+        long l1Hits = cache.getL1HitCount();
+        cache.get(7);
+        assertEquals(l1Hits, cache.getL1HitCount());
+        assertEquals(sharedHits + 1, cache.getStats().getHitCount());
+    }
+
+    /**
+     * Tests that a copy is fetched again once its lifetime has passed, even if the shared cache
+     * changed without telling anyone
+     */
+    @Test
+    public void testCopyIsRefetchedAfterLifetime () {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        BufferedLRUCache<Integer, String> main = new BufferedLRUCache<Integer, String>(provider, 100);
+        HotKeyCache<Integer, String> cache = newCache(main, ticker);
+        heat(cache, 7);
+        main.put(7, "changed");
+        ticker._nanos = LIFETIME.toNanos() - 1;
+        assertEquals("7", cache.get(7));
+        ticker._nanos = LIFETIME.toNanos();
+        assertEquals("changed", cache.get(7));
+        assertEquals("changed", cache.get(7));
+    }
+
+    /**
+     * Tests that a pair the shared cache removes by itself stales the copies, and that the removal
+     * is passed on to the listener set on the hot key cache
+     */
+    @Test
+    public void testSharedCacheRemovalStalesCopies () {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        ConcurrentLRUCache<Integer, String> main = new ConcurrentLRUCache<Integer, String>(provider, 100);
+        HotKeyCache<Integer, String> cache = newCache(main, new ExpirationTest.FakeTicker());
+        List<RemovalCause> causes = new ArrayList<RemovalCause>();
+        cache.setRemovalListener((key, value, cause) -> causes.add(cause));
+        heat(cache, 7);
+        main.invalidate(7);
+        assertEquals("7", cache.get(7));
+        assertEquals(2, provider._timesReferenced.get());
+        assertEquals(1, causes.size());
+        assertEquals(RemovalCause.EXPLICIT, causes.get(0));
+    }
+
+    /**
+     * Tests that the L1s of dead threads are dropped while their hits are still counted
+     */
+    @Test
+    public void testDeadThreadsAreRetired () throws Exception {
+        ConcurrentCacheTest.CountingDataProvider provider = new ConcurrentCacheTest.CountingDataProvider();
+        HotKeyCache<Integer, String> cache = newCache(provider);
+        for (int i = 0; i < 3; i++) {
+            Thread reader = new Thread(() -> {
+                heat(cache, 7);
+                for (int j = 0; j < 10; j++) {
+                    cache.get(7);
+                }
+            });
+            reader.start();
+            reader.join();
+        }
+        assertEquals(0, cache.l1Count());
+        assertTrue(cache.getL1HitCount() >= 30);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Finds the heavy hitters of an access stream with the Space-Saving algorithm (Metwally, Agrawal
+ * and El Abbadi). A fixed number of counters track the keys seen most; a key without a counter
+ * takes over the smallest one, inheriting its count as possible overestimate. The caller feeds it
+ * a sample of the stream. After every window of samples, the keys whose guaranteed share of the
+ * samples reaches the hot threshold are published as an immutable <tt>HotSet</tt>, and every count
+ * is halved so that keys which cool down drop out.
+ * <p>
+ * Samples are counted under a lock. <tt>tryRecord</tt> gives up a batch of samples rather than
+ * wait for the lock, so callers on the read path never block on the detector; readers of the hot
+ * keys only read the published set, which is replaced rather than changed.
+ */
+class HotKeyDetector<T> {
+    /**
+     * The keys found hot in one window. A new generation is published only when the keys change.
+     */
+    static class HotSet<T> {
+        //the hot keys; never modified once published
+        final Set<T> _keys;
+        //increases each time a different set of keys is published
+        final int _generation;
+
+        HotSet (Set<T> keys, int generation) {
+            _keys = keys;
+            _generation = generation;
+        }
+    }
+
+    /**
+     * A Space-Saving counter.
+     */
+    private static class Counter<T> {
+        //the tracked key
+        T _key;
+        //the samples counted for the key, possibly overestimated by up to _error
+        long _count;
+        //the count inherited from the key that held the counter before
+        long _error;
+
+        /**
+         * Returns the number of samples certainly taken by the key.
+         */
+        long guaranteed () {
+            return _count - _error;
+        }
+    }
+
+    //the counters, taken in order until every one tracks a key
+    private final List<Counter<T>> _counters;
+    //the counter of each tracked key
+    private final HashMap<T, Counter<T>> _index = new HashMap<T, Counter<T>>();
+    //held while samples are counted
+    private final ReentrantLock _lock = new ReentrantLock();
+    //the most keys published as hot
+    private final int _maxHot;
+    //the number of samples between publications
+    private final int _windowSamples;
+    //the share of all counted samples a key must certainly have taken to be hot
+    private final double _hotShare;
+    //samples recorded since the last publication
+    private int _samples = 0;
+    //all samples counted, halved with the counters
+    private long _total = 0;
+    //the keys found hot in the last window
+    private volatile HotSet<T> _hot = new HotSet<T>(Collections.<T>emptySet(), 0);
+
+    /**
+     * @param maxHot the most keys published as hot
+     * @param counters the number of keys tracked, at least <tt>maxHot</tt>
+     * @param windowSamples the number of samples between publications
+     * @param hotShare the share of the samples, between 0 and 1, a key must take to be hot
+     */
+    HotKeyDetector (int maxHot, int counters, int windowSamples, double hotShare) {
+        if (maxHot < 1 || counters < maxHot || windowSamples < 1 || !(hotShare > 0 && hotShare <= 1)) {
+            throw new IllegalArgumentException("invalid hot key detector settings");
+        }
+        _counters = new ArrayList<Counter<T>>(counters);
+        for (int i = 0; i < counters; i++) {
+            _counters.add(new Counter<T>());
+        }
+        _maxHot = maxHot;
+        _windowSamples = windowSamples;
+        _hotShare = hotShare;
+    }
+
+    /**
+     * Counts one sampled access, waiting for any other thread that is recording.
+     * @param key the accessed key
+     */
+    void record (T key) {
+        _lock.lock();
+        try {
+            count(key);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a batch of sampled accesses if no other thread is recording, and otherwise drops it.
+     * @param keys the accessed keys
+     * @return true if the batch was counted, false if it was dropped
+     */
+    boolean tryRecord (List<? extends T> keys) {
+        if (!_lock.tryLock()) {
+            return false;
+        }
+        try {
+            for (final T key : keys) {
+                count(key);
+            }
+        } finally {
+            _lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Counts one sampled access, publishing the hot keys at the end of each window. Called with
+     * the lock held.
+     * @param key the accessed key
+     */
+    private void count (T key) {
+        Counter<T> counter = _index.get(key);
+        if (counter == null) {
+            if (_index.size() < _counters.size()) {
+                counter = _counters.get(_index.size());
+            }
+            else {
+                counter = smallest();
+                _index.remove(counter._key);
+                counter._error = counter._count;
+            }
+            counter._key = key;
+            _index.put(key, counter);
+        }
+        counter._count++;
+        _total++;
+        if (++_samples == _windowSamples) {
+            publish();
+        }
+    }
+
+    /**
+     * Returns the keys found hot in the last complete window.
+     * @return the published hot set
+     */
+    HotSet<T> hotKeys () {
+        return _hot;
+    }
+
+    /**
+     * Publishes the keys that are certainly above the hot threshold, most frequent first up to
+     * the maximum, and then halves every count.
+     */
+    private void publish () {
+        final List<Counter<T>> candidates = new ArrayList<Counter<T>>();
+        for (final Counter<T> counter : _index.values()) {
+            if (counter.guaranteed() >= _hotShare * _total) {
+                candidates.add(counter);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(b._count, a._count));
+        final Set<T> keys = new HashSet<T>();
+        for (int i = 0; i < Math.min(_maxHot, candidates.size()); i++) {
+            keys.add(candidates.get(i)._key);
+        }
+        final HotSet<T> current = _hot;
+        if (!keys.equals(current._keys)) {
+            _hot = new HotSet<T>(Collections.unmodifiableSet(keys), current._generation + 1);
+        }
+
+        for (final Counter<T> counter : _index.values()) {
+            counter._count /= 2;
+            counter._error /= 2;
+        }
+        _total /= 2;
+        _samples = 0;
+    }
+
+    /**
+     * Finds the counter with the smallest count. The counters are few and only replaced on a
+     * sampled access to an untracked key, so a scan is cheap enough.
+     */
+    private Counter<T> smallest () {
+        Counter<T> smallest = _counters.get(0);
+        for (final Counter<T> counter : _counters) {
+            if (counter._count < smallest._count) {
+                smallest = counter;
+            }
+        }
+        return smallest;
+    }
+}
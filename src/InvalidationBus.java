@@ -0,0 +1,55 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidations from whoever changes the data behind a cache to every cache holding a
+ * copy of it, so that several caches stay consistent without sharing a lock. Implementations may
+ * deliver in-process, like <tt>LocalInvalidationBus</tt>, or between processes.
+ */
+interface InvalidationBus<T> {
+	/**
+	 * A subscriber's registration on a bus.
+	 */
+	interface Subscription {
+		/**
+		 * Stops delivering invalidations to the subscriber.
+		 */
+		void cancel ();
+	}
+
+	/**
+	 * Tells every subscriber that the data behind some keys has changed.
+	 * @param keys the changed keys
+	 */
+	void publish (Collection<? extends T> keys);
+
+	/**
+	 * Registers a subscriber to be given the keys of every later publication.
+	 * @param subscriber called with the published keys
+	 * @return the registration, to cancel it
+	 */
+	Subscription subscribe (Consumer<Collection<? extends T>> subscriber);
+
+	/**
+	 * Registers a cache to invalidate the keys of every later publication.
+	 * @param cache the cache to keep consistent
+	 * @return the registration, to cancel it
+	 */
+	default Subscription subscribe (Cache<T, ?> cache) {
+		return subscribe(cache::invalidateAll);
+	}
+
+	/**
+	 * Registers an asynchronous cache to invalidate the keys of every later publication.
+	 * @param cache the cache to keep consistent
+	 * @return the registration, to cancel it
+	 */
+	default Subscription subscribe (AsyncCache<T, ?> cache) {
+		return subscribe(cache::invalidateAll);
+	}
+}
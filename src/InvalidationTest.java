@@ -0,0 +1,224 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code to test <tt>put</tt>, <tt>invalidate</tt>, removal listeners and invalidation buses.
+ */
+public class InvalidationTest {
+
+    /**
+     * A listener that records each removal as "key:value:cause"
+     */
+    public static class RecordingListener implements RemovalListener<Integer, String> {
+        public final List<String> _removals = Collections.synchronizedList(new ArrayList<String>());
+
+        public void onRemoval (Integer key, String value, RemovalCause cause) {
+            _removals.add(key + ":" + value + ":" + cause);
+        }
+    }
+
+    /**
+     * Tests that an invalidated key is loaded again and that put replaces without a load
+     */
+    @Test
+    public void testInvalidateAndPut () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        Cache<Integer, String> cache = new LRUCache<Integer, String>(provider, 3);
+
+        cache.get(0);
+        cache.invalidate(0);
+        assertEquals(0, cache.size());
+        cache.get(0);
+        assertEquals(2, cache.getNumMisses());
+
+        cache.put(1, "changed");
+        assertEquals("changed", cache.get(1));
+        assertEquals(2, cache.getNumMisses());
+
+        cache.invalidateAll(Arrays.asList(0, 1, 4));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that the listener is told the right cause for each kind of removal
+     */
+    @Test
+    public void testRemovalCauses () {
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 2,
+            new CacheStats(), Expiry.afterWrite(Duration.ofSeconds(10)), ticker::read);
+        RecordingListener listener = new RecordingListener();
+        cache.setRemovalListener(listener);
+
+        cache.get(0);
+        cache.put(0, "zero");
+        cache.get(1);
+        cache.get(2);
+        cache.invalidate(1);
+        ticker._nanos = TimeUnit.SECONDS.toNanos(10);
+        cache.get(3);
+
+        assertEquals(Arrays.asList("0:Value for key 0.:REPLACED", "0:zero:EVICTED", "1:Value for key 1.:EXPLICIT",
+            "2:Value for key 2.:EXPIRED"), listener._removals);
+    }
+
+    /**
+     * Tests that removing an expired pair on request counts and reports it as expired, however it
+     * is removed
+     */
+    @Test
+    public void testRequestedRemovalOfExpiredPair () {
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4,
+            new CacheStats(), Expiry.afterWrite(Duration.ofMillis(1)), ticker::read);
+        RecordingListener listener = new RecordingListener();
+        cache.setRemovalListener(listener);
+
+        cache.get(0);
+        String one = cache.get(1);
+        //expired, but within the timing wheel's first tick, so only the requested removal finds it
+        ticker._nanos = TimeUnit.MILLISECONDS.toNanos(2);
+        cache.invalidate(0);
+        cache.remove(1, one);
+
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getStats().getEvictionCount());
+        assertEquals(Arrays.asList("0:Value for key 0.:EXPIRED", "1:Value for key 1.:EXPIRED"), listener._removals);
+    }
+
+    /**
+     * Tests that a dispatcher calls the listener on its own thread and delivers everything queued
+     * before it is closed
+     */
+    @Test
+    public void testDispatcherRunsOffThread () {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final RecordingListener listener = new RecordingListener();
+        RemovalDispatcher<Integer, String> dispatcher = new RemovalDispatcher<Integer, String>((key, value, cause) -> {
+            threads.add(Thread.currentThread());
+            listener.onRemoval(key, value, cause);
+        });
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 1);
+        cache.setRemovalListener(dispatcher);
+
+        for (int key = 0; key < 5; key++) {
+            cache.get(key);
+        }
+        dispatcher.close();
+        assertEquals(4, listener._removals.size());
+        assertFalse(threads.contains(Thread.currentThread()));
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    /**
+     * Tests that a full dispatch queue drops removals instead of blocking the cache
+     */
+    @Test
+    public void testDispatcherDropsWhenFull () throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RemovalDispatcher<Integer, String> dispatcher = new RemovalDispatcher<Integer, String>((key, value, cause) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, 2);
+
+        dispatcher.onRemoval(0, "a", RemovalCause.EXPLICIT);
+        entered.await();
+        for (int key = 1; key <= 5; key++) {
+            dispatcher.onRemoval(key, "a", RemovalCause.EXPLICIT);
+        }
+        assertEquals(3, dispatcher.getDroppedCount());
+        release.countDown();
+        dispatcher.close();
+    }
+
+    /**
+     * Tests that invalidating a key while it is being loaded keeps the possibly stale value out
+     * of a ConcurrentLRUCache, while the waiting caller still receives it
+     */
+    @Test
+    public void testInvalidateDuringLoad () throws InterruptedException {
+        ConcurrentCacheTest.GatedDataProvider provider = new ConcurrentCacheTest.GatedDataProvider();
+        final ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 10);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        Thread loader = new Thread(() -> results.add(cache.get(7)));
+        loader.start();
+        provider._entered.await();
+
+        cache.invalidate(7);
+        provider._release.countDown();
+        loader.join();
+        assertEquals(Arrays.asList("7"), results);
+        assertEquals(0, cache.size());
+
+        cache.put(7, "newer");
+        assertEquals("newer", cache.get(7));
+    }
+
+    /**
+     * Tests that a publication on the bus invalidates the key in every subscribed cache
+     */
+    @Test
+    public void testInvalidationBus () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        Cache<Integer, String> first = new LRUCache<Integer, String>(provider, 5);
+        Cache<Integer, String> second = new ConcurrentLRUCache<Integer, String>(provider, 5);
+        LocalInvalidationBus<Integer> bus = new LocalInvalidationBus<Integer>();
+        bus.subscribe(first);
+        InvalidationBus.Subscription subscription = bus.subscribe(second);
+
+        for (int key = 0; key < 3; key++) {
+            first.get(key);
+            second.get(key);
+        }
+        bus.publish(Arrays.asList(0, 1));
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+
+        subscription.cancel();
+        bus.publish(Arrays.asList(2));
+        assertEquals(0, first.size());
+        assertEquals(1, second.size());
+    }
+
+    /**
+     * Tests the operations of the caches built on other structures
+     */
+    @Test
+    public void testOtherCaches () {
+        PolicyCache<Integer, String> policy = new PolicyCache<Integer, String>(new CacheTest.TestDataProvider(),
+            new LRUPolicy<Integer>(2));
+        policy.put(0, "zero");
+        assertEquals("zero", policy.get(0));
+        policy.invalidate(0);
+        assertEquals(0, policy.size());
+        policy.get(1);
+        policy.get(2);
+        policy.get(3);
+        assertEquals(2, policy.size());
+
+        OffHeapCache<Integer> offHeap = new OffHeapCache<Integer>(key -> new byte[100], 1 << 16);
+        offHeap.put(0, new byte[] {1, 2, 3});
+        assertArrayEquals(new byte[] {1, 2, 3}, offHeap.get(0));
+        offHeap.invalidate(0);
+        assertEquals(0, offHeap.size());
+        assertEquals(0, offHeap.weight());
+        assertEquals(0, offHeap.getNumMisses());
+    }
+}
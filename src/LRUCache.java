@@ -3,42 +3,151 @@
  * Marie Tessier and Edward Clifford
  */
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
 /**
  * An implementation of <tt>Cache</tt> that uses a least-recently-used (LRU)
  * eviction policy.
+ * <p>
+ * The capacity is either a number of pairs or, with a <tt>Weigher</tt>, a maximum total weight. A
+ * pair heavier than the whole maximum is returned but not stored, so it never flushes the cache.
+ * <p>
+ * Pairs may also be given an <tt>Expiry</tt>, which sets a time-to-live per pair on creation,
+ * update and read. Expired pairs are never returned; they are cleaned up by a <tt>TimerWheel</tt>
+ * that every operation advances, so no pair is ever scanned and no thread is started.
+ * <p>
+ * With refresh-after-write, a read of a pair older than the refresh age returns the current value
+ * at once and reloads the pair on an <tt>Executor</tt>. The reloaded value replaces the old one at
+ * the start of the next operation, so the cache itself is still only touched by its caller; a
+ * failed reload keeps the old value and is counted in the statistics.
+ * <p>
+ * Pairs are found through a hash table chained through the elements themselves, so storing a
+ * pair allocates nothing beyond its element, and a full cache reuses the element it last evicted
+ * for the next new pair. Once the cache is full, neither hits nor misses allocate.
  */
 public class LRUCache<T, U> implements Cache<T, U> {
-	//creates the cache as a HashMap that takes a key type T and an object
-    private HashMap<T, Element<T, U>> _cache;
+    //number of buckets in a new hash table; always a power of two
+    private static final int INITIAL_TABLE_SIZE = 16;
+    //the hash table doubles once it holds more pairs than this share of its buckets
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    //the stored elements, chained by bucket through each element's _chain
+    private Element<T, U>[] _table;
+    //the number of stored pairs
+    private int _size = 0;
+    //the element last evicted, kept for the next new pair so that a full cache does not allocate
+    private Element<T, U> _spare;
     //creates a DataProvider to be used in the class
     private DataProvider<T, U> _provider;
 
-    //the first term in the hash table
-    private T _head;
-    //the last term in the hash table
-    private T _tail;
+    //the least recently used element in the linked list
+    private Element<T, U> _head;
+    //the most recently used element in the linked list
+    private Element<T, U> _tail;
+
+    //maximum total weight of the cache; without a weigher, the number of pairs
+    private final long _maxWeight;
+    //measures each pair, or null if every pair weighs one
+    private final Weigher<T, U> _weigher;
+    //total weight of the stored pairs
+    private long _totalWeight = 0;
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats;
+
+    //decides how long pairs live, or null if they never expire
+    private final Expiry<T, U> _expiry;
+    //the time source for expiration, in nanoseconds
+    private final LongSupplier _ticker;
+    //the expiration timers of the pairs, or null if pairs never expire
+    private final TimerWheel<Element<T, U>> _timers;
+    //the time at the start of the current operation, when pairs can expire
+    private long _now;
 
-    //maximum capacity of the cache
-    private int _maxCapacity;
-    //counts the number of misses when calling the cache
-    private int _missCounter = 0;
+    //how long after a write a read reloads a pair in the background, in nanoseconds
+    private final long _refreshAfter;
+    //runs the background reloads, or null if pairs are never refreshed
+    private final Executor _refresher;
+    //keys being reloaded in the background, with the value each reload will replace
+    private final HashMap<T, U> _refreshing;
+    //finished reloads, waiting for the next operation to apply them
+    private final ConcurrentLinkedQueue<Refresh<T, U>> _refreshed;
+
+    //told about every pair removed, or null if no one is listening
+    private RemovalListener<? super T, ? super U> _removalListener;
+    //told about every requested key, or null if requests are not traced
+    private TraceRecorder _recorder;
 
     /**
-     * Implements an Element, which stores a value and keys to the previous and next Elements in
-     * the linked list.
+     * Implements an Element, which stores a key/value pair and references to the previous and
+     * next Elements in the linked list, so relinking never needs another hash lookup.
      */
-    private class Element<T, U> {
-        protected U _value;   			
-        protected T _nextKey;    //a pointer to the next value 
-        protected T _lastKey;    //a pointer to the previous value 
-        
-        //initializes the value and keys for Element 
-        Element (U value, T nextKey, T lastKey) {
+    static class Element<T, U> {
+        protected T _key;
+        protected U _value;
+        protected int _hash;    //the spread hash of the key
+        protected Element<T, U> _chain;    //the next element in the same hash bucket
+        protected Element<T, U> _next;    //the next (more recently used) element
+        protected Element<T, U> _last;    //the previous (less recently used) element
+        protected TimerWheel.Node<Element<T, U>> _timer;    //the expiration timer, if any
+        protected long _writtenAt;    //when the value was last written, if pairs are refreshed
+
+        //initializes the key and value for Element 
+        Element (T key, U value) {
+            _key = key;
             _value = value;
-            _nextKey = nextKey;
-            _lastKey = lastKey;
+        }
+
+        //the share of the cache's capacity used by this element
+        int weight () {
+            return 1;
+        }
+    }
+
+    /**
+     * An Element that remembers its weight, used only when the cache has a weigher.
+     */
+    private static class WeightedElement<T, U> extends Element<T, U> {
+        protected int _weight;
+
+        WeightedElement (T key, U value, int weight) {
+            super(key, value);
+            _weight = weight;
+        }
+
+        @Override
+        int weight () {
+            return _weight;
+        }
+    }
+
+    /**
+     * The outcome of a background reload of a pair.
+     */
+    private static class Refresh<T, U> {
+        final T _key;
+        final U _oldValue;    //the value the reload replaces
+        final U _newValue;    //the reloaded value, if the reload succeeded
+        final boolean _succeeded;
+
+        Refresh (T key, U oldValue, U newValue, boolean succeeded) {
+            _key = key;
+            _oldValue = oldValue;
+            _newValue = newValue;
+            _succeeded = succeeded;
         }
     }
 
@@ -47,9 +156,96 @@ public class LRUCache<T, U> implements Cache<T, U> {
 	 * @param capacity the exact number of (key,value) pairs to store in the cache
 	 */
 	public LRUCache (DataProvider<T, U> provider, int capacity) {
-        _cache = new HashMap<T, Element<T, U>>();
+        this(provider, capacity, new CacheStats());
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param capacity the exact number of (key,value) pairs to store in the cache
+	 * @param expiry decides how long each pair lives, e.g. <tt>Expiry.afterWrite</tt>
+	 */
+	public LRUCache (DataProvider<T, U> provider, int capacity, Expiry<T, U> expiry) {
+        this(provider, capacity, null, new CacheStats(), expiry, System::nanoTime, 0, null);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param weigher measures each pair, e.g. <tt>Weigher.estimatedHeapSize</tt>
+	 * @param maxWeight the maximum total weight of the stored pairs
+	 */
+	public LRUCache (DataProvider<T, U> provider, Weigher<T, U> weigher, long maxWeight) {
+        this(provider, maxWeight, weigher, new CacheStats(), null, System::nanoTime, 0, null);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param weigher measures each pair, e.g. <tt>Weigher.estimatedHeapSize</tt>
+	 * @param maxWeight the maximum total weight of the stored pairs
+	 * @param expiry decides how long each pair lives, e.g. <tt>Expiry.afterWrite</tt>
+	 */
+	public LRUCache (DataProvider<T, U> provider, Weigher<T, U> weigher, long maxWeight, Expiry<T, U> expiry) {
+        this(provider, maxWeight, weigher, new CacheStats(), expiry, System::nanoTime, 0, null);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param capacity the exact number of (key,value) pairs to store in the cache
+	 * @param stats where to record statistics, which may be shared with other caches
+	 */
+	LRUCache (DataProvider<T, U> provider, int capacity, CacheStats stats) {
+        this(provider, capacity, null, stats, null, System::nanoTime, 0, null);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param capacity the exact number of (key,value) pairs to store in the cache
+	 * @param stats where to record statistics, which may be shared with other caches
+	 * @param expiry decides how long each pair lives, or null if pairs never expire
+	 * @param ticker the time source for expiration, in nanoseconds
+	 */
+	LRUCache (DataProvider<T, U> provider, int capacity, CacheStats stats, Expiry<T, U> expiry,
+	          LongSupplier ticker) {
+        this(provider, capacity, null, stats, expiry, ticker, 0, null);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param capacity the exact number of (key,value) pairs to store in the cache
+	 * @param refreshAfterWrite how old a pair must be before a read reloads it in the background
+	 * @param executor runs the background reloads
+	 */
+	public LRUCache (DataProvider<T, U> provider, int capacity, Duration refreshAfterWrite, Executor executor) {
+        this(provider, capacity, null, new CacheStats(), null, System::nanoTime, refreshAfterWrite.toNanos(), executor);
+	}
+
+	/**
+	 * @param provider the data provider to consult for a cache miss
+	 * @param maxWeight the maximum total weight, or the number of pairs if there is no weigher
+	 * @param weigher measures each pair, or null if every pair weighs one
+	 * @param stats where to record statistics, which may be shared with other caches
+	 * @param expiry decides how long each pair lives, or null if pairs never expire
+	 * @param ticker the time source for expiration and refresh, in nanoseconds
+	 * @param refreshAfter how old a pair must be, in nanoseconds, before a read reloads it
+	 * @param refresher runs the background reloads, or null if pairs are never refreshed
+	 */
+	LRUCache (DataProvider<T, U> provider, long maxWeight, Weigher<T, U> weigher, CacheStats stats,
+	          Expiry<T, U> expiry, LongSupplier ticker, long refreshAfter, Executor refresher) {
+        if (refresher != null && refreshAfter <= 0) {
+            throw new IllegalArgumentException("refresh age must be positive");
+        }
+        _table = newTable(INITIAL_TABLE_SIZE);
         _provider = provider;    
-        _maxCapacity = capacity;
+        _maxWeight = maxWeight;
+        _weigher = weigher;
+        _stats = stats;
+        _expiry = expiry;
+        _ticker = ticker;
+        _now = expiry == null && refresher == null ? 0 : ticker.getAsLong();
+        _timers = expiry == null ? null : new TimerWheel<Element<T, U>>(_now);
+        _refreshAfter = refreshAfter;
+        _refresher = refresher;
+        _refreshing = refresher == null ? null : new HashMap<T, U>();
+        _refreshed = refresher == null ? null : new ConcurrentLinkedQueue<Refresh<T, U>>();
 	}
     
 	/**
@@ -58,108 +254,707 @@ public class LRUCache<T, U> implements Cache<T, U> {
 	 * @return the value associated with the key
 	 */
 	public U get (T key) {
-        final Element<T, U> request = (Element<T, U>) _cache.get(key);
+        maintain();
+        if (_recorder != null) {
+            _recorder.record(key);
+        }
+        final Element<T, U> request = find(key);
 
         //Search the provider
-        if (request == null) {
-        	_missCounter++;
-        	U value = (U) _provider.get(key);
-
-        	addElement(key, value);
-            return value;
+        if (request == null || isExpired(request)) {
+            return load(key);
         }
 
         //Value located in cache, update to recently used 
-        update(key);
-        return (U) request._value;        
-	}
-
-	/**
-     * Re-sorts the linked list when a key/value pair has been accessed
-     * @param key the key used to access the object
-     */
-    private void update (T key) {
-		Element<T, U> currentElement = _cache.get(key);
-		
-    	//checks if the key is the _head
-    	if (key.equals(_head)) {
-    		if (currentElement._nextKey == null) return;
-    		
-    		//updating head to the next element and than to previous value pointer to null
-    		_head = _cache.get(_head)._nextKey;   
-    		_cache.get(_head)._lastKey = null;
-    		 //updating new tail and setting its pointer to null
-    		currentElement._lastKey = _tail;	   
-    		currentElement._nextKey = null; 	
-    		//updating the old tail and setting the new tail
-    		_cache.get(_tail)._nextKey = key; 	
-    		_tail = key;						
+        hit(request);
+        return request._value;
+	}
+
+	/**
+	 * Answers a read from the stored pair of a key, if there is one, with a single lookup. A
+	 * found pair counts as a hit and becomes the most recently used; a missing key is neither
+	 * loaded nor counted, so the caller can load it as it sees fit.
+	 * @param key the key
+	 * @return the element of the stored pair, whose value is the answer, or null if the key is not
+	 * stored
+	 */
+	Element<T, U> lookup (T key) {
+		maintain();
+		final Element<T, U> request = find(key);
+		if (request == null || isExpired(request)) {
+			return null;
+		}
+		hit(request);
+		return request;
+	}
+
+	/**
+	 * Returns the values associated with several keys. Hits are found in one pass, every miss is
+	 * loaded with a single <tt>loadAll</tt> call, and the recency updates and evictions for the
+	 * whole batch are applied together afterwards.
+	 * @param keys the keys; duplicates are looked up once
+	 * @return the value of each key, in the order the keys were given
+	 */
+	public Map<T, U> getAll (Collection<? extends T> keys) {
+		maintain();
+		final Map<T, U> values = new LinkedHashMap<T, U>();
+		final List<Element<T, U>> hits = new ArrayList<Element<T, U>>();
+		final Set<T> misses = new LinkedHashSet<T>();
+		for (final T key : keys) {
+			if (_recorder != null) {
+				_recorder.record(key);
+			}
+			final Element<T, U> request = find(key);
+			if (request == null || isExpired(request)) {
+				misses.add(key);
+				values.put(key, null);
+			}
+			else if (!values.containsKey(key)) {
+				_stats.recordHit();
+				hits.add(request);
+				values.put(key, request._value);
+			}
+		}
+
+		final Map<T, U> loaded = misses.isEmpty() ? Collections.<T, U>emptyMap() : _stats.loadAll(_provider, misses);
+		for (final Element<T, U> hit : hits) {
+			update(hit);
+			if (_timers != null) {
+				afterRead(hit);
+			}
+			if (_refresher != null) {
+				refreshIfStale(hit);
+			}
+		}
+		for (final T key : misses) {
+			values.put(key, loaded.get(key));
+		}
+		putAll(values, misses);
+		return values;
+	}
+
+	/**
+	 * Counts a read answered by a stored pair, marks the pair as the most recently used and lets
+	 * expiration and refresh see the read.
+	 * @param request the element that was read
+	 */
+	private void hit (Element<T, U> request) {
+		_stats.recordHit();
+		update(request);
+		if (_timers != null) {
+			afterRead(request);
+		}
+		if (_refresher != null) {
+			refreshIfStale(request);
+		}
+	}
+
+	/**
+	 * Returns whether the key is currently stored, without loading it or changing its recency.
+	 * @param key the key
+	 * @return true if the key is in the cache, false otherwise
+	 */
+	boolean contains (T key) {
+		maintain();
+		final Element<T, U> existing = find(key);
+		return existing != null && !isExpired(existing);
+	}
+
+	/**
+	 * Stores a value that was loaded or changed outside the cache, replacing any value already
+	 * stored for the key and marking it as the most recently used.
+	 * @param key the key
+	 * @param value the value to associate with the key
+	 */
+	public void put (T key, U value) {
+		maintain();
+		final Element<T, U> existing = find(key);
+		if (existing == null || isExpired(existing)) {
+			addElement(key, value);
+			return;
+		}
+		update(existing);
+		replaceValue(existing, value);
+		evictExcess();
+	}
+
+	/**
+	 * Sets who is told about each pair that leaves the cache, and why. The listener is called
+	 * on the thread using the cache; wrap it in a <tt>RemovalDispatcher</tt> to keep it off
+	 * that thread.
+	 * @param listener called with each removed pair, or null for no one
+	 */
+	public void setRemovalListener (RemovalListener<? super T, ? super U> listener) {
+		_removalListener = listener;
+	}
+
+	/**
+	 * Sets where every requested key is recorded, so the traffic can later be replayed by
+	 * <tt>CacheSimulator</tt> to compare capacities and policies.
+	 * @param recorder records each key passed to <tt>get</tt> or <tt>getAll</tt>, or null to stop
+	 */
+	public void setTraceRecorder (TraceRecorder recorder) {
+		_recorder = recorder;
+	}
+
+	/**
+	 * Passes every unexpired pair to an action, from the least to the most recently used, without
+	 * changing their recency.
+	 * @param action what to do with each pair
+	 */
+	void forEach (BiConsumer<? super T, ? super U> action) {
+		maintain();
+		for (Element<T, U> element = _head; element != null; element = element._next) {
+			if (!isExpired(element)) {
+				action.accept(element._key, element._value);
+			}
+		}
+	}
+
+	/**
+	 * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again.
+	 * @param key the key
+	 */
+	public void invalidate (T key) {
+		maintain();
+		final Element<T, U> existing = find(key);
+		if (existing != null) {
+			removeRequested(existing);
+		}
+	}
+
+	/**
+	 * Removes a pair, but only if the key is still associated with the given value.
+	 * @param key the key
+	 * @param value the value the key must still be associated with, compared by identity
+	 * @return true if the pair was removed, false otherwise
+	 */
+	boolean remove (T key, U value) {
+		maintain();
+		final Element<T, U> existing = find(key);
+		if (existing == null || existing._value != value) {
+			return false;
+		}
+		removeRequested(existing);
+		return true;
+	}
+
+	/**
+	 * Stores several values that were loaded outside the cache, replacing any values already
+	 * stored, and then evicts once for the whole batch.
+	 * @param values the values to take the stored pairs from
+	 * @param keys the keys of <tt>values</tt> to store, in order from least to most recently used
+	 */
+	void putAll (Map<T, U> values, Collection<? extends T> keys) {
+		maintain();
+		for (final T key : keys) {
+			final U value = values.get(key);
+			final Element<T, U> existing = find(key);
+			if (existing == null || isExpired(existing)) {
+				insert(key, value);
+			}
+			else {
+				update(existing);
+				replaceValue(existing, value);
+			}
+		}
+		evictExcess();
+	}
+
+	/**
+     * Moves an element that has just been accessed to the most recently used end of the list
+     * @param element the element that was accessed
+     */
+    private void update (Element<T, U> element) {
+    	//already the most recently used
+    	if (element == _tail) {
     		return;
-    		
     	}
-    	//if key is the tail
-    	else if (key.equals(_tail)) {
+    	unlink(element);
+    	linkLast(element);
+    }
+
+    /**
+     * Loads a missing or expired pair from the provider and stores it. Kept out of <tt>get</tt>
+     * so that the hit path stays small enough to be inlined into its callers.
+     * @param key the key
+     * @return the loaded value
+     */
+    private U load (T key) {
+        final U value = _stats.load(_provider, key);
+        addElement(key, value);
+        return value;
+    }
+
+    /**
+     * Adds a key value pair to the cache in event of a miss, evicting the least recently used
+     * pair if the cache is full
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     */
+    private void addElement (T key, U value) {
+        insert(key, value);
+        evictExcess();
+    }
+
+    /**
+     * Links a new pair in as the most recently used and starts its expiration timer, replacing
+     * any expired pair still stored under the key, without evicting. A pair heavier than the
+     * whole cache is not stored.
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     */
+    private void insert (T key, U value) {
+    	final Element<T, U> entry = newElement(key, value);
+    	if (entry == null) {
     		return;
     	}
-    	//any other case
+        final Element<T, U> expired = find(key);
+        if (expired != null) {
+            removeElement(expired);
+            _stats.recordEviction();
+            notifyRemoval(expired, RemovalCause.EXPIRED);
+        }
+        addToTable(entry);
+        linkLast(entry);
+        _totalWeight += entry.weight();
+        entry._writtenAt = _now;
+        if (_timers != null) {
+            if (entry._timer == null) {
+                entry._timer = new TimerWheel.Node<Element<T, U>>(entry);
+            }
+            setExpiration(entry, _expiry.expireAfterCreate(key, value, _now));
+        }
+    }
+
+    /**
+     * Replaces the value of a stored pair, without changing its recency, or removes the pair if
+     * the new value is heavier than the whole cache
+     * @param element the element of the pair
+     * @param value the new value
+     */
+    private void replaceValue (Element<T, U> element, U value) {
+        if (_weigher != null) {
+            final int weight = weigh(element._key, value);
+            if (weight > _maxWeight) {
+                removeElement(element);
+                notifyRemoval(element, RemovalCause.REPLACED);
+                return;
+            }
+            _totalWeight += weight - element.weight();
+            ((WeightedElement<T, U>) element)._weight = weight;
+        }
+        if (_removalListener != null) {
+            _removalListener.onRemoval(element._key, element._value, RemovalCause.REPLACED);
+        }
+        element._value = value;
+        element._writtenAt = _now;
+        if (_timers != null) {
+            setExpiration(element, _expiry.expireAfterUpdate(element._key, value, _now, timeToLive(element)));
+        }
+    }
+
+    /**
+     * Evicts least recently used pairs until the total weight is back within the maximum
+     */
+    private void evictExcess () {
+    	while (_totalWeight > _maxWeight) {
+            final Element<T, U> evicted = _head;
+            removeElement(evicted);
+            _stats.recordEviction();
+            notifyRemoval(evicted, RemovalCause.EVICTED);
+            evicted._key = null;
+            evicted._value = null;
+            _spare = evicted;
+    	}
+    }
+
+    /**
+     * Removes a pair from the map, the linked list and the timing wheel
+     * @param element the element of a stored pair
+     */
+    private void removeElement (Element<T, U> element) {
+    	removeFromTable(element);
+    	unlinkAndCancel(element);
+    	_totalWeight -= element.weight();
+    }
+
+    /**
+     * Removes a pair at the caller's request. A pair that had already expired is counted and
+     * reported as expired, like every other removal of an expired pair
+     * @param element the element of a stored pair
+     */
+    private void removeRequested (Element<T, U> element) {
+    	final boolean expired = isExpired(element);
+    	removeElement(element);
+    	if (expired) {
+    		_stats.recordEviction();
+    		notifyRemoval(element, RemovalCause.EXPIRED);
+    	}
     	else {
+    		notifyRemoval(element, RemovalCause.EXPLICIT);
+    	}
+    }
 
-    		//Remove the element from the linked list, set neighbor elements to point to each other
-    		_cache.get(currentElement._lastKey)._nextKey = currentElement._nextKey;
-    		_cache.get(currentElement._nextKey)._lastKey = currentElement._lastKey;
-    		
-    		//Move the element to the end of the linked list
-    		_cache.get(_tail)._nextKey = key;
-    		
-    		//Update the element's references
-    		currentElement._nextKey = null;
-    		currentElement._lastKey = _tail;
-    		
-    		//Update the tail pointer
-    		_tail = key;
-    		return;
+    /**
+     * Tells the removal listener, if any, that a pair has left the cache
+     * @param element the element of the removed pair
+     * @param cause why it was removed
+     */
+    private void notifyRemoval (Element<T, U> element, RemovalCause cause) {
+    	if (_removalListener != null) {
+    		_removalListener.onRemoval(element._key, element._value, cause);
     	}
-        
     }
 
     /**
-     * Adds a key value pair to the cache in event of a miss
+     * Creates the element for a new pair, weighing it if the cache has a weigher. The spare
+     * element left by the last eviction is reused if there is one.
      * @param key is the key attribute of the pair
      * @param value is the value attribute of the pair
-     * @return true if the operation was successful, false
-     * otherwise
+     * @return the element, or null if the pair is heavier than the whole cache
      */
-    private void addElement (T key, U value) {
-    	final Element<T, U> entry = new Element<T, U>(value, null, _tail);
-        
-        _cache.put(key, entry);
-
-        //Cache is empty
-    	if (_head == null) {
-    		_head = key;
-    		_tail = key;
-    	}
-        //Cache is full
-    	else if (_cache.size() - 1 == _maxCapacity) {
-            final T tempKey = _head;
-            _head = _cache.get(_head)._nextKey;
-            _cache.get(_head)._lastKey = null;
-            _cache.remove(tempKey);
-            
-            _cache.get(_tail)._nextKey = key;
-            _tail = key;
-    	}
-        else {
-            _cache.get(_tail)._nextKey = key;
-            _tail = key;
-        }
+    private Element<T, U> newElement (T key, U value) {
+    	final int weight = _weigher == null ? 1 : weigh(key, value);
+    	if (_weigher != null && weight > _maxWeight) {
+    		return null;
+    	}
+    	final Element<T, U> element = _spare;
+    	if (element == null) {
+    		return _weigher == null ? new Element<T, U>(key, value) : new WeightedElement<T, U>(key, value, weight);
+    	}
+    	_spare = null;
+    	element._key = key;
+    	element._value = value;
+    	if (_weigher != null) {
+    		((WeightedElement<T, U>) element)._weight = weight;
+    	}
+    	return element;
+    }
+
+    /**
+     * Finds the element stored for a key, expired or not
+     * @param key the key
+     * @return the element, or null if the key is not stored
+     */
+    private Element<T, U> find (Object key) {
+    	final int hash = spread(key);
+    	for (Element<T, U> element = _table[hash & (_table.length - 1)]; element != null; element = element._chain) {
+    		if (element._hash == hash && (element._key == key || (key != null && key.equals(element._key)))) {
+    			return element;
+    		}
+    	}
+    	return null;
+    }
+
+    /**
+     * Adds an element to the hash table, doubling the table if it has become too full
+     * @param element an element whose key is not stored
+     */
+    private void addToTable (Element<T, U> element) {
+    	if (++_size > _table.length * MAX_LOAD_FACTOR) {
+    		resize();
+    	}
+    	element._hash = spread(element._key);
+    	final int bucket = element._hash & (_table.length - 1);
+    	element._chain = _table[bucket];
+    	_table[bucket] = element;
+    }
+
+    /**
+     * Removes an element from its hash bucket
+     * @param element an element currently in the table
+     */
+    private void removeFromTable (Element<T, U> element) {
+    	final int bucket = element._hash & (_table.length - 1);
+    	if (_table[bucket] == element) {
+    		_table[bucket] = element._chain;
+    	}
+    	else {
+    		Element<T, U> previous = _table[bucket];
+    		while (previous._chain != element) {
+    			previous = previous._chain;
+    		}
+    		previous._chain = element._chain;
+    	}
+    	element._chain = null;
+    	_size--;
+    }
+
+    /**
+     * Moves every element into a table with twice as many buckets
+     */
+    private void resize () {
+    	final Element<T, U>[] old = _table;
+    	_table = newTable(old.length * 2);
+    	final int mask = _table.length - 1;
+    	for (Element<T, U> head : old) {
+    		while (head != null) {
+    			final Element<T, U> next = head._chain;
+    			head._chain = _table[head._hash & mask];
+    			_table[head._hash & mask] = head;
+    			head = next;
+    		}
+    	}
+    }
+
+    /**
+     * Creates an empty hash table
+     * @param buckets the number of buckets, a power of two
+     * @return the table
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T, U> Element<T, U>[] newTable (int buckets) {
+    	return (Element<T, U>[]) new Element[buckets];
+    }
+
+    /**
+     * Picks the segment of a key for a cache split into <tt>LRUCache</tt> segments. Each segment's
+     * table picks buckets with the low bits of the spread hash, so the segment is taken from the
+     * high bits of a multiplicative hash instead; were both taken from the same bits, every key of
+     * a segment would share them and only a fraction of its buckets would ever be used
+     * @param key the key, which may be null
+     * @param segmentMask the number of segments, a power of two, less one
+     * @return the index of the key's segment
+     */
+    static int segmentOf (Object key, int segmentMask) {
+    	return (spread(key) * 0x9E3779B9 >>> Integer.numberOfLeadingZeros(segmentMask)) & segmentMask;
+    }
+
+    /**
+     * Returns the number of hash buckets holding at least one pair, to check how evenly the
+     * keys spread over the table
+     * @return the number of used buckets
+     */
+    int usedBuckets () {
+    	int used = 0;
+    	for (final Element<T, U> head : _table) {
+    		if (head != null) {
+    			used++;
+    		}
+    	}
+    	return used;
+    }
+
+    /**
+     * Spreads the higher bits of a key's hash code into the lower ones, which pick the bucket
+     * @param key the key, which may be null
+     * @return the spread hash
+     */
+    private static int spread (Object key) {
+    	final int hash = key == null ? 0 : key.hashCode();
+    	return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Weighs a pair, checking the weigher's answer
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     * @return the weight of the pair
+     */
+    private int weigh (T key, U value) {
+    	final int weight = _weigher.weigh(key, value);
+    	if (weight < 0) {
+    		throw new IllegalArgumentException("negative weight " + weight + " for key " + key);
+    	}
+    	return weight;
+    }
+
+    /**
+     * Removes an element from the linked list and cancels its expiration timer
+     * @param element an element currently in the list
+     */
+    private void unlinkAndCancel (Element<T, U> element) {
+    	unlink(element);
+    	if (element._timer != null) {
+    		_timers.deschedule(element._timer);
+    	}
     }
 
+    /**
+     * Brings the cache up to the current time at the start of an operation: removes expired pairs
+     * and applies finished background reloads
+     */
+    private void maintain () {
+    	if (_timers == null && _refresher == null) {
+    		return;
+    	}
+    	_now = _ticker.getAsLong();
+    	if (_timers != null) {
+    		expireEntries();
+    	}
+    	if (_refresher != null) {
+    		applyRefreshes();
+    	}
+    }
+
+    /**
+     * Advances the timing wheel to the current time, removing every pair it finds expired
+     */
+    private void expireEntries () {
+    	_timers.advance(_now, expired -> {
+    		removeElement(expired);
+    		_stats.recordEviction();
+    		notifyRemoval(expired, RemovalCause.EXPIRED);
+    	});
+    }
+
+    /**
+     * Starts a background reload of a pair that was just read, if it is older than the refresh
+     * age and not already being reloaded
+     * @param element the element that was read
+     */
+    private void refreshIfStale (Element<T, U> element) {
+    	final T key = element._key;
+    	if (_now - element._writtenAt < _refreshAfter || _refreshing.containsKey(key)) {
+    		return;
+    	}
+    	final U oldValue = element._value;
+    	_refreshing.put(key, oldValue);
+    	try {
+    		_refresher.execute(() -> {
+    			U newValue = null;
+    			boolean succeeded = false;
+    			try {
+    				newValue = _stats.refresh(_provider, key);
+    				succeeded = true;
+    			} catch (RuntimeException e) {
+    				//already counted as a failed refresh; the old value is kept
+    			} finally {
+    				_refreshed.add(new Refresh<T, U>(key, oldValue, newValue, succeeded));
+    			}
+    		});
+    	} catch (RejectedExecutionException e) {
+    		//the old value is still served, and the next stale read tries again
+    		_refreshing.remove(key);
+    	}
+    }
+
+    /**
+     * Stores the values of finished background reloads. A reloaded value is dropped if its pair
+     * has since been removed, expired or given another value.
+     */
+    private void applyRefreshes () {
+    	Refresh<T, U> refresh;
+    	while ((refresh = _refreshed.poll()) != null) {
+    		_refreshing.remove(refresh._key);
+    		final Element<T, U> element = find(refresh._key);
+    		if (refresh._succeeded && element != null && element._value == refresh._oldValue && !isExpired(element)) {
+    			replaceValue(element, refresh._newValue);
+    		}
+    	}
+    	evictExcess();
+    }
+
+    /**
+     * Returns whether a pair has expired but not yet been cleaned up by the timing wheel
+     * @param element the element of a stored pair
+     * @return true if the pair must no longer be returned
+     */
+    private boolean isExpired (Element<T, U> element) {
+    	return element._timer != null && element._timer.isScheduled() && element._timer._expiresAt - _now <= 0;
+    }
+
+    /**
+     * Lets the expiry extend or shorten a pair's life after it was read
+     * @param element the element that was read
+     */
+    private void afterRead (Element<T, U> element) {
+    	final long current = timeToLive(element);
+    	final long updated = _expiry.expireAfterRead(element._key, element._value, _now, current);
+    	if (updated != current) {
+    		setExpiration(element, updated);
+    	}
+    }
+
+    /**
+     * Returns how long a pair has left to live
+     * @param element the element of a stored pair
+     * @return the remaining time in nanoseconds, or <tt>Long.MAX_VALUE</tt> if it never expires
+     */
+    private long timeToLive (Element<T, U> element) {
+    	return element._timer.isScheduled() ? element._timer._expiresAt - _now : Long.MAX_VALUE;
+    }
+
+    /**
+     * Reschedules a pair's expiration timer
+     * @param element the element of a stored pair
+     * @param duration the time the pair has left to live, or <tt>Long.MAX_VALUE</tt> for ever
+     */
+    private void setExpiration (Element<T, U> element, long duration) {
+    	if (duration == Long.MAX_VALUE) {
+    		_timers.deschedule(element._timer);
+    		return;
+    	}
+    	element._timer._expiresAt = _now + duration;
+    	_timers.schedule(element._timer);
+    }
+
+    /**
+     * Removes an element from the linked list, pointing its neighbors at each other
+     * @param element an element currently in the list
+     */
+    private void unlink (Element<T, U> element) {
+    	if (element._last == null) {
+    		_head = element._next;
+    	}
+    	else {
+    		element._last._next = element._next;
+    	}
+    	if (element._next == null) {
+    		_tail = element._last;
+    	}
+    	else {
+    		element._next._last = element._last;
+    	}
+    	element._last = null;
+    	element._next = null;
+    }
+
+    /**
+     * Appends an element to the most recently used end of the linked list
+     * @param element an element not currently in the list
+     */
+    private void linkLast (Element<T, U> element) {
+    	element._last = _tail;
+    	if (_tail == null) {
+    		_head = element;
+    	}
+    	else {
+    		_tail._next = element;
+    	}
+    	_tail = element;
+    }
+
+	/**
+	 * Returns the number of (key,value) pairs currently stored in the cache.
+	 * @return the number of stored pairs
+	 */
+	public int size () {
+		return _size;
+	}
+
+	/**
+	 * Returns the total weight of the stored pairs.
+	 * @return the current weight; without a weigher, the number of stored pairs
+	 */
+	public long weight () {
+		return _totalWeight;
+	}
+
+	/**
+	 * Returns the live statistics of the cache.
+	 * @return the statistics, updated as the cache is used
+	 */
+	public CacheStats getStats () {
+		return _stats;
+	}
+
 	/**
 	 * Returns the number of cache misses since the object's instantiation.
 	 * @return the number of cache misses since the object's instantiation.
 	 */
 	public int getNumMisses () {
-		return _missCounter;
+		return _stats.getNumMisses();
 	}
 }
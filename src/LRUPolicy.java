@@ -0,0 +1,65 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.HashMap;
+
+/**
+ * An <tt>EvictionPolicy</tt> that evicts the least recently used key once the capacity is exceeded.
+ */
+public class LRUPolicy<T> implements EvictionPolicy<T> {
+    //the only queue of this policy
+    private static final int QUEUE = 0;
+
+    //the node of every key the cache holds
+    private final HashMap<T, AccessOrderDeque.Node<T>> _nodes = new HashMap<T, AccessOrderDeque.Node<T>>();
+    //the keys, from least to most recently used
+    private final AccessOrderDeque<T> _deque = new AccessOrderDeque<T>();
+    //maximum number of keys
+    private final int _maxCapacity;
+
+    /**
+     * @param capacity the exact number of keys to keep
+     */
+    public LRUPolicy (int capacity) {
+        _maxCapacity = capacity;
+    }
+
+    /**
+     * Records a hit on a key the cache holds.
+     * @param key the key that was read
+     */
+    public void recordAccess (T key) {
+        _deque.moveToBack(_nodes.get(key));
+    }
+
+    /**
+     * Records a newly loaded key and evicts the least recently used key if the cache is full.
+     * @param key the newly loaded key
+     * @return the key to evict, or null if there is still room
+     */
+    public T recordInsertion (T key) {
+        final AccessOrderDeque.Node<T> node = new AccessOrderDeque.Node<T>(key, QUEUE);
+        _nodes.put(key, node);
+        _deque.addLast(node);
+        if (_deque.size() <= _maxCapacity) {
+            return null;
+        }
+        final AccessOrderDeque.Node<T> eldest = _deque.peekFirst();
+        _deque.remove(eldest);
+        _nodes.remove(eldest._key);
+        return eldest._key;
+    }
+
+    /**
+     * Forgets a key the cache has removed for a reason of its own.
+     * @param key the removed key
+     */
+    public void recordRemoval (T key) {
+        final AccessOrderDeque.Node<T> node = _nodes.remove(key);
+        if (node != null) {
+            _deque.remove(node);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in power-of-two nanosecond buckets. Bucket <tt>b</tt> counts durations
+ * in <tt>[2^b, 2^(b+1))</tt>, so any percentile is known to within a factor of two. Recording is a
+ * single striped add and is safe from any number of threads.
+ */
+class LatencyHistogram {
+    //one bucket per bit of a long
+    private static final int BUCKETS = Long.SIZE;
+
+    //the number of durations recorded in each bucket
+    private final LongAdder[] _buckets = new LongAdder[BUCKETS];
+
+    LatencyHistogram () {
+        for (int i = 0; i < BUCKETS; i++) {
+            _buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds; negative durations count as zero
+     */
+    void record (long nanos) {
+        _buckets[bucketOf(Math.max(0, nanos))].increment();
+    }
+
+    /**
+     * Returns the number of durations recorded in each bucket.
+     * @return the counts, indexed by bucket
+     */
+    long[] getCounts () {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = _buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded durations.
+     * @param percentile a fraction between 0 and 1, e.g. 0.99
+     * @return the exclusive upper end of the bucket holding the percentile, or 0 if nothing was
+     * recorded
+     */
+    long getPercentile (double percentile) {
+        final long[] counts = getCounts();
+        long total = 0;
+        for (final long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the bucket of a duration.
+     */
+    private static int bucketOf (long nanos) {
+        return BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1);
+    }
+}
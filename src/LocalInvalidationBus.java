@@ -0,0 +1,59 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * An <tt>InvalidationBus</tt> within one process. Publishing takes no lock: each subscriber is
+ * handed the keys through an <tt>Executor</tt>, by default on the publishing thread, and only
+ * locks its own cache while invalidating.
+ */
+public class LocalInvalidationBus<T> implements InvalidationBus<T> {
+    //the registered subscribers
+    private final List<Consumer<Collection<? extends T>>> _subscribers =
+        new CopyOnWriteArrayList<Consumer<Collection<? extends T>>>();
+    //delivers each publication to each subscriber
+    private final Executor _executor;
+
+    /**
+     * Creates a bus that delivers on the publishing thread.
+     */
+    public LocalInvalidationBus () {
+        this(Runnable::run);
+    }
+
+    /**
+     * @param executor delivers each publication to each subscriber, e.g. to do it in the background
+     */
+    public LocalInvalidationBus (Executor executor) {
+        _executor = executor;
+    }
+
+    /**
+     * Tells every subscriber that the data behind some keys has changed.
+     * @param keys the changed keys, copied before delivery
+     */
+    public void publish (Collection<? extends T> keys) {
+        final List<T> published = new ArrayList<T>(keys);
+        for (final Consumer<Collection<? extends T>> subscriber : _subscribers) {
+            _executor.execute(() -> subscriber.accept(published));
+        }
+    }
+
+    /**
+     * Registers a subscriber to be given the keys of every later publication.
+     * @param subscriber called with the published keys
+     * @return the registration, to cancel it
+     */
+    public Subscription subscribe (Consumer<Collection<? extends T>> subscriber) {
+        _subscribers.add(subscriber);
+        return () -> _subscribers.remove(subscriber);
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * A data provider that associates primitive <tt>long</tt> keys with values.
+ */
+interface LongDataProvider<U> {
+	/**
+	 * Returns the value associated with the specified key.
+	 * @param key the key
+	 * @return the value associated with the key
+	 */
+	U get (long key);
+}
@@ -0,0 +1,236 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * A least-recently-used (LRU) cache specialized for primitive <tt>long</tt> keys. Entries live in
+ * parallel arrays indexed by slot, found through an open-addressing hash table of slot numbers, and
+ * linked into the recency list by slot number. Keys are never boxed, a hit allocates nothing, and a
+ * miss on a full cache reuses the evicted entry's slot.
+ */
+public class LongObjectLRUCache<U> {
+    //the hash table is kept at most this full so probe sequences stay short
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    //marks the absence of a slot in the recency list and in lookups
+    private static final int NIL = -1;
+    //the 64-bit golden ratio, used to spread keys across the hash table
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    //the data provider to consult for a cache miss
+    private final LongDataProvider<U> _provider;
+    //maximum capacity of the cache
+    private final int _maxCapacity;
+
+    //the key, value and recency neighbors of the entry in each slot
+    private final long[] _keys;
+    private final Object[] _values;
+    private final int[] _next;    //the next (more recently used) slot
+    private final int[] _last;    //the previous (less recently used) slot
+
+    //open-addressing table of slot numbers plus one; zero marks an empty bucket
+    private final int[] _table;
+    //mask that maps a hash onto a bucket; the table length is a power of two
+    private final int _mask;
+
+    //the least and most recently used slots
+    private int _head = NIL;
+    private int _tail = NIL;
+    //the number of slots in use
+    private int _size = 0;
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacity the exact number of (key,value) pairs to store in the cache
+     */
+    public LongObjectLRUCache (LongDataProvider<U> provider, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _provider = provider;
+        _maxCapacity = capacity;
+        _keys = new long[capacity];
+        _values = new Object[capacity];
+        _next = new int[capacity];
+        _last = new int[capacity];
+
+        final int buckets = Integer.highestOneBit((int) Math.ceil(capacity / MAX_LOAD_FACTOR) - 1) << 1;
+        _table = new int[Math.max(2, buckets)];
+        _mask = _table.length - 1;
+    }
+
+    /**
+     * Returns the value associated with the specified key.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    @SuppressWarnings("unchecked")
+    public U get (long key) {
+        final int slot = find(key);
+        if (slot != NIL) {
+            _stats.recordHit();
+            if (slot != _tail) {
+                unlink(slot);
+                linkLast(slot);
+            }
+            return (U) _values[slot];
+        }
+
+        _stats.recordMiss();
+        final long start = System.nanoTime();
+        boolean loaded = false;
+        final U value;
+        try {
+            value = _provider.get(key);
+            loaded = true;
+        } finally {
+            _stats.recordLoad(System.nanoTime() - start, loaded);
+        }
+        addElement(key, value);
+        return value;
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored in the cache.
+     * @return the number of stored pairs
+     */
+    int size () {
+        return _size;
+    }
+
+    /**
+     * Stores a pair after a miss, taking a free slot or else the least recently used one.
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     */
+    private void addElement (long key, U value) {
+        final int slot;
+        if (_size < _maxCapacity) {
+            slot = _size++;
+        }
+        else {
+            slot = _head;
+            unlink(slot);
+            removeFromTable(_keys[slot]);
+            _stats.recordEviction();
+        }
+        _keys[slot] = key;
+        _values[slot] = value;
+        linkLast(slot);
+
+        int bucket = bucketFor(key);
+        while (_table[bucket] != 0) {
+            bucket = (bucket + 1) & _mask;
+        }
+        _table[bucket] = slot + 1;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     * @param key the key
+     * @return the slot, or <tt>NIL</tt> if the key is not stored
+     */
+    private int find (long key) {
+        int bucket = bucketFor(key);
+        int entry;
+        while ((entry = _table[bucket]) != 0) {
+            if (_keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            bucket = (bucket + 1) & _mask;
+        }
+        return NIL;
+    }
+
+    /**
+     * Removes a stored key from the hash table, shifting later entries of its probe sequence back
+     * so that no tombstones are needed.
+     * @param key a key currently stored
+     */
+    private void removeFromTable (long key) {
+        int hole = bucketFor(key);
+        while (_keys[_table[hole] - 1] != key) {
+            hole = (hole + 1) & _mask;
+        }
+        int bucket = hole;
+        while (true) {
+            bucket = (bucket + 1) & _mask;
+            final int entry = _table[bucket];
+            if (entry == 0) {
+                break;
+            }
+            //an entry may fill the hole only if its home bucket is not between the hole and itself
+            final int home = bucketFor(_keys[entry - 1]);
+            if (((bucket - home) & _mask) >= ((bucket - hole) & _mask)) {
+                _table[hole] = entry;
+                hole = bucket;
+            }
+        }
+        _table[hole] = 0;
+    }
+
+    /**
+     * Maps a key onto its home bucket.
+     * @param key the key
+     * @return the bucket where probing for the key starts
+     */
+    private int bucketFor (long key) {
+        final long hash = key * GOLDEN_GAMMA;
+        return (int) (hash ^ (hash >>> 32)) & _mask;
+    }
+
+    /**
+     * Removes a slot from the recency list, pointing its neighbors at each other
+     * @param slot a slot currently in the list
+     */
+    private void unlink (int slot) {
+        final int last = _last[slot];
+        final int next = _next[slot];
+        if (last == NIL) {
+            _head = next;
+        }
+        else {
+            _next[last] = next;
+        }
+        if (next == NIL) {
+            _tail = last;
+        }
+        else {
+            _last[next] = last;
+        }
+    }
+
+    /**
+     * Appends a slot to the most recently used end of the recency list
+     * @param slot a slot not currently in the list
+     */
+    private void linkLast (int slot) {
+        _last[slot] = _tail;
+        _next[slot] = NIL;
+        if (_tail == NIL) {
+            _head = slot;
+        }
+        else {
+            _next[_tail] = slot;
+        }
+        _tail = slot;
+    }
+}
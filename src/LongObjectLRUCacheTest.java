@@ -0,0 +1,96 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Random;
+
+/**
+ * Code to test a <tt>LongObjectLRUCache</tt> implementation.
+ */
+public class LongObjectLRUCacheTest {
+    /**
+     * Implements a data provider that returns the string of the key passed
+     */
+    public static class EchoDataProvider implements LongDataProvider<String> {
+        public int _timesReferenced = 0;
+        public boolean _referenced = false;
+
+        /**
+         * Returns a value for a given key
+         * @param key any long
+         * @return the key converted to a string
+         */
+        public String get (long key) {
+            _timesReferenced++;
+            _referenced = true;
+            return Long.toString(key);
+        }
+    }
+
+    /**
+     * Tests that the least recently used pair is the one evicted
+     */
+    @Test
+    public void leastRecentlyUsedIsCorrect () {
+        EchoDataProvider provider = new EchoDataProvider();
+        LongObjectLRUCache<String> cache = new LongObjectLRUCache<String>(provider, 3);
+        cache.get(0);
+        cache.get(1);
+        cache.get(2);
+        //0 becomes the most recently used, so 1 is evicted
+        cache.get(0);
+        cache.get(3);
+
+        provider._referenced = false;
+        assertEquals("0", cache.get(0));
+        assertEquals("2", cache.get(2));
+        assertEquals("3", cache.get(3));
+        assertFalse(provider._referenced);
+
+        assertEquals("1", cache.get(1));
+        assertTrue(provider._referenced);
+        assertEquals(3, cache.size());
+        assertEquals(5, cache.getNumMisses());
+    }
+
+    /**
+     * Tests keys that collide in the hash table, including negative and extreme values
+     */
+    @Test
+    public void testCollidingAndExtremeKeys () {
+        EchoDataProvider provider = new EchoDataProvider();
+        LongObjectLRUCache<String> cache = new LongObjectLRUCache<String>(provider, 4);
+        long[] keys = {Long.MIN_VALUE, -1, 0, Long.MAX_VALUE};
+        for (long key : keys) {
+            assertEquals(Long.toString(key), cache.get(key));
+        }
+        provider._referenced = false;
+        for (long key : keys) {
+            assertEquals(Long.toString(key), cache.get(key));
+        }
+        assertFalse(provider._referenced);
+    }
+
+    /**
+     * Test random gets against an <tt>LRUCache</tt> over the same keys; every get must hit or
+     * miss in both caches alike
+     */
+    @Test
+    public void testMatchesLRUCache () {
+        EchoDataProvider provider = new EchoDataProvider();
+        LongObjectLRUCache<String> cache = new LongObjectLRUCache<String>(provider, 100);
+        Cache<Long, String> reference = new LRUCache<Long, String>(key -> Long.toString(key), 100);
+        Random rand = new Random(0);
+
+        for (int i = 0; i < 100000; i++) {
+            long key = rand.nextInt(300) * 1000003L;
+            assertEquals(reference.get(key), cache.get(key));
+            assertEquals(reference.getNumMisses(), provider._timesReferenced);
+        }
+        assertEquals(reference.getNumMisses(), cache.getNumMisses());
+        assertEquals(100, cache.size());
+    }
+}
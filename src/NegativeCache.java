@@ -0,0 +1,195 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A <tt>Cache</tt> that remembers which keys the data provider could not resolve. A provider
+ * answer of null means "not found", and such keys are kept apart from the real pairs, in a smaller
+ * <tt>LRUCache</tt> of their own whose entries expire after a fixed time. A flood of requests for
+ * distinct nonexistent keys therefore churns only the negative area and never evicts a real pair,
+ * and a repeated request for a missing key is answered without the provider until its entry
+ * expires and the key is looked up again.
+ * <p>
+ * An optional <tt>BloomFilter</tt> of the keys that exist can be put in front. A key the filter
+ * has certainly never seen is answered with null at once, without reaching the provider or taking
+ * space in either area. Keys stored with <tt>put</tt> are added to the filter, but keys that come
+ * into existence elsewhere must be added to it by the application.
+ * <p>
+ * Answers from either area and from the filter count as hits; only calls to the data provider
+ * count as misses. The cache is not thread-safe.
+ */
+public class NegativeCache<T, U> implements Cache<T, U> {
+    //the data provider consulted when a key is in neither area
+    private final DataProvider<T, U> _provider;
+    //the pairs the provider resolved
+    private final LRUCache<T, U> _positive;
+    //the keys the provider could not resolve, each expiring a fixed time after it was stored
+    private final LRUCache<T, Boolean> _negative;
+    //the keys that exist, or null to consult the provider about every unknown key
+    private final BloomFilter<T> _filter;
+    //counts hits and misses across both areas and the filter
+    private final CacheStats _stats = new CacheStats();
+    //number of hits answered by the negative area
+    private long _negativeHits = 0;
+    //number of hits answered by the filter
+    private long _filteredHits = 0;
+
+    /**
+     * @param provider the data provider to consult; it returns null for a key that does not exist
+     * @param capacity the number of resolved (key,value) pairs to store
+     * @param negativeCapacity the number of unresolved keys to remember
+     * @param negativeTimeToLive how long an unresolved key is remembered before it is looked up again
+     */
+    public NegativeCache (DataProvider<T, U> provider, int capacity, int negativeCapacity, Duration negativeTimeToLive) {
+        this(provider, capacity, negativeCapacity, negativeTimeToLive, null, System::nanoTime);
+    }
+
+    /**
+     * @param provider the data provider to consult; it returns null for a key that does not exist
+     * @param capacity the number of resolved (key,value) pairs to store
+     * @param negativeCapacity the number of unresolved keys to remember
+     * @param negativeTimeToLive how long an unresolved key is remembered before it is looked up again
+     * @param filter the keys that exist; keys it has never seen are answered with null at once
+     */
+    public NegativeCache (DataProvider<T, U> provider, int capacity, int negativeCapacity, Duration negativeTimeToLive,
+                          BloomFilter<T> filter) {
+        this(provider, capacity, negativeCapacity, negativeTimeToLive, filter, System::nanoTime);
+    }
+
+    /**
+     * @param provider the data provider to consult; it returns null for a key that does not exist
+     * @param capacity the number of resolved (key,value) pairs to store
+     * @param negativeCapacity the number of unresolved keys to remember
+     * @param negativeTimeToLive how long an unresolved key is remembered before it is looked up again
+     * @param filter the keys that exist, or null for no filter
+     * @param ticker the time source for the negative area, in nanoseconds
+     */
+    NegativeCache (DataProvider<T, U> provider, int capacity, int negativeCapacity, Duration negativeTimeToLive,
+                   BloomFilter<T> filter, LongSupplier ticker) {
+        if (capacity < 1 || negativeCapacity < 1) {
+            throw new IllegalArgumentException("capacities must be positive");
+        }
+        if (negativeTimeToLive.isNegative() || negativeTimeToLive.isZero()) {
+            throw new IllegalArgumentException("negative time-to-live must be positive");
+        }
+        _provider = provider;
+        _positive = new LRUCache<T, U>(provider, capacity, new CacheStats());
+        _negative = new LRUCache<T, Boolean>(key -> Boolean.TRUE, negativeCapacity, new CacheStats(),
+                                             Expiry.afterWrite(negativeTimeToLive), ticker);
+        _filter = filter;
+    }
+
+    /**
+     * Returns the value associated with the specified key, or null if the key does not exist.
+     * @param key the key
+     * @return the value associated with the key, or null if the provider cannot resolve it
+     */
+    public U get (T key) {
+        final LRUCache.Element<T, U> hit = _positive.lookup(key);
+        if (hit != null) {
+            _stats.recordHit();
+            return hit._value;
+        }
+        if (_filter != null && !_filter.mightContain(key)) {
+            _stats.recordHit();
+            _filteredHits++;
+            return null;
+        }
+        if (_negative.lookup(key) != null) {
+            _stats.recordHit();
+            _negativeHits++;
+            return null;
+        }
+
+        final U value = _stats.load(_provider, key);
+        if (value == null) {
+            _negative.put(key, Boolean.TRUE);
+        }
+        else {
+            _positive.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value that was loaded or changed outside the cache. A null value records the key as
+     * not found; any other value makes the key exist, adding it to the filter.
+     * @param key the key
+     * @param value the value to associate with the key, or null if the key no longer exists
+     */
+    public void put (T key, U value) {
+        if (value == null) {
+            _positive.invalidate(key);
+            _negative.put(key, Boolean.TRUE);
+            return;
+        }
+        _negative.invalidate(key);
+        _positive.put(key, value);
+        if (_filter != null) {
+            _filter.put(key);
+        }
+    }
+
+    /**
+     * Forgets a key in both areas, so that the next <tt>get</tt> asks the provider again unless
+     * the filter rules the key out.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        _positive.invalidate(key);
+        _negative.invalidate(key);
+    }
+
+    /**
+     * Returns the number of hits answered by the negative area.
+     * @return the negative hit count
+     */
+    public long getNegativeHitCount () {
+        return _negativeHits;
+    }
+
+    /**
+     * Returns the number of hits answered by the filter, without looking in either area.
+     * @return the filtered hit count
+     */
+    public long getFilteredHitCount () {
+        return _filteredHits;
+    }
+
+    /**
+     * Returns the number of unresolved keys remembered, including any that have expired but not
+     * yet been cleaned up.
+     * @return the size of the negative area
+     */
+    public int negativeSize () {
+        return _negative.size();
+    }
+
+    /**
+     * Returns the number of resolved (key,value) pairs stored.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _positive.size();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.time.Duration;
+
+/**
+ * Code to test <tt>NegativeCache</tt> and <tt>BloomFilter</tt>.
+ */
+public class NegativeCacheTest {
+    //one second in nanoseconds
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * Tests that a key the provider cannot resolve is answered from the negative area until its
+     * time-to-live has passed
+     */
+    @Test
+    public void testNotFoundIsCachedUntilItExpires () {
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        NegativeCache<Integer, String> cache = new NegativeCache<Integer, String>(provider, 5, 10,
+            Duration.ofSeconds(30), null, ticker::read);
+
+        assertNull(cache.get(99));
+        ticker._nanos = 29 * SECOND;
+        assertNull(cache.get(99));
+        assertEquals(1, provider._timesReferenced);
+        assertEquals(1, cache.getNegativeHitCount());
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.negativeSize());
+
+        ticker._nanos = 30 * SECOND;
+        assertNull(cache.get(99));
+        assertEquals(2, provider._timesReferenced);
+        assertEquals(2, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that a flood of distinct nonexistent keys neither evicts resolved pairs nor grows the
+     * negative area past its capacity
+     */
+    @Test
+    public void testFloodDoesNotEvictResolvedPairs () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        NegativeCache<Integer, String> cache = new NegativeCache<Integer, String>(provider, 5, 100,
+                                                                                  Duration.ofMinutes(1));
+        for (int key = 0; key < 5; key++) {
+            cache.get(key);
+        }
+        for (int key = 1000; key < 11000; key++) {
+            assertNull(cache.get(key));
+            assertTrue(cache.negativeSize() <= 100);
+        }
+        provider._referenced = false;
+        for (int key = 0; key < 5; key++) {
+            assertEquals("Value for key " + key + ".", cache.get(key));
+        }
+        assertFalse(provider._referenced);
+        assertEquals(5, cache.size());
+    }
+
+    /**
+     * Tests that keys the filter has never seen are answered without the provider, and that put
+     * adds a key to the filter
+     */
+    @Test
+    public void testFilterAnswersUnknownKeys () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        BloomFilter<Integer> filter = new BloomFilter<Integer>(1000, 0.001);
+        for (int key = 0; key < 5; key++) {
+            filter.put(key);
+        }
+        NegativeCache<Integer, String> cache = new NegativeCache<Integer, String>(provider, 5, 10,
+                                                                                  Duration.ofMinutes(1), filter);
+        assertNull(cache.get(12345));
+        assertEquals(0, provider._timesReferenced);
+        assertEquals(1, cache.getFilteredHitCount());
+        assertEquals(0, cache.negativeSize());
+        assertEquals("Value for key 3.", cache.get(3));
+        assertEquals(1, provider._timesReferenced);
+
+        cache.put(77, "seventy-seven");
+        assertEquals("seventy-seven", cache.get(77));
+        assertTrue(filter.mightContain(77));
+        //once invalidated, the filter lets the key through to the provider, which cannot resolve it
+        cache.invalidate(77);
+        assertNull(cache.get(77));
+        assertEquals(2, provider._timesReferenced);
+        assertEquals(1, cache.negativeSize());
+    }
+
+    /**
+     * Tests that putting null records a key as not found and drops its resolved pair
+     */
+    @Test
+    public void testPutNullMarksNotFound () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        NegativeCache<Integer, String> cache = new NegativeCache<Integer, String>(provider, 5, 10,
+                                                                                  Duration.ofMinutes(1));
+        assertEquals("Value for key 2.", cache.get(2));
+        cache.put(2, null);
+        assertNull(cache.get(2));
+        assertEquals(1, provider._timesReferenced);
+        assertEquals(0, cache.size());
+        cache.put(2, "back");
+        assertEquals("back", cache.get(2));
+        assertEquals(0, cache.negativeSize());
+    }
+
+    /**
+     * Tests that a null key passes through the filter like any other key
+     */
+    @Test
+    public void testNullKeyWithFilter () {
+        BloomFilter<Integer> filter = new BloomFilter<Integer>(1000, 0.001);
+        NegativeCache<Integer, String> cache = new NegativeCache<Integer, String>(key -> key == null ? "none" : null,
+            5, 10, Duration.ofSeconds(10), filter);
+        assertNull(cache.get(null));
+        assertEquals(0, cache.getNumMisses());
+        filter.put(null);
+        assertEquals("none", cache.get(null));
+        assertEquals("none", cache.get(null));
+        assertEquals(1, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that the filter never forgets an added key and that its false-positive rate is close
+     * to the one it was sized for
+     */
+    @Test
+    public void testBloomFilterRates () {
+        BloomFilter<Integer> filter = new BloomFilter<Integer>(10000, 0.01);
+        for (int key = 0; key < 10000; key++) {
+            filter.put(key * 7);
+        }
+        for (int key = 0; key < 10000; key++) {
+            assertTrue(filter.mightContain(key * 7));
+        }
+        int falsePositives = 0;
+        for (int key = 0; key < 100000; key++) {
+            if (filter.mightContain(-1 - key)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+        assertEquals(7, filter.hashCount());
+    }
+}
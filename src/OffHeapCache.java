@@ -0,0 +1,348 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * A least-recently-used (LRU) cache of <tt>byte[]</tt> values whose contents live outside the Java
+ * heap, in direct or memory-mapped arenas divided into fixed-size blocks. Only a compact index of
+ * keys, lengths and block numbers stays on the heap. Capacity is a number of bytes: a value takes
+ * as many blocks as its length needs, eviction returns blocks to a free list for reuse, and a value
+ * larger than the whole capacity is returned without being cached. <tt>get</tt> returns a fresh
+ * copy of the stored bytes. A file-backed cache holds its file open until it is closed.
+ */
+public class OffHeapCache<K> implements Cache<K, byte[]>, AutoCloseable {
+    //default size of one block; a value wastes less than one block
+    private static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+    //largest arena allocated or mapped in one piece
+    private static final int MAX_ARENA_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * The on-heap index entry of one value: its length, the blocks holding it and its neighbors in
+     * the recency list.
+     */
+    private static class Entry<K> {
+        protected final K _key;
+        protected final int _length;
+        protected final int[] _blocks;
+        protected Entry<K> _next;    //the next (more recently used) entry
+        protected Entry<K> _last;    //the previous (less recently used) entry
+
+        Entry (K key, int length, int[] blocks) {
+            _key = key;
+            _length = length;
+            _blocks = blocks;
+        }
+    }
+
+    //the data provider to consult for a cache miss
+    private final DataProvider<K, byte[]> _provider;
+    //the index from keys to the blocks holding their values
+    private final HashMap<K, Entry<K>> _index = new HashMap<K, Entry<K>>();
+    //the backing file when the arenas are memory-mapped, or null for direct buffers
+    private final FileChannel _file;
+
+    //the size of one block, and the number of blocks in the whole cache and in one arena
+    private final int _blockSize;
+    private final int _totalBlocks;
+    private final int _blocksPerArena;
+    //the arenas, allocated or mapped the first time one of their blocks is needed
+    private final ByteBuffer[] _arenas;
+
+    //blocks freed by eviction, used as a stack
+    private final int[] _freeBlocks;
+    private int _freeCount = 0;
+    //blocks at or after this number have never been handed out
+    private int _nextFreshBlock = 0;
+
+    //the least and most recently used entries
+    private Entry<K> _head;
+    private Entry<K> _tail;
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * Creates a cache backed by direct buffers.
+     * @param provider the data provider to consult for a cache miss
+     * @param capacityBytes the number of value bytes the cache may hold
+     */
+    public OffHeapCache (DataProvider<K, byte[]> provider, long capacityBytes) {
+        this(provider, capacityBytes, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Creates a cache backed by a memory-mapped file, which is created or overwritten.
+     * @param provider the data provider to consult for a cache miss
+     * @param capacityBytes the number of value bytes the cache may hold
+     * @param file the file to map the arenas from
+     */
+    public OffHeapCache (DataProvider<K, byte[]> provider, long capacityBytes, Path file) {
+        this(provider, capacityBytes, DEFAULT_BLOCK_SIZE, openFile(file));
+    }
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param capacityBytes the number of value bytes the cache may hold
+     * @param blockSize the size of one block, at most the size of an arena
+     * @param file the channel to map arenas from, or null for direct buffers
+     */
+    OffHeapCache (DataProvider<K, byte[]> provider, long capacityBytes, int blockSize, FileChannel file) {
+        if (blockSize < 1 || blockSize > MAX_ARENA_BYTES || capacityBytes < blockSize) {
+            throw new IllegalArgumentException("capacity must hold at least one block of a valid size");
+        }
+        _provider = provider;
+        _file = file;
+        _blockSize = blockSize;
+        _totalBlocks = (int) Math.min(Integer.MAX_VALUE, capacityBytes / blockSize);
+        _blocksPerArena = Math.min(_totalBlocks, MAX_ARENA_BYTES / blockSize);
+        _arenas = new ByteBuffer[(_totalBlocks + _blocksPerArena - 1) / _blocksPerArena];
+        _freeBlocks = new int[_totalBlocks];
+    }
+
+    /**
+     * Returns the value associated with the specified key.
+     * @param key the key
+     * @return a copy of the value associated with the key
+     */
+    public byte[] get (K key) {
+        final Entry<K> entry = _index.get(key);
+        if (entry == null) {
+            final byte[] value = _stats.load(_provider, key);
+            if (value != null) {
+                addEntry(key, value);
+            }
+            return value;
+        }
+
+        _stats.recordHit();
+        if (entry != _tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+        return read(entry);
+    }
+
+    /**
+     * Copies a value into the cache, replacing any value stored for the key. A null value just
+     * removes the key, and a value larger than the whole cache is not stored.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (K key, byte[] value) {
+        invalidate(key);
+        if (value != null) {
+            addEntry(key, value);
+        }
+    }
+
+    /**
+     * Removes the value stored for a key, if any, freeing its blocks.
+     * @param key the key
+     */
+    public void invalidate (K key) {
+        final Entry<K> entry = _index.get(key);
+        if (entry != null) {
+            removeEntry(entry);
+        }
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored in the cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _index.size();
+    }
+
+    /**
+     * Returns the number of bytes of block space currently in use.
+     * @return the bytes held by stored values, rounded up to whole blocks
+     */
+    public long weight () {
+        return (long) (_nextFreshBlock - _freeCount) * _blockSize;
+    }
+
+    /**
+     * Copies a loaded value into free blocks, evicting least recently used values until enough
+     * blocks are free. A value larger than the whole cache is not stored.
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     */
+    private void addEntry (K key, byte[] value) {
+        final int blocksNeeded = Math.max(1, (value.length + _blockSize - 1) / _blockSize);
+        if (blocksNeeded > _totalBlocks) {
+            return;
+        }
+        while (_freeCount + _totalBlocks - _nextFreshBlock < blocksNeeded) {
+            removeEntry(_head);
+            _stats.recordEviction();
+        }
+
+        final int[] blocks = new int[blocksNeeded];
+        for (int i = 0; i < blocksNeeded; i++) {
+            blocks[i] = _freeCount > 0 ? _freeBlocks[--_freeCount] : _nextFreshBlock++;
+            final int offset = i * _blockSize;
+            final int length = Math.min(_blockSize, value.length - offset);
+            arenaFor(blocks[i]).put(positionOf(blocks[i]), value, offset, Math.max(0, length));
+        }
+        final Entry<K> entry = new Entry<K>(key, value.length, blocks);
+        _index.put(key, entry);
+        linkLast(entry);
+    }
+
+    /**
+     * Removes a value from the index and the recency list and frees its blocks.
+     * @param entry the index entry of the value
+     */
+    private void removeEntry (Entry<K> entry) {
+        unlink(entry);
+        _index.remove(entry._key);
+        for (final int block : entry._blocks) {
+            _freeBlocks[_freeCount++] = block;
+        }
+    }
+
+    /**
+     * Copies a stored value out of its blocks.
+     * @param entry the index entry of the value
+     * @return a new array holding the value
+     */
+    private byte[] read (Entry<K> entry) {
+        final byte[] value = new byte[entry._length];
+        for (int i = 0; i < entry._blocks.length; i++) {
+            final int offset = i * _blockSize;
+            final int length = Math.min(_blockSize, entry._length - offset);
+            _arenas[entry._blocks[i] / _blocksPerArena].get(positionOf(entry._blocks[i]), value, offset, length);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the arena holding a block, allocating or mapping it on first use.
+     * @param block the block number
+     * @return the arena containing the block
+     */
+    private ByteBuffer arenaFor (int block) {
+        final int arena = block / _blocksPerArena;
+        if (_arenas[arena] == null) {
+            final int blocks = Math.min(_blocksPerArena, _totalBlocks - arena * _blocksPerArena);
+            _arenas[arena] = allocateArena((long) arena * _blocksPerArena * _blockSize, blocks * _blockSize);
+        }
+        return _arenas[arena];
+    }
+
+    /**
+     * Allocates a direct arena, or maps one from the backing file.
+     * @param fileOffset where the arena starts in the backing file
+     * @param bytes the size of the arena
+     * @return the new arena
+     */
+    private ByteBuffer allocateArena (long fileOffset, int bytes) {
+        if (_file == null) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            return _file.map(FileChannel.MapMode.READ_WRITE, fileOffset, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the file backing a memory-mapped cache; a cache of direct buffers has nothing to
+     * close. The cache must not be used afterwards.
+     */
+    public void close () {
+        if (_file == null) {
+            return;
+        }
+        try {
+            _file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns where a block starts within its arena.
+     * @param block the block number
+     * @return the byte offset of the block in its arena
+     */
+    private int positionOf (int block) {
+        return (block % _blocksPerArena) * _blockSize;
+    }
+
+    /**
+     * Opens the file backing a memory-mapped cache.
+     * @param file the path of the file
+     * @return a channel open for reading and writing
+     */
+    private static FileChannel openFile (Path file) {
+        try {
+            return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes an entry from the recency list, pointing its neighbors at each other
+     * @param entry an entry currently in the list
+     */
+    private void unlink (Entry<K> entry) {
+        if (entry._last == null) {
+            _head = entry._next;
+        }
+        else {
+            entry._last._next = entry._next;
+        }
+        if (entry._next == null) {
+            _tail = entry._last;
+        }
+        else {
+            entry._next._last = entry._last;
+        }
+        entry._last = null;
+        entry._next = null;
+    }
+
+    /**
+     * Appends an entry to the most recently used end of the recency list
+     * @param entry an entry not currently in the list
+     */
+    private void linkLast (Entry<K> entry) {
+        entry._last = _tail;
+        if (_tail == null) {
+            _head = entry;
+        }
+        else {
+            _tail._next = entry;
+        }
+        _tail = entry;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Code to test an <tt>OffHeapCache</tt> implementation.
+ */
+public class OffHeapCacheTest {
+    //number of bytes in a kilobyte
+    private static final int KB = 1024;
+
+    /**
+     * Implements a data provider whose values are <tt>key</tt> kilobytes filled with the key
+     */
+    public static class BlobDataProvider implements DataProvider<Integer, byte[]> {
+        public int _timesReferenced = 0;
+
+        /**
+         * Returns a value for a given key
+         * @param key the size of the value in kilobytes
+         * @return an array of that size filled with the key
+         */
+        public byte[] get (Integer key) {
+            _timesReferenced++;
+            final byte[] value = new byte[key * KB];
+            Arrays.fill(value, (byte) (int) key);
+            return value;
+        }
+    }
+
+    /**
+     * Checks that a value is the one the provider produces for the key
+     */
+    private static void assertBlob (int key, byte[] value) {
+        assertEquals(key * KB, value.length);
+        for (final byte b : value) {
+            assertEquals((byte) key, b);
+        }
+    }
+
+    /**
+     * Tests that values spanning several blocks come back intact and are served from the cache
+     */
+    @Test
+    public void testRoundTrip () {
+        BlobDataProvider provider = new BlobDataProvider();
+        OffHeapCache<Integer> cache = new OffHeapCache<Integer>(provider, 1024 * KB);
+
+        for (int key = 1; key <= 20; key++) {
+            assertBlob(key, cache.get(key));
+        }
+        for (int key = 1; key <= 20; key++) {
+            assertBlob(key, cache.get(key));
+        }
+        assertEquals(20, provider._timesReferenced);
+        assertEquals(20, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that eviction frees least recently used values until the new value fits in the bytes
+     */
+    @Test
+    public void testEvictsByBytes () {
+        BlobDataProvider provider = new BlobDataProvider();
+        OffHeapCache<Integer> cache = new OffHeapCache<Integer>(provider, 64 * KB);
+        cache.get(16);
+        cache.get(24);
+        cache.get(8);
+        //16 becomes the most recently used, so 24 is the least recently used
+        cache.get(16);
+
+        //32 needs 32KB and only 16KB is free: 24 is evicted, which is enough
+        cache.get(32);
+        assertEquals(3, cache.size());
+        assertTrue(cache.weight() <= 64 * KB);
+
+        provider._timesReferenced = 0;
+        cache.get(16);
+        cache.get(8);
+        cache.get(32);
+        assertEquals(0, provider._timesReferenced);
+        assertBlob(24, cache.get(24));
+        assertEquals(1, provider._timesReferenced);
+    }
+
+    /**
+     * Tests that a value larger than the whole cache is returned but does not flush the cache
+     */
+    @Test
+    public void testOversizedValueIsNotCached () {
+        BlobDataProvider provider = new BlobDataProvider();
+        OffHeapCache<Integer> cache = new OffHeapCache<Integer>(provider, 64 * KB);
+        cache.get(8);
+
+        assertBlob(65, cache.get(65));
+        assertBlob(65, cache.get(65));
+        assertEquals(3, provider._timesReferenced);
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests the memory-mapped mode
+     */
+    @Test
+    public void testMemoryMapped () throws Exception {
+        File file = File.createTempFile("offheap", ".cache");
+        file.deleteOnExit();
+        BlobDataProvider provider = new BlobDataProvider();
+        try (OffHeapCache<Integer> cache = new OffHeapCache<Integer>(provider, 256 * KB, file.toPath())) {
+            for (int key = 1; key <= 40; key++) {
+                assertBlob(key, cache.get(key));
+            }
+            assertBlob(40, cache.get(40));
+            assertEquals(40, provider._timesReferenced);
+            assertTrue(cache.weight() <= 256 * KB);
+        }
+    }
+
+    /**
+     * Tests that heap usage stays flat while the cache fills up with 64MB of values
+     */
+    @Test
+    public void testHeapStaysFlat () {
+        final int valueKB = 64;
+        final int values = 1024;
+        OffHeapCache<Integer> cache = new OffHeapCache<Integer>(key -> new byte[valueKB * KB], (long) values * valueKB * KB);
+
+        for (int key = 0; key < values / 8; key++) {
+            cache.get(key);
+        }
+        long heapBefore = usedHeap();
+        for (int key = values / 8; key < values; key++) {
+            cache.get(key);
+        }
+        long heapGrowth = usedHeap() - heapBefore;
+
+        assertEquals(values, cache.size());
+        //56MB of values were added; only their index entries may remain on the heap
+        assertTrue("heap grew by " + heapGrowth, heapGrowth < 1024 * KB);
+    }
+
+    /**
+     * Returns the heap in use after garbage collection
+     */
+    private static long usedHeap () {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client's connection to one <tt>CacheNode</tt>, shared by every thread of the client.
+ * Requests are written as soon as they are sent, without waiting for earlier responses, and a
+ * reader thread completes each request's future as its response arrives.
+ * <p>
+ * The connection is opened on first use. If it cannot be opened, or fails while reading or
+ * writing, every waiting request fails, and the peer is considered down and fails new requests at
+ * once until a retry delay has passed. A request that goes unanswered past the caller's timeout
+ * only gives up on that request: the node answers out of order, so a slow load does not mean the
+ * node has failed, nor does it hold up the requests sent after it.
+ */
+class PeerConnection implements AutoCloseable {
+    //how long a failed peer is skipped before connecting again
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    //how long to wait for a connection to open
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * A node's answer to one request.
+     */
+    static class Response {
+        final byte _status;
+        final byte[] _value;
+
+        Response (byte status, byte[] value) {
+            _status = status;
+            _value = value;
+        }
+    }
+
+    //the node's address
+    private final InetSocketAddress _address;
+    //requests sent but not yet answered, by id
+    private final ConcurrentHashMap<Integer, CompletableFuture<Response>> _pending =
+        new ConcurrentHashMap<Integer, CompletableFuture<Response>>();
+    //the open connection, or null
+    private Socket _socket;
+    //writes requests to the open connection
+    private DataOutputStream _out;
+    //id given to the next request
+    private int _nextId = 0;
+    //whether the peer failed recently
+    private boolean _down = false;
+    //when a down peer may be tried again
+    private long _retryAt;
+
+    /**
+     * @param address the node's address
+     */
+    PeerConnection (InetSocketAddress address) {
+        _address = address;
+    }
+
+    /**
+     * Sends a request that carries no value.
+     * @param op the operation
+     * @param key the serialized key
+     * @param flush whether to send it at once, rather than with the next flush
+     * @return completes with the response, or exceptionally if the peer is down or fails
+     */
+    CompletableFuture<Response> send (byte op, byte[] key, boolean flush) {
+        return send(op, key, null, flush);
+    }
+
+    /**
+     * Sends a request.
+     * @param op the operation
+     * @param key the serialized key
+     * @param value the serialized value of a <tt>PUT</tt>, or null
+     * @param flush whether to send it at once, rather than with the next flush
+     * @return completes with the response, or exceptionally if the peer is down or fails
+     */
+    synchronized CompletableFuture<Response> send (byte op, byte[] key, byte[] value, boolean flush) {
+        final CompletableFuture<Response> response = new CompletableFuture<Response>();
+        try {
+            connect();
+            final int id = _nextId++;
+            _pending.put(id, response);
+            CacheProtocol.writeRequest(_out, id, op, key, value);
+            if (flush) {
+                _out.flush();
+            }
+        } catch (IOException e) {
+            fail(_socket, e);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * Sends every request written since the last flush.
+     */
+    synchronized void flush () {
+        if (_out == null) {
+            return;
+        }
+        try {
+            _out.flush();
+        } catch (IOException e) {
+            fail(_socket, e);
+        }
+    }
+
+    /**
+     * Gives up on a request the peer did not answer in time, so its late answer is dropped. The
+     * connection stays open and the peer is not marked down.
+     * @param response the request's future, as returned by <tt>send</tt>
+     */
+    void timedOut (CompletableFuture<Response> response) {
+        _pending.values().remove(response);
+    }
+
+    /**
+     * Closes the connection, failing every waiting request.
+     */
+    public synchronized void close () {
+        fail(_socket, new IOException("connection to " + _address + " closed"));
+    }
+
+    /**
+     * Opens the connection if it is not open, and starts its reader thread.
+     * @throws IOException if the peer is down or cannot be reached
+     */
+    private void connect () throws IOException {
+        if (_socket != null) {
+            return;
+        }
+        if (_down && System.nanoTime() - _retryAt < 0) {
+            throw new IOException("peer " + _address + " is down");
+        }
+        final Socket socket = new Socket();
+        try {
+            socket.connect(_address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            _out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final Thread reader = new Thread(() -> read(socket, in), "cache-peer-" + _address.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        } catch (IOException e) {
+            closeQuietly(socket);
+            _out = null;
+            markDown();
+            throw e;
+        }
+        _socket = socket;
+        _down = false;
+    }
+
+    /**
+     * Completes requests as their responses arrive, until the connection fails.
+     * @param socket the connection being read
+     * @param in its input
+     */
+    private void read (Socket socket, DataInputStream in) {
+        try {
+            while (true) {
+                final int id = in.readInt();
+                final byte status = in.readByte();
+                final byte[] value = CacheProtocol.readBytes(in);
+                final CompletableFuture<Response> response = _pending.remove(id);
+                if (response != null) {
+                    response.complete(new Response(status, value));
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(socket, e);
+            }
+        }
+    }
+
+    /**
+     * Closes a failed connection, if it is still the current one, marks the peer down and fails
+     * every waiting request.
+     * @param socket the connection that failed
+     * @param cause why it failed
+     */
+    private void fail (Socket socket, IOException cause) {
+        if (socket == null || socket != _socket) {
+            return;
+        }
+        closeQuietly(socket);
+        _socket = null;
+        _out = null;
+        markDown();
+        for (final Integer id : _pending.keySet()) {
+            final CompletableFuture<Response> response = _pending.remove(id);
+            if (response != null) {
+                response.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Skips the peer until the retry delay has passed.
+     */
+    private void markDown () {
+        _down = true;
+        _retryAt = System.nanoTime() + RETRY_NANOS;
+    }
+
+    /**
+     * Closes a socket, ignoring failures.
+     */
+    private static void closeQuietly (Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //already closed
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.HashMap;
+
+/**
+ * An implementation of <tt>Cache</tt> whose eviction decisions are delegated to a pluggable
+ * <tt>EvictionPolicy</tt>, such as <tt>LRUPolicy</tt> or <tt>WTinyLFUPolicy</tt>.
+ */
+public class PolicyCache<T, U> implements Cache<T, U> {
+    //the stored (key,value) pairs
+    private final HashMap<T, U> _cache = new HashMap<T, U>();
+    //the data provider to consult for a cache miss
+    private final DataProvider<T, U> _provider;
+    //decides which keys stay
+    private final EvictionPolicy<T> _policy;
+    //counts hits, misses, evictions and loads
+    private final CacheStats _stats = new CacheStats();
+
+    /**
+     * @param provider the data provider to consult for a cache miss
+     * @param policy the policy deciding which keys to keep; it also fixes the capacity
+     */
+    public PolicyCache (DataProvider<T, U> provider, EvictionPolicy<T> policy) {
+        _provider = provider;
+        _policy = policy;
+    }
+
+    /**
+     * Returns the value associated with the specified key.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final U cached = _cache.get(key);
+        if (cached != null || _cache.containsKey(key)) {
+            _stats.recordHit();
+            _policy.recordAccess(key);
+            return cached;
+        }
+
+        final U value = _stats.load(_provider, key);
+        insert(key, value);
+        return value;
+    }
+
+    /**
+     * Stores a value that was loaded or changed outside the cache. A new key goes through the
+     * policy's admission like a loaded one; an existing key counts as accessed.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        if (_cache.containsKey(key)) {
+            _cache.put(key, value);
+            _policy.recordAccess(key);
+            return;
+        }
+        insert(key, value);
+    }
+
+    /**
+     * Removes the pair stored for a key, if any, so that the next <tt>get</tt> loads it again.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        if (_cache.containsKey(key)) {
+            _cache.remove(key);
+            _policy.recordRemoval(key);
+        }
+    }
+
+    /**
+     * Offers a new pair to the policy, storing it and evicting the policy's victim if any
+     * @param key is the key attribute of the pair
+     * @param value is the value attribute of the pair
+     */
+    private void insert (T key, U value) {
+        final T victim = _policy.recordInsertion(key);
+        if (victim == null) {
+            _cache.put(key, value);
+        }
+        else if (!victim.equals(key)) {
+            _cache.remove(victim);
+            _cache.put(key, value);
+            _stats.recordEviction();
+        }
+        else {
+            //the new pair was not admitted, which evicts it straight away
+            _stats.recordEviction();
+        }
+    }
+
+    /**
+     * Returns the number of (key,value) pairs currently stored in the cache.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _cache.size();
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+}
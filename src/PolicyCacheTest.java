@@ -0,0 +1,157 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Random;
+
+/**
+ * Code to test <tt>PolicyCache</tt> with each <tt>EvictionPolicy</tt>.
+ */
+public class PolicyCacheTest {
+    //size of the hot set and of the caches in the scan test
+    private static final int HOT_KEYS = 100;
+
+    /**
+     * Test random gets against an <tt>LRUCache</tt>; with an <tt>LRUPolicy</tt> every get must hit
+     * or miss in both caches alike
+     */
+    @Test
+    public void testLRUPolicyMatchesLRUCache () {
+        Cache<Integer, String> cache = new PolicyCache<Integer, String>(key -> Integer.toString(key), new LRUPolicy<Integer>(50));
+        Cache<Integer, String> reference = new LRUCache<Integer, String>(key -> Integer.toString(key), 50);
+        Random rand = new Random(0);
+
+        for (int i = 0; i < 20000; i++) {
+            int key = rand.nextInt(150);
+            assertEquals(reference.get(key), cache.get(key));
+            assertEquals(reference.getNumMisses(), cache.getNumMisses());
+        }
+    }
+
+    /**
+     * Tests that W-TinyLFU never holds more pairs than its capacity, including tiny capacities
+     */
+    @Test
+    public void testTinyLFUCapacityIsExact () {
+        for (int capacity : new int[] {1, 2, 3, 10, 1000}) {
+            PolicyCache<Integer, String> cache = new PolicyCache<Integer, String>(key -> Integer.toString(key),
+                                                                                  new WTinyLFUPolicy<Integer>(capacity));
+            Random rand = new Random(capacity);
+            for (int i = 0; i < 20000; i++) {
+                int key = rand.nextInt(capacity * 3);
+                assertEquals(Integer.toString(key), cache.get(key));
+                assertTrue(cache.size() <= capacity);
+            }
+            assertEquals(capacity, cache.size());
+        }
+    }
+
+    /**
+     * Tests that a scan of one-time keys flushes the hot set out of LRU but not out of W-TinyLFU
+     */
+    @Test
+    public void testTinyLFUSurvivesScan () {
+        Cache<Integer, Integer> lru = new PolicyCache<Integer, Integer>(key -> key, new LRUPolicy<Integer>(HOT_KEYS));
+        Cache<Integer, Integer> tinyLFU = new PolicyCache<Integer, Integer>(key -> key, new WTinyLFUPolicy<Integer>(HOT_KEYS));
+        int nextColdKey = HOT_KEYS;
+
+        for (int round = 0; round < 20; round++) {
+            //the hot set is read a few times, then a scan twice the cache size sweeps by
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int key = 0; key < HOT_KEYS; key++) {
+                    lru.get(key);
+                    tinyLFU.get(key);
+                }
+            }
+            for (int i = 0; i < HOT_KEYS * 2; i++) {
+                lru.get(nextColdKey);
+                tinyLFU.get(nextColdKey++);
+            }
+        }
+        assertTrue("W-TinyLFU missed " + tinyLFU.getNumMisses() + " times, LRU " + lru.getNumMisses(),
+                   tinyLFU.getNumMisses() < lru.getNumMisses() - 10 * HOT_KEYS);
+    }
+
+    /**
+     * Tests that ARC never holds more pairs than its capacity nor remembers more than twice the
+     * capacity in keys, with invalidations mixed in
+     */
+    @Test
+    public void testARCBoundsAreKept () {
+        for (int capacity : new int[] {1, 2, 3, 10, 1000}) {
+            ARCPolicy<Integer> policy = new ARCPolicy<Integer>(capacity);
+            PolicyCache<Integer, String> cache = new PolicyCache<Integer, String>(key -> Integer.toString(key), policy);
+            Random rand = new Random(capacity);
+            for (int i = 0; i < 20000; i++) {
+                //alternate between a small working set and a wide one so the target swings both ways
+                int key = (i / 1000) % 2 == 0 ? rand.nextInt(capacity + 1) : rand.nextInt(capacity * 4);
+                if (rand.nextInt(50) == 0) {
+                    cache.invalidate(key);
+                }
+                else {
+                    assertEquals(Integer.toString(key), cache.get(key));
+                }
+                assertTrue(cache.size() <= capacity);
+                assertTrue(cache.size() + policy.ghostCount() <= 2 * capacity);
+                assertTrue(policy.target() >= 0 && policy.target() <= capacity);
+            }
+        }
+    }
+
+    /**
+     * Tests that a miss on a key evicted from the recency list raises the recency target, and that
+     * the eviction it causes leaves the repeatedly used key alone
+     */
+    @Test
+    public void testARCGhostHitAdaptsTarget () {
+        ARCPolicy<Integer> policy = new ARCPolicy<Integer>(4);
+        PolicyCache<Integer, Integer> cache = new PolicyCache<Integer, Integer>(key -> key, policy);
+        for (int key = 0; key < 4; key++) {
+            cache.get(key);
+        }
+        //0 moves to the frequency list, so the new key 4 pushes 1 out of the recency list
+        cache.get(0);
+        cache.get(4);
+        assertEquals(1, policy.ghostCount());
+        assertEquals(0, policy.target());
+
+        //1 comes back as a ghost hit, which grows the recency target and evicts 2 instead
+        cache.get(1);
+        assertEquals(1, policy.target());
+        int misses = cache.getNumMisses();
+        for (int key : new int[] {0, 1, 3, 4}) {
+            cache.get(key);
+        }
+        assertEquals(misses, cache.getNumMisses());
+        cache.get(2);
+        assertEquals(misses + 1, cache.getNumMisses());
+    }
+
+    /**
+     * Tests that a scan of one-time keys flushes the hot set out of LRU but not out of ARC
+     */
+    @Test
+    public void testARCSurvivesScan () {
+        Cache<Integer, Integer> lru = new LRUCache<Integer, Integer>(key -> key, HOT_KEYS);
+        Cache<Integer, Integer> arc = new ARCCache<Integer, Integer>(key -> key, HOT_KEYS);
+        int nextColdKey = HOT_KEYS;
+
+        for (int round = 0; round < 20; round++) {
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int key = 0; key < HOT_KEYS; key++) {
+                    lru.get(key);
+                    arc.get(key);
+                }
+            }
+            for (int i = 0; i < HOT_KEYS * 2; i++) {
+                lru.get(nextColdKey);
+                arc.get(nextColdKey++);
+            }
+        }
+        assertTrue("ARC missed " + arc.getNumMisses() + " times, LRU " + lru.getNumMisses(),
+                   arc.getNumMisses() < lru.getNumMisses() - 10 * HOT_KEYS);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code to test refresh-after-write in <tt>LRUCache</tt> and <tt>ConcurrentLRUCache</tt>.
+ */
+public class RefreshTest {
+    //number of nanoseconds in a second
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * A data provider that returns a new version of every key each time it is asked, and can be
+     * made to fail
+     */
+    public static class VersionedDataProvider implements DataProvider<Integer, String> {
+        public int _timesReferenced = 0;
+        public boolean _failing = false;
+
+        /**
+         * Returns the key followed by the number of loads so far
+         * @param key the key
+         * @return a string naming the key and the load
+         */
+        public String get (Integer key) {
+            _timesReferenced++;
+            if (_failing) {
+                throw new IllegalStateException("provider is down");
+            }
+            return key + "v" + _timesReferenced;
+        }
+    }
+
+    /**
+     * An executor that holds tasks until the test runs them
+     */
+    public static class ManualExecutor implements Executor {
+        public final Queue<Runnable> _tasks = new ArrayDeque<Runnable>();
+
+        public void execute (Runnable task) {
+            _tasks.add(task);
+        }
+
+        /**
+         * Runs every held task
+         */
+        public void runAll () {
+            while (!_tasks.isEmpty()) {
+                _tasks.remove().run();
+            }
+        }
+    }
+
+    /**
+     * Returns an LRUCache that refreshes pairs ten seconds after they were written
+     */
+    private static LRUCache<Integer, String> refreshingCache (VersionedDataProvider provider,
+            ExpirationTest.FakeTicker ticker, Executor executor) {
+        return new LRUCache<Integer, String>(provider, 10, null, new CacheStats(), null, ticker::read,
+            10 * SECOND, executor);
+    }
+
+    /**
+     * Tests that a stale read returns the current value at once and that the reload replaces it
+     */
+    @Test
+    public void testStaleReadRefreshesInBackground () {
+        VersionedDataProvider provider = new VersionedDataProvider();
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        ManualExecutor executor = new ManualExecutor();
+        LRUCache<Integer, String> cache = refreshingCache(provider, ticker, executor);
+
+        assertEquals("0v1", cache.get(0));
+        ticker._nanos = 9 * SECOND;
+        assertEquals("0v1", cache.get(0));
+        assertTrue(executor._tasks.isEmpty());
+
+        ticker._nanos = 10 * SECOND;
+        assertEquals("0v1", cache.get(0));
+        assertEquals("0v1", cache.get(0));
+        assertEquals(1, executor._tasks.size());
+        assertEquals(1, provider._timesReferenced);
+
+        executor.runAll();
+        assertEquals("0v2", cache.get(0));
+        assertEquals(1, cache.getNumMisses());
+        assertEquals(2, cache.getStats().getLoadSuccessCount());
+
+        //the reload counts as a write, so the pair is fresh again
+        ticker._nanos = 19 * SECOND;
+        cache.get(0);
+        assertTrue(executor._tasks.isEmpty());
+    }
+
+    /**
+     * Tests that a failed refresh keeps the old value, is counted, and is retried by a later read
+     */
+    @Test
+    public void testFailedRefreshKeepsOldValue () {
+        VersionedDataProvider provider = new VersionedDataProvider();
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        ManualExecutor executor = new ManualExecutor();
+        LRUCache<Integer, String> cache = refreshingCache(provider, ticker, executor);
+
+        cache.get(0);
+        ticker._nanos = 10 * SECOND;
+        provider._failing = true;
+        cache.get(0);
+        executor.runAll();
+        assertEquals("0v1", cache.get(0));
+        assertEquals(1, cache.getStats().getRefreshFailureCount());
+        assertEquals(1, cache.getStats().getLoadFailureCount());
+        assertEquals(1, cache.size());
+
+        provider._failing = false;
+        executor.runAll();
+        assertEquals("0v3", cache.get(0));
+    }
+
+    /**
+     * Tests that a value written while a refresh is in flight is not overwritten by the refresh
+     */
+    @Test
+    public void testWriteWinsOverRefresh () {
+        VersionedDataProvider provider = new VersionedDataProvider();
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        ManualExecutor executor = new ManualExecutor();
+        LRUCache<Integer, String> cache = refreshingCache(provider, ticker, executor);
+
+        cache.get(0);
+        ticker._nanos = 10 * SECOND;
+        cache.get(0);
+        cache.put(0, "written");
+        executor.runAll();
+        assertEquals("written", cache.get(0));
+    }
+
+    /**
+     * Tests that a refresh finishing after its pair was evicted does not bring the pair back
+     */
+    @Test
+    public void testRefreshOfEvictedPairIsDropped () {
+        VersionedDataProvider provider = new VersionedDataProvider();
+        ExpirationTest.FakeTicker ticker = new ExpirationTest.FakeTicker();
+        ManualExecutor executor = new ManualExecutor();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(provider, 1, null, new CacheStats(),
+            null, ticker::read, 10 * SECOND, executor);
+
+        cache.get(0);
+        ticker._nanos = 10 * SECOND;
+        cache.get(0);
+        cache.get(1);
+        executor.runAll();
+        assertFalse(cache.contains(0));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests refresh through the segments of a ConcurrentLRUCache
+     */
+    @Test
+    public void testConcurrentCacheRefresh () throws InterruptedException {
+        VersionedDataProvider provider = new VersionedDataProvider();
+        ManualExecutor executor = new ManualExecutor();
+        Cache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(provider, 10, 2,
+            Duration.ofNanos(1), executor);
+
+        assertEquals("0v1", cache.get(0));
+        Thread.sleep(1);
+        assertEquals("0v1", cache.get(0));
+        executor.runAll();
+        assertEquals("0v2", cache.get(0));
+        assertEquals(1, cache.getNumMisses());
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * Why a (key,value) pair left a cache, as told to a <tt>RemovalListener</tt>.
+ */
+public enum RemovalCause {
+	//removed to stay within the cache's capacity
+	EVICTED,
+	//its time to live ran out
+	EXPIRED,
+	//removed by invalidate or invalidateAll
+	EXPLICIT,
+	//its value was overwritten by put or a refresh
+	REPLACED
+}
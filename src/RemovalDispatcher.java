@@ -0,0 +1,127 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <tt>RemovalListener</tt> that hands each removal to a bounded queue and calls the real
+ * listener from its own thread, so a cache never waits for its listener. If the listener falls so
+ * far behind that the queue is full, further removals are dropped and counted rather than slowing
+ * the cache down.
+ */
+public class RemovalDispatcher<T, U> implements RemovalListener<T, U>, AutoCloseable {
+    //number of removals queued by default
+    private static final int DEFAULT_CAPACITY = 1024;
+    //how often the dispatching thread checks whether it has been closed
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * One queued removal.
+     */
+    private static class Removal<T, U> {
+        final T _key;
+        final U _value;
+        final RemovalCause _cause;
+
+        Removal (T key, U value, RemovalCause cause) {
+            _key = key;
+            _value = value;
+            _cause = cause;
+        }
+    }
+
+    //the listener called from the dispatching thread
+    private final RemovalListener<? super T, ? super U> _listener;
+    //removals waiting to be dispatched
+    private final BlockingQueue<Removal<T, U>> _queue;
+    //counts removals dropped because the queue was full or the dispatcher closed
+    private final LongAdder _dropped = new LongAdder();
+    //calls the listener
+    private final Thread _thread;
+    //whether the dispatcher has been closed
+    private volatile boolean _closed = false;
+
+    /**
+     * @param listener the listener to call off the caller's thread
+     */
+    public RemovalDispatcher (RemovalListener<? super T, ? super U> listener) {
+        this(listener, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param listener the listener to call off the caller's thread
+     * @param capacity the most removals that may wait for the listener
+     */
+    public RemovalDispatcher (RemovalListener<? super T, ? super U> listener, int capacity) {
+        _listener = listener;
+        _queue = new ArrayBlockingQueue<Removal<T, U>>(capacity);
+        _thread = new Thread(this::dispatch, "removal-dispatcher");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Queues a removal for the listener, or drops it if the queue is full.
+     * @param key the key of the removed pair
+     * @param value the value it had when removed
+     * @param cause why it was removed
+     */
+    public void onRemoval (T key, U value, RemovalCause cause) {
+        if (_closed || !_queue.offer(new Removal<T, U>(key, value, cause))) {
+            _dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the number of removals the listener was never told about.
+     * @return the dropped count
+     */
+    public long getDroppedCount () {
+        return _dropped.sum();
+    }
+
+    /**
+     * Stops accepting removals and waits until those already queued have been dispatched.
+     */
+    public void close () {
+        _closed = true;
+        boolean interrupted = false;
+        while (_thread.isAlive()) {
+            try {
+                _thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Calls the listener for each queued removal until the dispatcher is closed and drained.
+     */
+    private void dispatch () {
+        while (!_closed || !_queue.isEmpty()) {
+            final Removal<T, U> removal;
+            try {
+                removal = _queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (removal == null) {
+                continue;
+            }
+            try {
+                _listener.onRemoval(removal._key, removal._value, removal._cause);
+            } catch (RuntimeException e) {
+                //one failing notification must not stop the ones after it
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * Told about each (key,value) pair that leaves a cache. A listener set on a cache is called on
+ * the thread that removed the pair, often while the cache is locked, so it must be quick and must
+ * not use the cache; wrap it in a <tt>RemovalDispatcher</tt> to run it on its own thread instead.
+ */
+interface RemovalListener<T, U> {
+	/**
+	 * Called after a pair was removed.
+	 * @param key the key of the removed pair
+	 * @param value the value it had when removed
+	 * @param cause why it was removed
+	 */
+	void onRemoval (T key, U value, RemovalCause cause);
+}
@@ -0,0 +1,97 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys or values to and from bytes, e.g. for <tt>CacheSnapshot</tt>.
+ */
+interface Serializer<V> {
+	//number of bytes in a serialized Integer
+	int INTEGER_BYTES = 4;
+	//number of bytes in a serialized Long
+	int LONG_BYTES = 8;
+
+	/**
+	 * Returns the bytes of an object.
+	 * @param value the object
+	 * @return its serialized form
+	 */
+	byte[] serialize (V value);
+
+	/**
+	 * Reads an object back from its bytes.
+	 * @param bytes a buffer holding exactly the serialized form, from its position to its limit
+	 * @return the object
+	 */
+	V deserialize (ByteBuffer bytes);
+
+	/**
+	 * Returns a serializer of strings as UTF-8.
+	 * @return the serializer
+	 */
+	static Serializer<String> strings () {
+		return new Serializer<String>() {
+			public byte[] serialize (String value) {
+				return value.getBytes(StandardCharsets.UTF_8);
+			}
+
+			public String deserialize (ByteBuffer bytes) {
+				return StandardCharsets.UTF_8.decode(bytes).toString();
+			}
+		};
+	}
+
+	/**
+	 * Returns a serializer of byte arrays, which are stored as they are.
+	 * @return the serializer
+	 */
+	static Serializer<byte[]> bytes () {
+		return new Serializer<byte[]>() {
+			public byte[] serialize (byte[] value) {
+				return value;
+			}
+
+			public byte[] deserialize (ByteBuffer bytes) {
+				final byte[] value = new byte[bytes.remaining()];
+				bytes.get(value);
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Returns a serializer of integers as four big-endian bytes.
+	 * @return the serializer
+	 */
+	static Serializer<Integer> integers () {
+		return new Serializer<Integer>() {
+			public byte[] serialize (Integer value) {
+				return ByteBuffer.allocate(INTEGER_BYTES).putInt(value).array();
+			}
+
+			public Integer deserialize (ByteBuffer bytes) {
+				return bytes.getInt();
+			}
+		};
+	}
+
+	/**
+	 * Returns a serializer of longs as eight big-endian bytes.
+	 * @return the serializer
+	 */
+	static Serializer<Long> longs () {
+		return new Serializer<Long>() {
+			public byte[] serialize (Long value) {
+				return ByteBuffer.allocate(LONG_BYTES).putLong(value).array();
+			}
+
+			public Long deserialize (ByteBuffer bytes) {
+				return bytes.getLong();
+			}
+		};
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Code to test saving and loading <tt>LRUCache</tt> snapshots with <tt>CacheSnapshot</tt>.
+ */
+public class SnapshotTest {
+    private Path _file;
+
+    @Before
+    public void createFile () throws IOException {
+        _file = Files.createTempFile("lrucache", ".snapshot");
+    }
+
+    @After
+    public void deleteFile () throws IOException {
+        Files.deleteIfExists(_file);
+    }
+
+    /**
+     * Returns a cache holding keys 0 to 3, ordered from least to most recently used as 1, 2, 3, 0
+     */
+    private static LRUCache<Integer, String> filledCache () {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4);
+        for (int key = 0; key < 4; key++) {
+            cache.get(key);
+        }
+        cache.get(0);
+        return cache;
+    }
+
+    /**
+     * Saves the filled cache to the test's file
+     */
+    private void saveFilledCache () throws IOException {
+        assertEquals(4, CacheSnapshot.save(filledCache(), _file, Serializer.integers(), Serializer.strings()));
+    }
+
+    /**
+     * Tests that a loaded snapshot holds the same pairs in the same recency order, without misses
+     */
+    @Test
+    public void testRoundTripKeepsRecency () throws IOException {
+        saveFilledCache();
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        LRUCache<Integer, String> restored = new LRUCache<Integer, String>(provider, 4);
+        assertEquals(4, CacheSnapshot.load(restored, _file, Serializer.integers(), Serializer.strings()));
+        assertEquals(0, restored.getNumMisses());
+        assertEquals("Value for key 2.", restored.get(2));
+        assertFalse(provider._referenced);
+
+        //1 is now the least recently used, then 3
+        restored.get(4);
+        assertFalse(restored.contains(1));
+        restored.put(5, "five");
+        assertFalse(restored.contains(3));
+        assertTrue(restored.contains(0));
+        assertTrue(restored.contains(2));
+    }
+
+    /**
+     * Tests that loading into a smaller cache keeps the most recently used pairs
+     */
+    @Test
+    public void testLoadIntoSmallerCache () throws IOException {
+        saveFilledCache();
+        LRUCache<Integer, String> restored = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 2);
+        CacheSnapshot.load(restored, _file, Serializer.integers(), Serializer.strings());
+        assertEquals(2, restored.size());
+        assertTrue(restored.contains(3));
+        assertTrue(restored.contains(0));
+    }
+
+    /**
+     * Tests loading with a map window smaller than the file, so records are read across remaps
+     */
+    @Test
+    public void testSmallMapWindow () throws IOException {
+        saveFilledCache();
+        LRUCache<Integer, String> restored = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4);
+        assertEquals(4, CacheSnapshot.load(restored, _file, Serializer.integers(), Serializer.strings(), 20));
+        assertEquals("Value for key 3.", restored.get(3));
+        assertEquals(0, restored.getNumMisses());
+    }
+
+    /**
+     * Tests that a pair whose provider found no value is saved and restored as null
+     */
+    @Test
+    public void testNullValueRoundTrip () throws IOException {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4);
+        cache.get(2);
+        assertNull(cache.get(99));
+        assertEquals(2, CacheSnapshot.save(cache, _file, Serializer.integers(), Serializer.strings()));
+        assertFalse(Files.exists(_file.resolveSibling(_file.getFileName() + ".tmp")));
+
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        LRUCache<Integer, String> restored = new LRUCache<Integer, String>(provider, 4);
+        assertEquals(2, CacheSnapshot.load(restored, _file, Serializer.integers(), Serializer.strings()));
+        assertTrue(restored.contains(99));
+        assertNull(restored.get(99));
+        assertEquals("Value for key 2.", restored.get(2));
+        assertFalse(provider._referenced);
+    }
+
+    /**
+     * Tests that an empty cache saves and loads
+     */
+    @Test
+    public void testEmptySnapshot () throws IOException {
+        LRUCache<Integer, String> empty = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4);
+        assertEquals(0, CacheSnapshot.save(empty, _file, Serializer.integers(), Serializer.strings()));
+        assertEquals(0, CacheSnapshot.load(empty, _file, Serializer.integers(), Serializer.strings()));
+    }
+
+    /**
+     * Tests that a truncated snapshot is refused without storing anything
+     */
+    @Test
+    public void testTruncatedSnapshot () throws IOException {
+        saveFilledCache();
+        byte[] bytes = Files.readAllBytes(_file);
+        Files.write(_file, Arrays.copyOf(bytes, bytes.length - 5));
+        assertLoadFails();
+    }
+
+    /**
+     * Tests that a snapshot with a damaged byte is refused without storing anything
+     */
+    @Test
+    public void testCorruptSnapshot () throws IOException {
+        saveFilledCache();
+        byte[] bytes = Files.readAllBytes(_file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(_file, bytes);
+        assertLoadFails();
+    }
+
+    /**
+     * Asserts that loading the test's file throws and leaves the cache empty
+     */
+    private void assertLoadFails () {
+        LRUCache<Integer, String> restored = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 4);
+        try {
+            CacheSnapshot.load(restored, _file, Serializer.integers(), Serializer.strings());
+            fail("loaded a damaged snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+        assertEquals(0, restored.size());
+    }
+}
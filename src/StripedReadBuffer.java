@@ -0,0 +1,110 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A set of small, lossy ring buffers that many threads record events into without locking, and
+ * that one thread at a time drains. Each thread is assigned a stripe by its id, so threads rarely
+ * share a buffer. An event is dropped rather than waited for when its stripe is full or another
+ * thread wins the race for the same slot, which is acceptable for recency hints.
+ */
+final class StripedReadBuffer<E> {
+    //the event was recorded
+    static final int SUCCESS = 0;
+    //the event was dropped because another thread claimed the slot first
+    static final int FAILED = 1;
+    //the event was dropped because the stripe is full; it should be drained
+    static final int FULL = 2;
+    //number of slots per stripe; a power of two
+    private static final int BUFFER_SIZE = 16;
+    //most stripes, whatever the number of processors
+    private static final int MAX_STRIPES = 64;
+    //number of stripes per processor, so that threads seldom collide
+    private static final int STRIPES_PER_PROCESSOR = 4;
+
+    /**
+     * One ring buffer. Writers claim a slot by advancing the write counter; only the draining
+     * thread advances the read counter.
+     */
+    private static final class RingBuffer<E> {
+        private final AtomicReferenceArray<E> _slots = new AtomicReferenceArray<E>(BUFFER_SIZE);
+        private final AtomicLong _writeCounter = new AtomicLong();
+        private volatile long _readCounter = 0;
+
+        int offer (E event) {
+            final long tail = _writeCounter.get();
+            if (tail - _readCounter >= BUFFER_SIZE) {
+                return FULL;
+            }
+            if (!_writeCounter.compareAndSet(tail, tail + 1)) {
+                return FAILED;
+            }
+            _slots.lazySet((int) tail & (BUFFER_SIZE - 1), event);
+            return SUCCESS;
+        }
+
+        void drainTo (Consumer<? super E> consumer) {
+            long head = _readCounter;
+            final long tail = _writeCounter.get();
+            while (head < tail) {
+                final int index = (int) head & (BUFFER_SIZE - 1);
+                final E event = _slots.get(index);
+                if (event == null) {
+                    //claimed but not yet written; picked up by the next drain
+                    break;
+                }
+                _slots.lazySet(index, null);
+                consumer.accept(event);
+                head++;
+            }
+            _readCounter = head;
+        }
+    }
+
+    //the stripes, indexed by the spread id of the recording thread
+    private final RingBuffer<E>[] _stripes;
+    //mask used to select a stripe; the stripe count is always a power of two
+    private final int _stripeMask;
+
+    /**
+     * Creates a buffer with a few stripes per available processor.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    StripedReadBuffer () {
+        final int wanted = STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        final int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(wanted - 1) << 1);
+        _stripes = (RingBuffer<E>[]) new RingBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            _stripes[i] = new RingBuffer<E>();
+        }
+        _stripeMask = stripes - 1;
+    }
+
+    /**
+     * Records an event in the calling thread's stripe, without blocking.
+     * @param event the event
+     * @return <tt>SUCCESS</tt>, or <tt>FAILED</tt> or <tt>FULL</tt> if the event was dropped
+     */
+    int offer (E event) {
+        final long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return _stripes[hash & _stripeMask].offer(event);
+    }
+
+    /**
+     * Passes every recorded event to a consumer and empties the stripes. Only one thread may
+     * drain at a time.
+     * @param consumer what to do with each event
+     */
+    void drainTo (Consumer<? super E> consumer) {
+        for (final RingBuffer<E> stripe : _stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+}
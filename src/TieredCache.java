@@ -0,0 +1,146 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.nio.file.Path;
+
+/**
+ * A <tt>Cache</tt> with two tiers: an in-memory <tt>LRUCache</tt> in front of a larger
+ * <tt>DiskStore</tt> on local disk. Pairs evicted from memory are written to disk, and a miss in
+ * memory checks the disk before the data provider; a pair found on disk moves back into memory,
+ * so each pair is in at most one tier. The disk tier has its own bound, in bytes, and drops its
+ * oldest pairs when it is full.
+ * <p>
+ * A hit in either tier counts as a hit, and only calls to the data provider count as misses.
+ * Null values are kept in memory but never written to disk. The cache is not thread-safe, and
+ * <tt>close</tt> deletes the disk tier's files.
+ */
+public class TieredCache<T, U> implements Cache<T, U>, AutoCloseable {
+    //the data provider consulted when neither tier holds a key
+    private final DataProvider<T, U> _provider;
+    //the fast tier; its evictions are spilled to disk
+    private final LRUCache<T, U> _memory;
+    //the slow tier
+    private final DiskStore<T, U> _disk;
+    //counts hits and misses across both tiers, and pairs dropped from disk as evictions
+    private final CacheStats _stats = new CacheStats();
+    //number of hits answered by the disk tier
+    private long _diskHits = 0;
+
+    /**
+     * @param provider the data provider to consult when neither tier holds a key
+     * @param memoryCapacity the number of (key,value) pairs to keep in memory
+     * @param directory where the disk tier keeps its segment files
+     * @param diskBytes the most bytes the disk tier's files may take
+     * @param keys serializes the keys for the disk tier
+     * @param values serializes the values for the disk tier
+     */
+    public TieredCache (DataProvider<T, U> provider, int memoryCapacity, Path directory, long diskBytes,
+                        Serializer<T> keys, Serializer<U> values) {
+        this(provider, memoryCapacity, directory, diskBytes, DiskStore.defaultSegmentBytes(diskBytes), keys, values);
+    }
+
+    /**
+     * @param provider the data provider to consult when neither tier holds a key
+     * @param memoryCapacity the number of (key,value) pairs to keep in memory
+     * @param directory where the disk tier keeps its segment files
+     * @param diskBytes the most bytes the disk tier's files may take
+     * @param segmentBytes the size of each of the disk tier's files
+     * @param keys serializes the keys for the disk tier
+     * @param values serializes the values for the disk tier
+     */
+    TieredCache (DataProvider<T, U> provider, int memoryCapacity, Path directory, long diskBytes, long segmentBytes,
+                 Serializer<T> keys, Serializer<U> values) {
+        _provider = provider;
+        _memory = new LRUCache<T, U>(provider, memoryCapacity, new CacheStats());
+        _disk = new DiskStore<T, U>(directory, diskBytes, segmentBytes, keys, values, _stats);
+        _memory.setRemovalListener((key, value, cause) -> {
+            if (cause == RemovalCause.EVICTED && value != null) {
+                _disk.put(key, value);
+            }
+        });
+    }
+
+    /**
+     * Returns the value associated with the specified key, from memory, from disk, or from the
+     * data provider, in that order.
+     * @param key the key
+     * @return the value associated with the key
+     */
+    public U get (T key) {
+        final LRUCache.Element<T, U> hit = _memory.lookup(key);
+        if (hit != null) {
+            _stats.recordHit();
+            return hit._value;
+        }
+        U value = _disk.remove(key);
+        if (value != null) {
+            _stats.recordHit();
+            _diskHits++;
+        }
+        else {
+            value = _stats.load(_provider, key);
+        }
+        _memory.put(key, value);
+        return value;
+    }
+
+    /**
+     * Stores a value in memory, replacing any value stored for the key in either tier.
+     * @param key the key
+     * @param value the value to associate with the key
+     */
+    public void put (T key, U value) {
+        _disk.discard(key);
+        _memory.put(key, value);
+    }
+
+    /**
+     * Removes the pair stored for a key from both tiers.
+     * @param key the key
+     */
+    public void invalidate (T key) {
+        _memory.invalidate(key);
+        _disk.discard(key);
+    }
+
+    /**
+     * Returns the number of hits answered by the disk tier rather than memory.
+     * @return the disk hit count
+     */
+    public long getDiskHitCount () {
+        return _diskHits;
+    }
+
+    /**
+     * Returns the number of pairs stored in both tiers together.
+     * @return the number of stored pairs
+     */
+    public int size () {
+        return _memory.size() + _disk.size();
+    }
+
+    /**
+     * Returns the live statistics of the cache.
+     * @return the statistics, updated as the cache is used
+     */
+    public CacheStats getStats () {
+        return _stats;
+    }
+
+    /**
+     * Returns the number of cache misses since the object's instantiation.
+     * @return the number of cache misses since the object's instantiation.
+     */
+    public int getNumMisses () {
+        return _stats.getNumMisses();
+    }
+
+    /**
+     * Deletes the disk tier's files. The cache must not be used afterwards.
+     */
+    public void close () {
+        _disk.close();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Code to test <tt>TieredCache</tt> and its log-structured <tt>DiskStore</tt>.
+ */
+public class TieredCacheTest {
+    //size of a disk segment in these tests
+    private static final long SEGMENT_BYTES = 256;
+    //bound of the disk tier in these tests
+    private static final long DISK_BYTES = 4 * SEGMENT_BYTES;
+
+    private Path _directory;
+
+    @Before
+    public void createDirectory () throws IOException {
+        _directory = Files.createTempDirectory("tiered");
+    }
+
+    @After
+    public void deleteDirectory () throws IOException {
+        try (Stream<Path> files = Files.list(_directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(_directory);
+    }
+
+    /**
+     * Returns a disk store bounded for these tests
+     */
+    private DiskStore<Integer, String> store (CacheStats stats) {
+        return new DiskStore<Integer, String>(_directory, DISK_BYTES, SEGMENT_BYTES, Serializer.integers(),
+            Serializer.strings(), stats);
+    }
+
+    /**
+     * Tests that pairs evicted from memory are found on disk instead of the data provider
+     */
+    @Test
+    public void testEvictedPairsSpillToDisk () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        TieredCache<Integer, String> cache = new TieredCache<Integer, String>(provider, 2, _directory,
+            DISK_BYTES, SEGMENT_BYTES, Serializer.integers(), Serializer.strings());
+
+        cache.get(0);
+        cache.get(1);
+        cache.get(2);
+        assertEquals(3, cache.size());
+
+        provider._referenced = false;
+        assertEquals("Value for key 0.", cache.get(0));
+        assertFalse(provider._referenced);
+        assertEquals(1, cache.getDiskHitCount());
+        assertEquals(3, cache.getNumMisses());
+        assertEquals(4, cache.getStats().getHitCount() + cache.getStats().getMissCount());
+        assertEquals(3, cache.size());
+        cache.close();
+    }
+
+    /**
+     * Tests that put and invalidate reach a pair that was spilled to disk
+     */
+    @Test
+    public void testPutAndInvalidateSpilledPair () {
+        CacheTest.TestDataProvider provider = new CacheTest.TestDataProvider();
+        TieredCache<Integer, String> cache = new TieredCache<Integer, String>(provider, 1, _directory,
+            DISK_BYTES, SEGMENT_BYTES, Serializer.integers(), Serializer.strings());
+
+        cache.get(0);
+        cache.get(1);
+        cache.put(0, "zero");
+        assertEquals("zero", cache.get(0));
+        assertEquals(2, cache.size());
+
+        cache.invalidate(1);
+        cache.invalidate(0);
+        assertEquals(0, cache.size());
+        cache.get(1);
+        assertEquals(3, cache.getNumMisses());
+        cache.close();
+    }
+
+    /**
+     * Tests that a full disk tier drops its oldest pairs and stays within its bound
+     */
+    @Test
+    public void testDiskBoundDropsOldest () {
+        CacheStats stats = new CacheStats();
+        DiskStore<Integer, String> store = store(stats);
+        for (int key = 0; key < 100; key++) {
+            store.put(key, "value number " + key);
+        }
+        assertTrue(store.fileBytes() <= DISK_BYTES);
+        assertTrue(stats.getEvictionCount() > 0);
+        assertEquals(100, store.size() + stats.getEvictionCount());
+        assertFalse(store.contains(0));
+        assertEquals("value number 99", store.remove(99));
+        store.close();
+    }
+
+    /**
+     * Tests that overwritten records are compacted away rather than forcing live pairs out
+     */
+    @Test
+    public void testCompactionKeepsLivePairs () {
+        CacheStats stats = new CacheStats();
+        DiskStore<Integer, String> store = store(stats);
+        for (int round = 0; round < 1000; round++) {
+            for (int key = 0; key < 3; key++) {
+                store.put(key, "round " + round);
+            }
+        }
+        assertTrue(store.fileBytes() <= DISK_BYTES);
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(3, store.size());
+        assertEquals("round 999", store.remove(1));
+        assertNull(store.remove(1));
+        store.close();
+    }
+
+    /**
+     * Tests that a record too large for a segment is not stored
+     */
+    @Test
+    public void testOversizedRecord () {
+        DiskStore<Integer, String> store = store(new CacheStats());
+        store.put(0, new String(new char[(int) SEGMENT_BYTES]));
+        assertFalse(store.contains(0));
+        store.close();
+    }
+
+    /**
+     * Tests that a damaged record is treated as absent
+     */
+    @Test
+    public void testDamagedRecord () throws IOException {
+        DiskStore<Integer, String> store = store(new CacheStats());
+        store.put(0, "a value to damage");
+        try (RandomAccessFile file = new RandomAccessFile(_directory.resolve("segment-0.log").toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            file.write('?');
+        }
+        assertNull(store.remove(0));
+        store.close();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel (Varghese and Lauck) that finds expired timers in amortized constant
+ * time. Each level is a ring of buckets covering a power-of-two span of nanoseconds: roughly one
+ * second per bucket on the first level, a minute on the second, an hour on the third and about
+ * 1.6 days on the fourth, with a single overflow bucket for anything further away. Advancing the
+ * wheel only visits the buckets whose span has passed; their timers either expire or cascade down
+ * to a finer level. Timers are intrusive nodes, so scheduling allocates nothing. Not thread-safe.
+ */
+class TimerWheel<E> {
+    //log2 of the span of one bucket on each level
+    private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+    //the number of buckets on each level; each level covers exactly one bucket of the next
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    /**
+     * A timer that can be scheduled on a wheel, carrying the object it belongs to.
+     */
+    static class Node<E> {
+        protected final E _owner;
+        protected long _expiresAt;
+        protected Node<E> _next;
+        protected Node<E> _last;
+
+        Node (E owner) {
+            _owner = owner;
+        }
+
+        /**
+         * Returns whether the timer is currently scheduled.
+         */
+        boolean isScheduled () {
+            return _next != null;
+        }
+    }
+
+    //the sentinel of each bucket's circular list, by level and then bucket
+    private final Node<E>[][] _wheel;
+    //the time the wheel was last advanced to
+    private long _nanos;
+
+    /**
+     * @param currentTime the current time, in nanoseconds
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel (long currentTime) {
+        _nanos = currentTime;
+        _wheel = (Node<E>[][]) new Node[BUCKETS.length][];
+        for (int level = 0; level < BUCKETS.length; level++) {
+            _wheel[level] = (Node<E>[]) new Node[BUCKETS[level]];
+            for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+                final Node<E> sentinel = new Node<E>(null);
+                sentinel._next = sentinel;
+                sentinel._last = sentinel;
+                _wheel[level][bucket] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules a timer to fire at its <tt>_expiresAt</tt> time, replacing any earlier schedule.
+     * @param node the timer
+     */
+    void schedule (Node<E> node) {
+        if (node.isScheduled()) {
+            deschedule(node);
+        }
+        //a timer already due goes in the current bucket, which the next advance visits first
+        final long duration = Math.max(0, node._expiresAt - _nanos);
+        int level = 0;
+        while (level < BUCKETS.length - 1 && duration >= 1L << SHIFTS[level + 1]) {
+            level++;
+        }
+        final int bucket = (int) ((_nanos + duration) >> SHIFTS[level]) & (BUCKETS[level] - 1);
+        final Node<E> sentinel = _wheel[level][bucket];
+        node._last = sentinel._last;
+        node._next = sentinel;
+        sentinel._last._next = node;
+        sentinel._last = node;
+    }
+
+    /**
+     * Cancels a timer if it is scheduled.
+     * @param node the timer
+     */
+    void deschedule (Node<E> node) {
+        if (!node.isScheduled()) {
+            return;
+        }
+        node._last._next = node._next;
+        node._next._last = node._last;
+        node._next = null;
+        node._last = null;
+    }
+
+    /**
+     * Advances the wheel to the current time, handing every timer that has expired to a callback
+     * after descheduling it.
+     * @param currentTime the current time, in nanoseconds
+     * @param onExpired receives the owner of each expired timer
+     */
+    void advance (long currentTime, Consumer<E> onExpired) {
+        final long previous = _nanos;
+        if (currentTime <= previous) {
+            return;
+        }
+        _nanos = currentTime;
+        for (int level = 0; level < BUCKETS.length; level++) {
+            final long previousTicks = previous >> SHIFTS[level];
+            final long elapsedTicks = (currentTime >> SHIFTS[level]) - previousTicks;
+            if (elapsedTicks <= 0) {
+                break;
+            }
+            expire(level, previousTicks, elapsedTicks, onExpired);
+        }
+    }
+
+    /**
+     * Visits the buckets of one level that time has passed through, expiring or cascading their
+     * timers.
+     */
+    private void expire (int level, long previousTicks, long elapsedTicks, Consumer<E> onExpired) {
+        final int mask = BUCKETS[level] - 1;
+        final int steps = (int) Math.min(elapsedTicks + 1, BUCKETS[level]);
+        for (int i = 0; i < steps; i++) {
+            final Node<E> sentinel = _wheel[level][(int) (previousTicks + i) & mask];
+            Node<E> node = sentinel._next;
+            sentinel._next = sentinel;
+            sentinel._last = sentinel;
+            while (node != sentinel) {
+                final Node<E> next = node._next;
+                node._next = null;
+                node._last = null;
+                if (node._expiresAt - _nanos <= 0) {
+                    onExpired.accept(node._owner);
+                }
+                else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the keys a cache is asked for, with the time of each request, to a compact binary trace
+ * file that <tt>CacheSimulator</tt> can replay. Recording only appends the key's hash code and the
+ * time to an in-memory batch; full batches are written by the recorder's own thread, so a cache
+ * never waits for the disk. Batches are striped like a <tt>StripedReadBuffer</tt>: each thread
+ * fills the batch of the stripe its id maps to, so threads seldom contend for a lock. If the
+ * writer falls so far behind that no empty batch is left, requests are dropped and counted until
+ * one is, rather than slowing the cache down.
+ * <p>
+ * A trace is a header followed by one fixed-size record per request:
+ * <pre>
+ *   int magic, int version, long startMillis
+ *   int keyHash, int microsSincePreviousRecord    (repeated)
+ * </pre>
+ * The requests of each thread are in the order that thread made them, but the requests of
+ * threads on different stripes are interleaved a batch at a time, and a record stamped earlier
+ * than the one before it is written with a gap of zero. The gap to the previous record saturates
+ * at <tt>Integer.MAX_VALUE</tt> microseconds, about 35 minutes. Reading the system clock on every
+ * request would cost more than the rest of recording, so requests are stamped with a clock the
+ * writing thread advances about once a millisecond; times in a trace are accurate to about that
+ * much. Keys are identified only by hash code, so distinct keys with equal hash codes are replayed
+ * as one key.
+ */
+public class TraceRecorder implements AutoCloseable {
+    //identifies a trace file
+    private static final int MAGIC = 0x54524345;
+    //the version of the format written
+    private static final int VERSION = 1;
+    //bytes taken by the magic number, version and start time
+    private static final int HEADER_BYTES = 16;
+    //bytes taken by one record
+    private static final int RECORD_BYTES = 8;
+    //number of requests gathered in a batch by default
+    private static final int DEFAULT_BATCH_SIZE = 1 << 14;
+    //number of batches that may be waiting to be written, by default, besides one per stripe
+    private static final int DEFAULT_BATCHES = 8;
+    //most stripes, whatever the number of processors
+    private static final int MAX_STRIPES = 64;
+    //number of stripes per processor, so that threads seldom share one
+    private static final int STRIPES_PER_PROCESSOR = 4;
+    //how often the writing thread advances the recording clock and checks whether it has been closed
+    private static final long TICK_MILLIS = 1;
+    //number of nanoseconds in a microsecond
+    private static final long NANOS_PER_MICRO = 1000;
+    //the hash recorded for a null key
+    private static final int NULL_KEY_HASH = 0;
+
+    /**
+     * A batch of requests in the order they were recorded.
+     */
+    private static class Batch {
+        final int[] _hashes;
+        final long[] _nanos;
+        int _size = 0;
+
+        Batch (int capacity) {
+            _hashes = new int[capacity];
+            _nanos = new long[capacity];
+        }
+    }
+
+    /**
+     * The batch a group of threads fills; guarded by the stripe's lock.
+     */
+    private static class Stripe {
+        //the batch being filled, or null until an empty one is taken
+        Batch _current;
+        //whether the recorder has stopped taking requests from this stripe
+        boolean _closed = false;
+    }
+
+    /**
+     * The requests read back from a trace file.
+     */
+    static class Trace {
+        //the hash code of each requested key, in request order
+        final int[] _keys;
+        //the time of each request, in microseconds since the trace started
+        final long[] _micros;
+        //the wall-clock time the trace started, in milliseconds since the epoch
+        final long _startMillis;
+
+        Trace (int[] keys, long[] micros, long startMillis) {
+            _keys = keys;
+            _micros = micros;
+            _startMillis = startMillis;
+        }
+    }
+
+    //the file being written
+    private final FileChannel _channel;
+    //empty batches ready to be filled
+    private final BlockingQueue<Batch> _free;
+    //full batches waiting to be written, in recording order
+    private final BlockingQueue<Batch> _full;
+    //the stripes, indexed by the spread id of the recording thread
+    private final Stripe[] _stripes;
+    //mask used to select a stripe; the stripe count is always a power of two
+    private final int _stripeMask;
+    //number of requests gathered in a batch
+    private final int _batchSize;
+    //counts requests dropped because no empty batch was left or the recorder closed
+    private final LongAdder _dropped = new LongAdder();
+    //the time requests are stamped with, advanced by the writing thread
+    private volatile long _clockNanos;
+    //the latest time written, used to compute the next gap
+    private long _lastNanos;
+    //the first failure writing the file, rethrown by close
+    private volatile IOException _failure;
+    //writes full batches
+    private final Thread _thread;
+    //whether the recorder has been closed; set once every stripe is closed
+    private volatile boolean _closed = false;
+
+    /**
+     * @param file the trace file to create, replacing any existing file
+     * @throws IOException if the file cannot be created
+     */
+    public TraceRecorder (Path file) throws IOException {
+        this(file, DEFAULT_BATCH_SIZE, stripeCount() + DEFAULT_BATCHES);
+    }
+
+    /**
+     * @param file the trace file to create, replacing any existing file
+     * @param batchSize the number of requests gathered before a batch is handed to the writer
+     * @param batches the number of batches that may be filled or waiting to be written at once,
+     *        which should be a few more than the number of stripes
+     * @throws IOException if the file cannot be created
+     */
+    public TraceRecorder (Path file, int batchSize, int batches) throws IOException {
+        if (batchSize < 1 || batches < 2) {
+            throw new IllegalArgumentException("need a positive batch size and at least two batches");
+        }
+        _channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).flip();
+        try {
+            writeFully(header);
+        } catch (IOException e) {
+            _channel.close();
+            throw e;
+        }
+        _lastNanos = System.nanoTime();
+        _clockNanos = _lastNanos;
+
+        _free = new ArrayBlockingQueue<Batch>(batches);
+        _full = new ArrayBlockingQueue<Batch>(batches);
+        for (int i = 0; i < batches; i++) {
+            _free.add(new Batch(batchSize));
+        }
+        _batchSize = batchSize;
+        _stripes = new Stripe[stripeCount()];
+        for (int i = 0; i < _stripes.length; i++) {
+            _stripes[i] = new Stripe();
+        }
+        _stripeMask = _stripes.length - 1;
+        _thread = new Thread(this::writeBatches, "trace-recorder");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Records a request for a key.
+     * @param key the requested key, which may be null
+     */
+    public void record (Object key) {
+        final int hash = key == null ? NULL_KEY_HASH : key.hashCode();
+        final long now = _clockNanos;
+        final long id = Thread.currentThread().getId();
+        int spread = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        spread ^= spread >>> 16;
+        final Stripe stripe = _stripes[spread & _stripeMask];
+        synchronized (stripe) {
+            if (stripe._closed) {
+                _dropped.increment();
+                return;
+            }
+            Batch batch = stripe._current;
+            if (batch == null) {
+                batch = _free.poll();
+                if (batch == null) {
+                    _dropped.increment();
+                    return;
+                }
+                stripe._current = batch;
+            }
+            batch._hashes[batch._size] = hash;
+            batch._nanos[batch._size] = now;
+            if (++batch._size == batch._hashes.length) {
+                //every batch fits in the queue, so this never fails
+                _full.add(batch);
+                stripe._current = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests that were never written to the trace.
+     * @return the dropped count
+     */
+    public long getDroppedCount () {
+        return _dropped.sum();
+    }
+
+    /**
+     * Stops recording, writes the requests already recorded and closes the file.
+     * @throws UncheckedIOException if writing the trace failed at any point
+     */
+    public void close () {
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            //queued before closing, so the writer cannot see the recorder closed and drained early
+            for (final Stripe stripe : _stripes) {
+                synchronized (stripe) {
+                    if (stripe._current != null && stripe._current._size > 0) {
+                        _full.add(stripe._current);
+                    }
+                    stripe._current = null;
+                    stripe._closed = true;
+                }
+            }
+            _closed = true;
+        }
+        boolean interrupted = false;
+        while (_thread.isAlive()) {
+            try {
+                _thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            if (_failure == null) {
+                _failure = e;
+            }
+        }
+        if (_failure != null) {
+            throw new UncheckedIOException("could not write trace", _failure);
+        }
+    }
+
+    /**
+     * Reads a whole trace file into memory. A record cut short at the end of the file, as left by a
+     * process that died while recording, is ignored.
+     * @param file the trace file
+     * @return the requests in the trace
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    static Trace read (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            if (channel.size() < HEADER_BYTES || records > Integer.MAX_VALUE) {
+                throw new IOException("not a readable trace: " + file);
+            }
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BATCH_SIZE * RECORD_BYTES);
+            buffer.limit(HEADER_BYTES);
+            readFully(channel, buffer);
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("not a trace file: " + file);
+            }
+            final long startMillis = buffer.getLong();
+
+            final int[] keys = new int[(int) records];
+            final long[] micros = new long[(int) records];
+            long time = 0;
+            int read = 0;
+            while (read < keys.length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), (long) (keys.length - read) * RECORD_BYTES));
+                readFully(channel, buffer);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    keys[read] = buffer.getInt();
+                    time += buffer.getInt();
+                    micros[read++] = time;
+                }
+            }
+            return new Trace(keys, micros, startMillis);
+        }
+    }
+
+    /**
+     * Writes full batches to the file, advancing the recording clock between them, until the
+     * recorder is closed and every batch is written.
+     */
+    private void writeBatches () {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(_batchSize * RECORD_BYTES);
+        while (!_closed || !_full.isEmpty()) {
+            final Batch batch;
+            try {
+                batch = _full.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            } finally {
+                _clockNanos = System.nanoTime();
+            }
+            if (batch == null) {
+                continue;
+            }
+            if (_failure != null) {
+                _dropped.add(batch._size);
+            }
+            else {
+                buffer.clear();
+                for (int i = 0; i < batch._size; i++) {
+                    final long gap = (batch._nanos[i] - _lastNanos) / NANOS_PER_MICRO;
+                    _lastNanos = Math.max(_lastNanos, batch._nanos[i]);
+                    buffer.putInt(batch._hashes[i]);
+                    buffer.putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, gap)));
+                }
+                buffer.flip();
+                try {
+                    writeFully(buffer);
+                } catch (IOException e) {
+                    _failure = e;
+                    _dropped.add(batch._size);
+                }
+            }
+            batch._size = 0;
+            _free.add(batch);
+        }
+    }
+
+    /**
+     * Returns the number of stripes: a few per available processor, rounded up to a power of two.
+     */
+    private static int stripeCount () {
+        final int wanted = STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        return Math.min(MAX_STRIPES, Integer.highestOneBit(wanted - 1) << 1);
+    }
+
+    /**
+     * Writes all of a buffer to the trace file.
+     * @param buffer the bytes to write, between its position and limit
+     * @throws IOException if writing fails
+     */
+    private void writeFully (ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            _channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fills a buffer from a file, up to its limit.
+     * @param channel the file
+     * @param buffer the buffer to fill
+     * @throws IOException if the file ends first or cannot be read
+     */
+    private static void readFully (FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("trace ended early");
+            }
+        }
+    }
+}
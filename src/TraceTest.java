@@ -0,0 +1,213 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Code to test recording traces with <tt>TraceRecorder</tt> and replaying them with
+ * <tt>CacheSimulator</tt>.
+ */
+public class TraceTest {
+    private Path _file;
+
+    @Before
+    public void createFile () throws IOException {
+        _file = Files.createTempFile("lrucache", ".trace");
+    }
+
+    @After
+    public void deleteFile () throws IOException {
+        Files.deleteIfExists(_file);
+    }
+
+    /**
+     * Tests that every key requested through get and getAll is read back in request order, across
+     * many small batches
+     */
+    @Test
+    public void testRecordsKeysInOrder () throws IOException {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new CacheTest.TestDataProvider(), 8);
+        TraceRecorder recorder = new TraceRecorder(_file, 4, 64);
+        cache.setTraceRecorder(recorder);
+        int[] expected = new int[102];
+        for (int i = 0; i < 100; i++) {
+            cache.get(i % 10);
+            expected[i] = i % 10;
+        }
+        cache.getAll(Arrays.asList(42, 43));
+        expected[100] = 42;
+        expected[101] = 43;
+        cache.setTraceRecorder(null);
+        cache.get(7);
+        recorder.close();
+
+        assertEquals(0, recorder.getDroppedCount());
+        TraceRecorder.Trace trace = TraceRecorder.read(_file);
+        assertArrayEquals(expected, trace._keys);
+        for (int i = 1; i < trace._micros.length; i++) {
+            assertTrue(trace._micros[i] >= trace._micros[i - 1]);
+        }
+        assertTrue(trace._startMillis <= System.currentTimeMillis());
+    }
+
+    /**
+     * Tests that the concurrent cache records hits and misses alike
+     */
+    @Test
+    public void testConcurrentCacheRecords () throws IOException {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<Integer, String>(
+            new CacheTest.TestDataProvider(), 8);
+        TraceRecorder recorder = new TraceRecorder(_file);
+        cache.setTraceRecorder(recorder);
+        cache.get(1);
+        cache.get(1);
+        cache.getAll(Arrays.asList(2, 1));
+        recorder.close();
+        assertArrayEquals(new int[] { 1, 1, 2, 1 }, TraceRecorder.read(_file)._keys);
+    }
+
+    /**
+     * Tests that a cache with a recorder still accepts a null key, which is recorded with hash 0
+     */
+    @Test
+    public void testNullKeyIsRecorded () throws IOException {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(key -> key == null ? "none" : "" + key, 4);
+        TraceRecorder recorder = new TraceRecorder(_file);
+        cache.setTraceRecorder(recorder);
+        assertEquals("none", cache.get(null));
+        cache.get(3);
+        recorder.close();
+        assertArrayEquals(new int[] { 0, 3 }, TraceRecorder.read(_file)._keys);
+    }
+
+    /**
+     * Tests that requests recorded by several threads at once are all written, each thread's in
+     * the order it made them
+     */
+    @Test
+    public void testConcurrentRecordsKeepEachThreadsOrder () throws IOException, InterruptedException {
+        final int threads = 4;
+        final int requests = 1000;
+        TraceRecorder recorder = new TraceRecorder(_file, 16, threads * requests / 16 + 1);
+        Thread[] recorders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = t * requests;
+            recorders[t] = new Thread(() -> {
+                for (int i = 0; i < requests; i++) {
+                    recorder.record(first + i);
+                }
+            });
+            recorders[t].start();
+        }
+        for (Thread thread : recorders) {
+            thread.join();
+        }
+        recorder.close();
+
+        assertEquals(0, recorder.getDroppedCount());
+        int[] keys = TraceRecorder.read(_file)._keys;
+        assertEquals(threads * requests, keys.length);
+        int[] next = new int[threads];
+        for (int key : keys) {
+            assertEquals(next[key / requests]++, key % requests);
+        }
+    }
+
+    /**
+     * Tests that requests after closing are dropped and counted, and that closing twice is harmless
+     */
+    @Test
+    public void testRecordAfterCloseIsDropped () throws IOException {
+        TraceRecorder recorder = new TraceRecorder(_file);
+        recorder.record("a");
+        recorder.close();
+        recorder.record("b");
+        recorder.close();
+        assertEquals(1, recorder.getDroppedCount());
+        assertArrayEquals(new int[] { "a".hashCode() }, TraceRecorder.read(_file)._keys);
+    }
+
+    /**
+     * Tests that a record cut short at the end of the file is ignored
+     */
+    @Test
+    public void testTruncatedRecordIsIgnored () throws IOException {
+        TraceRecorder recorder = new TraceRecorder(_file);
+        recorder.record(1);
+        recorder.record(2);
+        recorder.close();
+        Files.write(_file, new byte[3], StandardOpenOption.APPEND);
+        assertArrayEquals(new int[] { 1, 2 }, TraceRecorder.read(_file)._keys);
+    }
+
+    /**
+     * Tests that a file that is not a trace is rejected
+     */
+    @Test(expected = IOException.class)
+    public void testNotATrace () throws IOException {
+        Files.write(_file, "not a trace at all".getBytes());
+        TraceRecorder.read(_file);
+    }
+
+    /**
+     * Tests that replaying a trace gives the same hit rate as the cache it was recorded from, for
+     * every capacity simulated at once
+     */
+    @Test
+    public void testSimulationMatchesRecordedCache () throws IOException, InterruptedException {
+        final Random random = new Random(20);
+        final int[] capacities = { 16, 64, 256 };
+        final LRUCache<Integer, Integer>[] caches = newCaches(capacities);
+        TraceRecorder recorder = new TraceRecorder(_file);
+        caches[0].setTraceRecorder(recorder);
+        for (int i = 0; i < 20000; i++) {
+            //a skewed key: small keys are requested far more often
+            final int key = (int) Math.pow(random.nextInt(1 << 10), 2) >> 10;
+            for (LRUCache<Integer, Integer> cache : caches) {
+                cache.get(key);
+            }
+        }
+        recorder.close();
+
+        CacheSimulator.Replay replay = new CacheSimulator.Replay(TraceRecorder.read(_file)._keys);
+        double[][] hitRates = CacheSimulator.simulate(replay, new String[] { "lru", "clock" }, capacities, 2);
+        for (int c = 0; c < capacities.length; c++) {
+            assertEquals(caches[c].getStats().getHitRate(), hitRates[0][c], 1e-9);
+            assertTrue(hitRates[1][c] > 0);
+        }
+        assertTrue(hitRates[0][0] < hitRates[0][1] && hitRates[0][1] < hitRates[0][2]);
+    }
+
+    /**
+     * Tests that the default curve doubles up to the number of distinct keys
+     */
+    @Test
+    public void testDefaultCapacities () {
+        assertArrayEquals(new int[] { 1, 3, 7, 15, 31, 62, 125, 250, 500, 1000 },
+                          CacheSimulator.defaultCapacities(1000));
+        assertArrayEquals(new int[] { 1 }, CacheSimulator.defaultCapacities(0));
+    }
+
+    /**
+     * Returns one empty cache per capacity
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LRUCache<Integer, Integer>[] newCaches (int[] capacities) {
+        LRUCache<Integer, Integer>[] caches = new LRUCache[capacities.length];
+        for (int c = 0; c < capacities.length; c++) {
+            caches[c] = new LRUCache<Integer, Integer>(key -> key, capacities[c]);
+        }
+        return caches;
+    }
+}
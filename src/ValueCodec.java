@@ -0,0 +1,24 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+/**
+ * Converts values to and from the form a cache stores them in, e.g. compressed bytes for
+ * <tt>CompressedCache</tt>. A null value must encode to null and decode back to null.
+ */
+interface ValueCodec<V> {
+	/**
+	 * Returns the stored form of a value.
+	 * @param value the value, which may be null
+	 * @return its encoded bytes, or null for a null value
+	 */
+	byte[] encode (V value);
+
+	/**
+	 * Reads a value back from its stored form.
+	 * @param bytes bytes returned by <tt>encode</tt>, or null
+	 * @return the value, or null for null bytes
+	 */
+	V decode (byte[] bytes);
+}
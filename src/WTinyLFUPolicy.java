@@ -0,0 +1,132 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.HashMap;
+
+/**
+ * An <tt>EvictionPolicy</tt> implementing W-TinyLFU (Einziger, Friedman and Manes). New keys enter a
+ * small LRU admission window. A key pushed out of the window competes with the main area's next
+ * victim, and only the one a <tt>FrequencySketch</tt> judges more popular stays. The main area is a
+ * segmented LRU: keys enter on probation and are promoted to the protected segment when hit again.
+ * A scan of one-time keys therefore churns through the window without displacing the hot set.
+ */
+public class WTinyLFUPolicy<T> implements EvictionPolicy<T> {
+    //share of the capacity given to the admission window
+    private static final double WINDOW_SHARE = 0.01;
+    //share of the main area given to the protected segment
+    private static final double PROTECTED_SHARE = 0.8;
+    //the queue tags of the three segments
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    //the node of every key the cache holds
+    private final HashMap<T, AccessOrderDeque.Node<T>> _nodes = new HashMap<T, AccessOrderDeque.Node<T>>();
+    //the three segments, each from least to most recently used
+    private final AccessOrderDeque<T> _window = new AccessOrderDeque<T>();
+    private final AccessOrderDeque<T> _probation = new AccessOrderDeque<T>();
+    private final AccessOrderDeque<T> _protected = new AccessOrderDeque<T>();
+    //the popularity estimates consulted on admission
+    private final FrequencySketch<T> _sketch;
+
+    //maximum sizes of the window, the main area and its protected segment
+    private final int _maxWindow;
+    private final int _maxMain;
+    private final int _maxProtected;
+
+    /**
+     * @param capacity the exact number of keys to keep
+     */
+    public WTinyLFUPolicy (int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        _maxWindow = Math.max(1, (int) (capacity * WINDOW_SHARE));
+        _maxMain = capacity - _maxWindow;
+        _maxProtected = (int) (_maxMain * PROTECTED_SHARE);
+        _sketch = new FrequencySketch<T>(capacity);
+    }
+
+    /**
+     * Records a hit, promoting a key on probation to the protected segment.
+     * @param key the key that was read
+     */
+    public void recordAccess (T key) {
+        _sketch.increment(key);
+        final AccessOrderDeque.Node<T> node = _nodes.get(key);
+        switch (node._queue) {
+            case WINDOW:
+                _window.moveToBack(node);
+                break;
+            case PROBATION:
+                _probation.remove(node);
+                node._queue = PROTECTED;
+                _protected.addLast(node);
+                if (_protected.size() > _maxProtected) {
+                    final AccessOrderDeque.Node<T> demoted = _protected.peekFirst();
+                    _protected.remove(demoted);
+                    demoted._queue = PROBATION;
+                    _probation.addLast(demoted);
+                }
+                break;
+            default:
+                _protected.moveToBack(node);
+        }
+    }
+
+    /**
+     * Records a newly loaded key in the window. If the window overflows, its oldest key either
+     * joins the main area or, once the main area is full, duels the main area's victim.
+     * @param key the newly loaded key
+     * @return the loser of the duel, or null if there is still room
+     */
+    public T recordInsertion (T key) {
+        _sketch.increment(key);
+        final AccessOrderDeque.Node<T> node = new AccessOrderDeque.Node<T>(key, WINDOW);
+        _nodes.put(key, node);
+        _window.addLast(node);
+        if (_window.size() <= _maxWindow) {
+            return null;
+        }
+
+        final AccessOrderDeque.Node<T> candidate = _window.peekFirst();
+        _window.remove(candidate);
+        if (_probation.size() + _protected.size() < _maxMain) {
+            candidate._queue = PROBATION;
+            _probation.addLast(candidate);
+            return null;
+        }
+
+        final AccessOrderDeque.Node<T> victim = _probation.size() > 0 ? _probation.peekFirst() : _protected.peekFirst();
+        if (victim == null || _sketch.frequency(candidate._key) <= _sketch.frequency(victim._key)) {
+            _nodes.remove(candidate._key);
+            return candidate._key;
+        }
+        recordRemoval(victim._key);
+        candidate._queue = PROBATION;
+        _probation.addLast(candidate);
+        return victim._key;
+    }
+
+    /**
+     * Forgets a key the cache has removed for a reason of its own.
+     * @param key the removed key
+     */
+    public void recordRemoval (T key) {
+        final AccessOrderDeque.Node<T> node = _nodes.remove(key);
+        if (node == null) {
+            return;
+        }
+        if (node._queue == WINDOW) {
+            _window.remove(node);
+        }
+        else if (node._queue == PROBATION) {
+            _probation.remove(node);
+        }
+        else {
+            _protected.remove(node);
+        }
+    }
+}
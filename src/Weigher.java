@@ -0,0 +1,99 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Measures how much of a cache's capacity a (key,value) pair uses. Weights are relative: a cache
+ * bounded by weight keeps the total weight of its pairs within its maximum.
+ */
+interface Weigher<T, U> {
+	//estimated size of an object header, in bytes
+	int OBJECT_HEADER_BYTES = 16;
+	//estimated size of a String object apart from its character array, in bytes
+	int STRING_BYTES = 24;
+	//estimated size of a reference, in bytes
+	int REFERENCE_BYTES = 4;
+
+	/**
+	 * Returns the weight of a pair. It must not change while the pair is stored.
+	 * @param key the key
+	 * @param value the value
+	 * @return the weight, which must not be negative
+	 */
+	int weigh (T key, U value);
+
+	/**
+	 * Returns a weigher that gives every pair a weight of one, so the maximum weight is a number
+	 * of pairs.
+	 * @return the weigher
+	 */
+	static <T, U> Weigher<T, U> singleton () {
+		return (key, value) -> 1;
+	}
+
+	/**
+	 * Returns a weigher that estimates the heap bytes held by a value: strings, primitive arrays,
+	 * boxed primitives, and arrays, collections and maps of these. Other objects count as an
+	 * object header only. Keys are not counted.
+	 * @return the weigher
+	 */
+	static <T, U> Weigher<T, U> estimatedHeapSize () {
+		return (key, value) -> (int) Math.min(Integer.MAX_VALUE, estimateHeapSize(value));
+	}
+
+	/**
+	 * Estimates the heap bytes held by an object and, for containers, by their contents.
+	 * @param value the object, which may be null
+	 * @return the estimated size in bytes
+	 */
+	private static long estimateHeapSize (Object value) {
+		if (value == null) {
+			return 0;
+		}
+		if (value instanceof String) {
+			return STRING_BYTES + OBJECT_HEADER_BYTES + 2L * ((String) value).length();
+		}
+		if (value instanceof byte[] || value instanceof boolean[]) {
+			return OBJECT_HEADER_BYTES + Array.getLength(value);
+		}
+		if (value instanceof char[] || value instanceof short[]) {
+			return OBJECT_HEADER_BYTES + 2L * Array.getLength(value);
+		}
+		if (value instanceof int[] || value instanceof float[]) {
+			return OBJECT_HEADER_BYTES + 4L * Array.getLength(value);
+		}
+		if (value instanceof long[] || value instanceof double[]) {
+			return OBJECT_HEADER_BYTES + 8L * Array.getLength(value);
+		}
+		if (value instanceof Object[]) {
+			long size = OBJECT_HEADER_BYTES;
+			for (final Object element : (Object[]) value) {
+				size += REFERENCE_BYTES + estimateHeapSize(element);
+			}
+			return size;
+		}
+		if (value instanceof Collection) {
+			long size = OBJECT_HEADER_BYTES;
+			for (final Object element : (Collection<?>) value) {
+				size += OBJECT_HEADER_BYTES + estimateHeapSize(element);
+			}
+			return size;
+		}
+		if (value instanceof Map) {
+			long size = OBJECT_HEADER_BYTES;
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += 2 * OBJECT_HEADER_BYTES + estimateHeapSize(entry.getKey()) + estimateHeapSize(entry.getValue());
+			}
+			return size;
+		}
+		if (value instanceof Long || value instanceof Double) {
+			return OBJECT_HEADER_BYTES + 8;
+		}
+		return OBJECT_HEADER_BYTES;
+	}
+}
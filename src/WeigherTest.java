@@ -0,0 +1,143 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import java.util.Arrays;
+
+/**
+ * Code to test weight-based capacity in <tt>LRUCache</tt> and the provided <tt>Weigher</tt>s.
+ */
+public class WeigherTest {
+
+    /**
+     * A data provider whose values are strings of the key's length
+     */
+    public static class LengthDataProvider implements DataProvider<Integer, String> {
+        public int _timesReferenced = 0;
+
+        /**
+         * Returns a string as long as the key
+         * @param key the length of the string
+         * @return a string of <tt>key</tt> characters
+         */
+        public String get (Integer key) {
+            _timesReferenced++;
+            final char[] chars = new char[key];
+            Arrays.fill(chars, 'x');
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Returns a weigher that weighs a pair by the length of its value
+     * @return the weigher
+     */
+    private static Weigher<Integer, String> lengthWeigher () {
+        return (key, value) -> value.length();
+    }
+
+    /**
+     * Tests that adding a heavy pair evicts as many least recently used pairs as it needs
+     */
+    @Test
+    public void testEvictsUntilEntryFits () {
+        LengthDataProvider provider = new LengthDataProvider();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(provider, lengthWeigher(), 10);
+
+        cache.get(3);
+        cache.get(2);
+        cache.get(4);
+        assertEquals(3, cache.size());
+        assertEquals(9, cache.weight());
+
+        cache.get(6);
+        assertEquals(2, cache.size());
+        assertEquals(10, cache.weight());
+        assertTrue(cache.contains(4));
+        assertTrue(cache.contains(6));
+        assertFalse(cache.contains(3));
+        assertFalse(cache.contains(2));
+        assertEquals(2, cache.getStats().getEvictionCount());
+    }
+
+    /**
+     * Tests that a pair heavier than the whole cache is returned but neither stored nor allowed
+     * to flush the cache
+     */
+    @Test
+    public void testRejectsOversizedEntry () {
+        LengthDataProvider provider = new LengthDataProvider();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(provider, lengthWeigher(), 10);
+
+        cache.get(4);
+        cache.get(5);
+        assertEquals(11, cache.get(11).length());
+        assertEquals(2, cache.size());
+        assertEquals(9, cache.weight());
+        assertFalse(cache.contains(11));
+        assertEquals(0, cache.getStats().getEvictionCount());
+
+        cache.get(11);
+        assertEquals(4, provider._timesReferenced);
+    }
+
+    /**
+     * Tests that replacing a value updates the total weight and evicts if the pair grew
+     */
+    @Test
+    public void testReplacedValueIsReweighed () {
+        LengthDataProvider provider = new LengthDataProvider();
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(provider, lengthWeigher(), 10);
+
+        cache.get(3);
+        cache.get(4);
+        cache.put(4, "xxxxxxxx");
+        assertEquals(1, cache.size());
+        assertEquals(8, cache.weight());
+        assertFalse(cache.contains(3));
+
+        cache.put(4, "xxxxxxxxxxxx");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    /**
+     * Tests that a negative weight is refused
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeWeight () {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new LengthDataProvider(),
+            (key, value) -> -1, 10);
+        cache.get(1);
+    }
+
+    /**
+     * Tests that a cache without a weigher reports its size as its weight
+     */
+    @Test
+    public void testUnweightedCache () {
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new LengthDataProvider(), 2);
+        cache.get(1);
+        cache.get(2);
+        cache.get(3);
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.weight());
+    }
+
+    /**
+     * Tests the heap size estimates for common value types
+     */
+    @Test
+    public void testEstimatedHeapSize () {
+        Weigher<Object, Object> weigher = Weigher.estimatedHeapSize();
+        assertEquals(0, weigher.weigh("key", null));
+        assertEquals(Weigher.OBJECT_HEADER_BYTES + 100, weigher.weigh("key", new byte[100]));
+        assertEquals(Weigher.OBJECT_HEADER_BYTES + 800, weigher.weigh("key", new long[100]));
+        assertEquals(Weigher.STRING_BYTES + Weigher.OBJECT_HEADER_BYTES + 20, weigher.weigh("key", "0123456789"));
+        assertTrue(weigher.weigh("key", Arrays.asList("a", "b", "c")) > 3 * weigher.weigh("key", "a"));
+        assertEquals(1, Weigher.singleton().weigh("key", new byte[100]));
+    }
+}
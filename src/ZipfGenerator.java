@@ -0,0 +1,65 @@
+/*
+ * Project 2
+ * Marie Tessier and Edward Clifford
+ */
+
+import java.util.Random;
+
+/**
+ * Draws integers in <tt>[0, n)</tt> following a Zipf distribution, where rank 0 is the most
+ * popular. Uses the constant-time approximation from Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases", so only the setup cost grows with <tt>n</tt>.
+ */
+class ZipfGenerator {
+    private final int _n;
+    private final double _theta;
+    private final double _alpha;
+    private final double _zetaN;
+    private final double _eta;
+    private final Random _rand;
+
+    /**
+     * @param n the number of distinct ranks
+     * @param theta the skew; 0 is uniform and larger values are more skewed (must not be 1)
+     * @param seed the seed of the underlying random source
+     */
+    ZipfGenerator (int n, double theta, long seed) {
+        _n = n;
+        _theta = theta;
+        _rand = new Random(seed);
+        _zetaN = zeta(n, theta);
+        _alpha = 1.0 / (1.0 - theta);
+        _eta = (1.0 - Math.pow(2.0 / n, 1.0 - theta)) / (1.0 - zeta(2, theta) / _zetaN);
+    }
+
+    /**
+     * Returns the next rank.
+     * @return a rank in <tt>[0, n)</tt>
+     */
+    int next () {
+        final double u = _rand.nextDouble();
+        final double uz = u * _zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, _theta)) {
+            return Math.min(1, _n - 1);
+        }
+        final int rank = (int) (_n * Math.pow(_eta * u - _eta + 1.0, _alpha));
+        return Math.min(rank, _n - 1);
+    }
+
+    /**
+     * Computes the generalized harmonic number sum(1 / i^theta) for i in 1..n.
+     * @param n the number of terms
+     * @param theta the exponent
+     * @return the sum
+     */
+    private static double zeta (int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}